@@ -0,0 +1,148 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Sample kernels with the Vector API. Only compiled in the {@code vector} build
+ * profile and only loaded by {@link SampleKernels#vectorized()} if the
+ * {@code jdk.incubator.vector} module is present; the remainder of an array that does not fill a vector is computed
+ * with scalars.
+ *
+ * Each kernel calls the operations of {@link DoubleVector} directly, since
+ * {@code lanewise} with a variable operator is not compiled to vector
+ * instructions.
+ */
+final class VectorSampleKernels extends SampleKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    VectorSampleKernels() {
+        if (SPECIES.length() < 2) {
+            throw new UnsupportedOperationException("No vector registers for doubles");
+        }
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    public double[] add(double[] samples, double value, double[] result) {
+        DoubleVector values = DoubleVector.broadcast(SPECIES, value);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(samples.length); i < bound; i += SPECIES.length()) {
+            vector(samples, i).add(values).intoArray(result, i);
+        }
+        for (; i < samples.length; i++) {
+            result[i] = samples[i] + value;
+        }
+        return result;
+    }
+
+    @Override
+    public double[] subtract(double[] samples, double value, double[] result) {
+        DoubleVector values = DoubleVector.broadcast(SPECIES, value);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(samples.length); i < bound; i += SPECIES.length()) {
+            vector(samples, i).sub(values).intoArray(result, i);
+        }
+        for (; i < samples.length; i++) {
+            result[i] = samples[i] - value;
+        }
+        return result;
+    }
+
+    @Override
+    public double[] subtract(double value, double[] samples, double[] result) {
+        DoubleVector values = DoubleVector.broadcast(SPECIES, value);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(samples.length); i < bound; i += SPECIES.length()) {
+            values.sub(vector(samples, i)).intoArray(result, i);
+        }
+        for (; i < samples.length; i++) {
+            result[i] = value - samples[i];
+        }
+        return result;
+    }
+
+    @Override
+    public double[] multiply(double[] samples, double value, double[] result) {
+        DoubleVector values = DoubleVector.broadcast(SPECIES, value);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(samples.length); i < bound; i += SPECIES.length()) {
+            vector(samples, i).mul(values).intoArray(result, i);
+        }
+        for (; i < samples.length; i++) {
+            result[i] = samples[i] * value;
+        }
+        return result;
+    }
+
+    @Override
+    public double[] divide(double[] samples, double value, double[] result) {
+        DoubleVector values = DoubleVector.broadcast(SPECIES, value);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(samples.length); i < bound; i += SPECIES.length()) {
+            vector(samples, i).div(values).intoArray(result, i);
+        }
+        for (; i < samples.length; i++) {
+            result[i] = samples[i] / value;
+        }
+        return result;
+    }
+
+    @Override
+    public double[] divide(double value, double[] samples, double[] result) {
+        DoubleVector values = DoubleVector.broadcast(SPECIES, value);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(samples.length); i < bound; i += SPECIES.length()) {
+            values.div(vector(samples, i)).intoArray(result, i);
+        }
+        for (; i < samples.length; i++) {
+            result[i] = value / samples[i];
+        }
+        return result;
+    }
+
+    @Override
+    public double[] pow(double[] samples, double exponent, double[] result) {
+        if (exponent == 2) {
+            // exact, like Math.pow
+            for (int i = 0; i < samples.length; i++) {
+                result[i] = samples[i] * samples[i];
+            }
+            return result;
+        }
+        DoubleVector exponents = DoubleVector.broadcast(SPECIES, exponent);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(samples.length); i < bound; i += SPECIES.length()) {
+            vector(samples, i).lanewise(VectorOperators.POW, exponents).intoArray(result, i);
+        }
+        for (; i < samples.length; i++) {
+            result[i] = Math.pow(samples[i], exponent);
+        }
+        return result;
+    }
+
+    @Override
+    public double[] affine(double[] samples, double scale, double shift, double[] result) {
+        DoubleVector scales = DoubleVector.broadcast(SPECIES, scale);
+        DoubleVector shifts = DoubleVector.broadcast(SPECIES, shift);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(samples.length); i < bound; i += SPECIES.length()) {
+            // no fused multiply-add, the result equals the scalar one
+            shifts.add(vector(samples, i).mul(scales)).intoArray(result, i);
+        }
+        for (; i < samples.length; i++) {
+            result[i] = shift + scale * samples[i];
+        }
+        return result;
+    }
+
+    private static DoubleVector vector(double[] samples, int offset) {
+        return DoubleVector.fromArray(SPECIES, samples, offset);
+    }
+}
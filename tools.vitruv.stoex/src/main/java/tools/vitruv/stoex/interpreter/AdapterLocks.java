@@ -0,0 +1,39 @@
+package tools.vitruv.stoex.interpreter;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+/**
+ * Locks under which the interpreter attaches its cache adapters to expressions.
+ *
+ * Cached expressions may be shared between threads, and content adapters on
+ * the root of an expression add themselves to every node, so the adapters of
+ * all nodes of an expression are only changed under the lock of its root. The
+ * locks are private objects, striped by the identity hash of the root, so the
+ * interpreter never synchronizes on model objects its clients may lock
+ * themselves.
+ */
+public final class AdapterLocks {
+
+    private static final int STRIPES = 64;
+
+    private static final Object[] LOCKS = new Object[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    private AdapterLocks() {
+    }
+
+    /**
+     * @return The lock for the adapters of all nodes within the root of the
+     *         given element.
+     */
+    public static Object of(EObject element) {
+        EObject root = EcoreUtil.getRootContainer(element);
+        return LOCKS[System.identityHashCode(root) & (STRIPES - 1)];
+    }
+}
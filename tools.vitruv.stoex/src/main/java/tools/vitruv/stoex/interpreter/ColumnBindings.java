@@ -0,0 +1,125 @@
+package tools.vitruv.stoex.interpreter;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+
+import tools.vitruv.stoex.interpreter.compiler.ScalarType;
+
+/**
+ * Columnar variable bindings for batch evaluation: every variable maps to an
+ * array holding one value per row.
+ *
+ * The columns are validated once; {@link #row(int)} then returns a read-only
+ * map view of a single row without copying any values.
+ */
+final class ColumnBindings {
+
+    private final Map<String, IntFunction<Object>> columns = new LinkedHashMap<>();
+    private final Map<String, IntToDoubleFunction> numericColumns = new LinkedHashMap<>();
+    private final Map<String, ScalarType> scalarTypes = new LinkedHashMap<>();
+    private final int rowCount;
+
+    /**
+     * @param columns Variable names mapped to double[], int[] or Object[] (e.g.
+     *                Expression[]) columns of equal length.
+     * @throws IllegalArgumentException if there are no columns, a column has an
+     *                                  unsupported type or the lengths differ.
+     */
+    ColumnBindings(Map<String, ?> columns) {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("Batch evaluation requires at least one column.");
+        }
+        int rows = -1;
+        for (Map.Entry<String, ?> column : columns.entrySet()) {
+            String name = column.getKey();
+            Object values = column.getValue();
+            int length;
+            if (values instanceof double[] doubles) {
+                length = doubles.length;
+                this.columns.put(name, row -> doubles[row]);
+                this.numericColumns.put(name, row -> doubles[row]);
+                this.scalarTypes.put(name, ScalarType.DOUBLE);
+            } else if (values instanceof int[] ints) {
+                length = ints.length;
+                this.columns.put(name, row -> ints[row]);
+                this.numericColumns.put(name, row -> ints[row]);
+                this.scalarTypes.put(name, ScalarType.INT);
+            } else if (values instanceof Object[] objects) {
+                length = objects.length;
+                this.columns.put(name, row -> objects[row]);
+            } else {
+                throw new IllegalArgumentException("Unsupported column type for variable " + name + ": "
+                        + (values == null ? "null" : values.getClass().getSimpleName()));
+            }
+            if (rows >= 0 && length != rows) {
+                throw new IllegalArgumentException("Column " + name + " has " + length
+                        + " values, expected " + rows + ".");
+            }
+            rows = length;
+        }
+        this.rowCount = rows;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return Whether all columns are double[] or int[] columns.
+     */
+    boolean isScalar() {
+        return scalarTypes.size() == columns.size();
+    }
+
+    /**
+     * @return The types of the double[] and int[] columns.
+     */
+    Map<String, ScalarType> getScalarTypes() {
+        return scalarTypes;
+    }
+
+    /**
+     * @return Accessors for the values of the double[] and int[] columns.
+     */
+    Map<String, IntToDoubleFunction> getNumericColumns() {
+        return numericColumns;
+    }
+
+    /**
+     * @return A read-only view of the values of the given row.
+     */
+    Map<String, Object> row(int row) {
+        return new Row(row);
+    }
+
+    private final class Row extends AbstractMap<String, Object> {
+
+        private final int row;
+
+        Row(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object name) {
+            IntFunction<Object> column = columns.get(name);
+            return column == null ? null : column.apply(row);
+        }
+
+        @Override
+        public boolean containsKey(Object name) {
+            return columns.containsKey(name);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            Map<String, Object> values = new LinkedHashMap<>();
+            columns.forEach((name, column) -> values.put(name, column.apply(row)));
+            return values.entrySet();
+        }
+    }
+}
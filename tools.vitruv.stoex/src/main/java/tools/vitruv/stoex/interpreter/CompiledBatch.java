@@ -0,0 +1,97 @@
+package tools.vitruv.stoex.interpreter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
+
+import tools.vitruv.stoex.interpreter.compiler.BytecodeCompiler;
+import tools.vitruv.stoex.interpreter.compiler.CompiledExpression;
+import tools.vitruv.stoex.interpreter.compiler.ScalarType;
+import tools.vitruv.stoex.stoex.Expression;
+
+/**
+ * A batch evaluation whose expression could be compiled: all columns are
+ * double[] or int[] columns and the expression is statically scalar. The
+ * expression is compiled to bytecode; the generated class is cached on the
+ * (cached) expression, so repeated batches do not compile again.
+ *
+ * Global variables are bound once into a template slot array; for every row
+ * only the column values are copied into a per-thread slot array.
+ */
+final class CompiledBatch {
+
+    private final CompiledExpression compiled;
+    private final int[] columnSlots;
+    private final IntToDoubleFunction[] columns;
+    private final ThreadLocal<double[]> slots;
+
+    private CompiledBatch(CompiledExpression compiled, double[] template, int[] columnSlots,
+            IntToDoubleFunction[] columns) {
+        this.compiled = compiled;
+        this.columnSlots = columnSlots;
+        this.columns = columns;
+        this.slots = ThreadLocal.withInitial(template::clone);
+    }
+
+    /**
+     * @param expression The parsed expression.
+     * @param bindings   The columns of the batch.
+     * @param globals    The global variables of the evaluator; the columns take
+     *                   precedence.
+     * @return The compiled batch, or null if the columns or the expression are
+     *         not scalar.
+     */
+    static CompiledBatch compile(Expression expression, ColumnBindings bindings, Map<String, Object> globals) {
+        if (!bindings.isScalar()) {
+            return null;
+        }
+        Map<String, Object> globalValues = new LinkedHashMap<>();
+        Map<String, ScalarType> types = new LinkedHashMap<>();
+        globals.forEach((name, value) -> {
+            ScalarType type = ScalarType.of(value);
+            if (type != null && !bindings.getScalarTypes().containsKey(name)) {
+                globalValues.put(name, value);
+                types.put(name, type);
+            }
+        });
+        types.putAll(bindings.getScalarTypes());
+
+        CompiledExpression compiled = BytecodeCompiler.compile(expression, types);
+        if (!compiled.isCompiled()) {
+            return null;
+        }
+        double[] template = compiled.newSlots();
+        globalValues.forEach((name, value) -> compiled.setSlot(template, name, value));
+
+        Map<String, IntToDoubleFunction> numericColumns = bindings.getNumericColumns();
+        int[] columnSlots = new int[numericColumns.size()];
+        IntToDoubleFunction[] columns = new IntToDoubleFunction[numericColumns.size()];
+        int i = 0;
+        for (Map.Entry<String, IntToDoubleFunction> column : numericColumns.entrySet()) {
+            columnSlots[i] = compiled.getSlot(column.getKey());
+            columns[i] = column.getValue();
+            i++;
+        }
+        return new CompiledBatch(compiled, template, columnSlots, columns);
+    }
+
+    ScalarType getResultType() {
+        return compiled.getResultType();
+    }
+
+    Object evaluate(int row) {
+        return compiled.evaluate(bind(row));
+    }
+
+    double evaluateDouble(int row) {
+        return compiled.evaluateDouble(bind(row));
+    }
+
+    private double[] bind(int row) {
+        double[] values = slots.get();
+        for (int i = 0; i < columns.length; i++) {
+            values[columnSlots[i]] = columns[i].applyAsDouble(row);
+        }
+        return values;
+    }
+}
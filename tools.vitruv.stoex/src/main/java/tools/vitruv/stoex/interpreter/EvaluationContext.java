@@ -0,0 +1,108 @@
+package tools.vitruv.stoex.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import tools.vitruv.stoex.stoex.Expression;
+
+/**
+ * Variable bindings of a single evaluation.
+ *
+ * Names are resolved in the order: variables set on the context itself, the
+ * bindings passed for the evaluation, the global variables of the evaluator and
+ * finally the predefined constants (PI, E). The bindings and globals are only
+ * read, never copied, so creating a context per evaluation is cheap.
+ *
+ * Variables may hold Stoex expressions as strings. They are parsed with the
+ * parser of the context, e.g. the cache of the evaluator, and evaluated in a
+ * nested context that only knows the predefined constants, like an evaluation
+ * with a new evaluator. They can therefore not refer to other variables.
+ *
+ * A context belongs to one evaluation and must not be shared between threads;
+ * the global map given to it must be safe for concurrent reads.
+ */
+public final class EvaluationContext {
+
+    private static final Map<String, Object> CONSTANTS = Map.of(
+            "PI", Math.PI,
+            "E", Math.E);
+
+    private final Map<String, Object> bindings;
+    private final Map<String, Object> globals;
+    private final Function<String, Expression> parser;
+    private Map<String, Object> locals;
+
+    /**
+     * Creates an empty context that only knows the predefined constants.
+     */
+    public EvaluationContext() {
+        this(Map.of(), Map.of());
+    }
+
+    /**
+     * @param bindings The variables of this evaluation.
+     * @param globals  The variables shared by all evaluations, e.g. those set on
+     *                 a {@link StoexEvaluator}.
+     */
+    public EvaluationContext(Map<String, Object> bindings, Map<String, Object> globals) {
+        this(bindings, globals, input -> StoexLanguageRuntime.getInstance().parseCached(input));
+    }
+
+    /**
+     * @param bindings The variables of this evaluation.
+     * @param globals  The variables shared by all evaluations.
+     * @param parser   Parses the expressions that variables hold as strings. The
+     *                 returned expressions must not be modified.
+     */
+    public EvaluationContext(Map<String, Object> bindings, Map<String, Object> globals,
+            Function<String, Expression> parser) {
+        this.bindings = bindings;
+        this.globals = globals;
+        this.parser = parser;
+    }
+
+    /**
+     * @param expression A Stoex expression held by a variable.
+     * @return The parsed expression, which must not be modified.
+     */
+    public Expression parse(String expression) {
+        return parser.apply(expression);
+    }
+
+    /**
+     * @return The context to evaluate an expression held by a variable in: it
+     *         only knows the predefined constants and uses the same parser.
+     */
+    public EvaluationContext nested() {
+        return new EvaluationContext(Map.of(), Map.of(), parser);
+    }
+
+    /**
+     * Sets a variable for this evaluation only. It shadows bindings, globals and
+     * constants of the same name.
+     */
+    public void setVariable(String name, Object value) {
+        if (locals == null) {
+            locals = new HashMap<>();
+        }
+        locals.put(name, value);
+    }
+
+    /**
+     * @return The value bound to the given name, or null if it is undefined.
+     */
+    public Object getVariable(String name) {
+        if (locals != null && locals.containsKey(name)) {
+            return locals.get(name);
+        }
+        Object value = bindings.get(name);
+        if (value == null) {
+            value = globals.get(name);
+        }
+        if (value == null) {
+            value = CONSTANTS.get(name);
+        }
+        return value;
+    }
+}
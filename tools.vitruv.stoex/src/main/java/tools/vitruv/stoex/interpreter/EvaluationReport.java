@@ -0,0 +1,57 @@
+package tools.vitruv.stoex.interpreter;
+
+import java.util.List;
+
+import tools.vitruv.stoex.interpreter.operations.MonteCarloReport;
+import tools.vitruv.stoex.stoex.Expression;
+
+/**
+ * The result of an evaluation together with the reports of the adaptive Monte
+ * Carlo operations it performed and the probability it dropped when converting
+ * unbounded distributions into mass functions, see
+ * {@link StoexEvaluator#evaluateWithReport(String, java.util.Map, EvaluationSettings)}.
+ */
+public final class EvaluationReport {
+
+    private final Expression result;
+    private final List<MonteCarloReport> monteCarloReports;
+    private final double truncatedMass;
+
+    EvaluationReport(Expression result, List<MonteCarloReport> monteCarloReports, double truncatedMass) {
+        this.result = result;
+        this.monteCarloReports = List.copyOf(monteCarloReports);
+        this.truncatedMass = truncatedMass;
+    }
+
+    public Expression getResult() {
+        return result;
+    }
+
+    /**
+     * @return The reports of the adaptive Monte Carlo operations in the order
+     *         they were performed; empty if the evaluation needed none or the
+     *         settings have no convergence criterion.
+     */
+    public List<MonteCarloReport> getMonteCarloReports() {
+        return monteCarloReports;
+    }
+
+    /**
+     * @return The total number of samples drawn by the Monte Carlo operations.
+     */
+    public long getTotalSampleCount() {
+        return monteCarloReports.stream().mapToLong(MonteCarloReport::getSampleCount).sum();
+    }
+
+    /**
+     * @return An upper bound of the total probability that was dropped from the
+     *         tails of unbounded distributions, e.g. Poisson distributions,
+     *         when converting them into mass functions, see
+     *         {@link EvaluationSettings#withTailMass(double)}. Results are
+     *         normalized when mass functions are combined, so this is the only
+     *         place where the loss is reported.
+     */
+    public double getTruncatedMass() {
+        return truncatedMass;
+    }
+}
@@ -0,0 +1,177 @@
+package tools.vitruv.stoex.interpreter;
+
+import java.util.concurrent.ForkJoinPool;
+
+import tools.vitruv.stoex.interpreter.operations.ConvergenceCriterion;
+import tools.vitruv.stoex.interpreter.operations.SamplingContext;
+import tools.vitruv.stoex.interpreter.operations.VariatePool;
+
+/**
+ * Immutable settings of an evaluation that trade accuracy for latency, e.g.
+ * few samples for interactive what-if analyses and many for reports.
+ *
+ * Settings are set on a {@link StoexEvaluator} for all evaluations or passed to
+ * a single evaluation; they are derived with the {@code with...} methods, e.g.
+ * {@code EvaluationSettings.DEFAULT.withSampleCount(1000).withSeed(42L)}.
+ */
+public final class EvaluationSettings {
+
+    public static final EvaluationSettings DEFAULT = new EvaluationSettings(SamplingContext.DEFAULT_SAMPLE_COUNT,
+            null, null, null, null, SamplingContext.DEFAULT_TAIL_MASS);
+
+    private final int sampleCount;
+    private final Long seed;
+    private final ConvergenceCriterion convergence;
+    private final ForkJoinPool samplingPool;
+    private final VariatePool variates;
+    private final double tailMass;
+
+    private EvaluationSettings(int sampleCount, Long seed, ConvergenceCriterion convergence,
+            ForkJoinPool samplingPool, VariatePool variates, double tailMass) {
+        this.sampleCount = sampleCount;
+        this.seed = seed;
+        this.convergence = convergence;
+        this.samplingPool = samplingPool;
+        this.variates = variates;
+        this.tailMass = tailMass;
+    }
+
+    /**
+     * @return The number of samples drawn per distribution and per Monte Carlo
+     *         operation.
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return The seed for sampling, or null if samples are unseeded.
+     */
+    public Long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return When Monte Carlo operations stop drawing samples, or null if they
+     *         draw {@link #getSampleCount()} samples.
+     */
+    public ConvergenceCriterion getConvergence() {
+        return convergence;
+    }
+
+    /**
+     * @return The pool computing Monte Carlo operations in parallel, or null if
+     *         they run in the evaluating thread.
+     */
+    public ForkJoinPool getSamplingPool() {
+        return samplingPool;
+    }
+
+    /**
+     * @return The pool of standard variates that distributions are sampled
+     *         from, or null if every evaluation draws fresh variates.
+     */
+    public VariatePool getVariates() {
+        return variates;
+    }
+
+    /**
+     * @return The probability that the conversion of an unbounded distribution,
+     *         e.g. a Poisson distribution, into a mass function may drop.
+     */
+    public double getTailMass() {
+        return tailMass;
+    }
+
+    /**
+     * @param sampleCount The number of samples drawn per distribution and per
+     *                    Monte Carlo operation.
+     * @throws IllegalArgumentException if the sample count is not positive.
+     */
+    public EvaluationSettings withSampleCount(int sampleCount) {
+        if (sampleCount <= 0) {
+            throw new IllegalArgumentException("Sample count must be positive: " + sampleCount);
+        }
+        return new EvaluationSettings(sampleCount, seed, convergence, samplingPool, variates, tailMass);
+    }
+
+    /**
+     * @param convergence When Monte Carlo operations stop drawing samples, or
+     *                    null to always draw {@link #getSampleCount()} samples.
+     *                    Adaptive operations draw fresh samples of distribution
+     *                    operands for every batch, so the reported errors
+     *                    include their sampling error. Sampled distributions,
+     *                    e.g. the results of nested operations, can only be
+     *                    resampled; errors are conditional on their values.
+     */
+    public EvaluationSettings withConvergence(ConvergenceCriterion convergence) {
+        return new EvaluationSettings(sampleCount, seed, convergence, samplingPool, variates, tailMass);
+    }
+
+    /**
+     * @param samplingPool The pool computing Monte Carlo operations with a fixed
+     *                     sample count in parallel, e.g.
+     *                     {@link ForkJoinPool#commonPool()}, or null to run them
+     *                     in the evaluating thread. The samples are the same
+     *                     either way.
+     */
+    public EvaluationSettings withSamplingPool(ForkJoinPool samplingPool) {
+        return new EvaluationSettings(sampleCount, seed, convergence, samplingPool, variates, tailMass);
+    }
+
+    /**
+     * @param variates The pool of standard variates that distributions are
+     *                 sampled from, or null to draw fresh variates. Within an
+     *                 evaluation every distribution operand gets its own block;
+     *                 all evaluations, including the rows of a batch, reuse the
+     *                 same blocks.
+     */
+    public EvaluationSettings withVariates(VariatePool variates) {
+        return new EvaluationSettings(sampleCount, seed, convergence, samplingPool, variates, tailMass);
+    }
+
+    /**
+     * @param tailMass The probability that the conversion of an unbounded
+     *                 distribution into a mass function may drop, split evenly
+     *                 between both tails. Smaller values keep more values.
+     * @throws IllegalArgumentException if the tail mass is not in (0, 1).
+     */
+    public EvaluationSettings withTailMass(double tailMass) {
+        if (!(tailMass > 0 && tailMass < 1)) {
+            throw new IllegalArgumentException("Tail mass must be in (0, 1): " + tailMass);
+        }
+        return new EvaluationSettings(sampleCount, seed, convergence, samplingPool, variates, tailMass);
+    }
+
+    /**
+     * @param seed The seed for sampling, or null to draw unseeded samples. With a
+     *             seed, every evaluation draws the same samples.
+     */
+    public EvaluationSettings withSeed(Long seed) {
+        return new EvaluationSettings(sampleCount, seed, convergence, samplingPool, variates, tailMass);
+    }
+
+    /**
+     * @param stream The row of a batch, or null for a single evaluation.
+     * @return The sampling context for an evaluation with these settings.
+     */
+    SamplingContext createSamplingContext(Long stream) {
+        SamplingContext context;
+        if (seed == null) {
+            context = SamplingContext.current();
+        } else if (stream == null) {
+            context = SamplingContext.seeded(seed);
+        } else {
+            context = SamplingContext.seeded(seed, stream);
+        }
+        return context.withSampling(sampleCount, convergence, samplingPool).withVariates(variates)
+                .withTailMass(tailMass);
+    }
+
+    @Override
+    public String toString() {
+        return "EvaluationSettings[sampleCount=" + sampleCount + ", seed=" + seed + ", convergence="
+                + convergence + ", samplingPool=" + samplingPool + ", variates=" + variates + ", tailMass="
+                + tailMass + "]";
+    }
+}
@@ -0,0 +1,146 @@
+package tools.vitruv.stoex.interpreter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import tools.vitruv.stoex.stoex.Expression;
+
+/**
+ * Bounded, thread-safe least-recently-used cache from normalized expression
+ * strings to their parsed Expression ASTs.
+ *
+ * The entries are kept in an access-ordered LinkedHashMap, so lookups,
+ * insertions and the eviction of the least recently used entry take constant
+ * time under a short lock. Expressions are parsed outside of the lock.
+ *
+ * The cached expressions are shared between all callers and must be treated
+ * as immutable.
+ */
+public class ExpressionCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final int maxSize;
+    private final Map<String, Expression> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ExpressionCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public ExpressionCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+                if (size() > ExpressionCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached expression for the given expression string or parses
+     * and caches it if it is not present yet.
+     *
+     * @param expressionString The Stoex expression as a string.
+     * @param parser           Function used to parse the expression on a miss.
+     *                         It must return an expression that is not contained
+     *                         in any resource.
+     * @return The (shared) parsed expression.
+     */
+    public Expression computeIfAbsent(String expressionString, Function<String, Expression> parser) {
+        String key = normalize(expressionString);
+        Expression cached;
+        synchronized (entries) {
+            // a lookup moves the entry to the most recently used end
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        // Parse outside of the lock; if another thread wins the race its result is
+        // kept and ours is discarded.
+        Expression parsed = parser.apply(expressionString);
+        synchronized (entries) {
+            Expression existing = entries.putIfAbsent(key, parsed);
+            return existing != null ? existing : parsed;
+        }
+    }
+
+    /**
+     * Normalizes an expression string so that expressions differing only in
+     * whitespace share a cache entry. Whitespace inside string literals is
+     * preserved.
+     */
+    static String normalize(String expressionString) {
+        StringBuilder builder = new StringBuilder(expressionString.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < expressionString.length(); i++) {
+            char c = expressionString.charAt(i);
+            if (quote != 0) {
+                builder.append(c);
+                if (c == '\\' && i + 1 < expressionString.length()) {
+                    builder.append(expressionString.charAt(++i));
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                pendingSpace = builder.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    builder.append(' ');
+                    pendingSpace = false;
+                }
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                }
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+}
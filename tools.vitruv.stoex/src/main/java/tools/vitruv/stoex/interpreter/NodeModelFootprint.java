@@ -0,0 +1,84 @@
+package tools.vitruv.stoex.interpreter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.xtext.nodemodel.ICompositeNode;
+import org.eclipse.xtext.nodemodel.INode;
+import org.eclipse.xtext.nodemodel.impl.RootNode;
+
+/**
+ * Estimates the heap footprint of an Xtext node model, i.e. the memory that is
+ * saved when the node model of a parsed expression is dropped.
+ *
+ * The estimate sums the shallow sizes of all nodes (derived from their
+ * instance fields, assuming a 64 bit JVM with compressed oops), the text and
+ * line break table retained by the root node and the adapter slot every
+ * semantic element uses to reference its node.
+ */
+final class NodeModelFootprint {
+
+    private static final int OBJECT_HEADER_BYTES = 12;
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    private static final ClassValue<Long> SHALLOW_SIZES = new ClassValue<>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            long size = OBJECT_HEADER_BYTES;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        size += fieldSize(field.getType());
+                    }
+                }
+            }
+            return align(size);
+        }
+    };
+
+    private NodeModelFootprint() {
+    }
+
+    /**
+     * @param rootNode The root of the node model.
+     * @return The estimated number of bytes retained by the node model.
+     */
+    static long estimateBytes(ICompositeNode rootNode) {
+        long bytes = 0;
+        EObject lastSemanticElement = null;
+        for (INode node : rootNode.getAsTreeIterable()) {
+            bytes += SHALLOW_SIZES.get(node.getClass());
+            if (node.hasDirectSemanticElement() && node.getSemanticElement() != lastSemanticElement) {
+                // one slot in the adapter array of the semantic element
+                lastSemanticElement = node.getSemanticElement();
+                bytes += align(ARRAY_HEADER_BYTES + REFERENCE_BYTES);
+            }
+        }
+        if (rootNode instanceof RootNode root) {
+            String text = root.getText();
+            bytes += SHALLOW_SIZES.get(String.class) + align(ARRAY_HEADER_BYTES + text.length());
+            long lineBreaks = text.chars().filter(c -> c == '\n').count();
+            bytes += align(ARRAY_HEADER_BYTES + Integer.BYTES * lineBreaks);
+        }
+        return bytes;
+    }
+
+    private static long fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE_BYTES;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
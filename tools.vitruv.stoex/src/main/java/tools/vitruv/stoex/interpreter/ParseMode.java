@@ -0,0 +1,25 @@
+package tools.vitruv.stoex.interpreter;
+
+/**
+ * Determines how the {@link StoexEvaluator} parses expressions given as
+ * strings.
+ */
+public enum ParseMode {
+
+    /**
+     * Parse through an Xtext resource and keep the node model attached to the
+     * AST, e.g. to map AST elements back to their text via NodeModelUtils. The
+     * AST is not simplified, so it matches the text. Only meant for callers
+     * that need the text of the cached expressions, as the node model takes
+     * several times the memory of the AST.
+     */
+    FULL,
+
+    /**
+     * Parse directly with the Xtext parser, without creating a resource, and
+     * drop the node model afterwards. Only the semantic Expression tree is kept,
+     * which is all the evaluation needs. The AST is simplified before caching.
+     * This is the default.
+     */
+    EVALUATION_ONLY
+}
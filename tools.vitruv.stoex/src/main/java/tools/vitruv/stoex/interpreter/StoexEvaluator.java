@@ -1,20 +1,33 @@
 package tools.vitruv.stoex.interpreter;
 
 import java.io.ByteArrayInputStream;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.xtext.resource.XtextResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.parser.IParseResult;
 import org.eclipse.xtext.serializer.ISerializer;
 
-import com.google.inject.Injector;
-
-import tools.vitruv.stoex.StoexStandaloneSetup;
+import tools.vitruv.stoex.interpreter.compiler.CompiledExpression;
+import tools.vitruv.stoex.interpreter.compiler.BytecodeCompiler;
+import tools.vitruv.stoex.interpreter.compiler.ScalarType;
+import tools.vitruv.stoex.interpreter.operations.MassFunction;
+import tools.vitruv.stoex.interpreter.operations.SamplingContext;
 import tools.vitruv.stoex.interpreter.visitors.ExpressionEvaluationVisitor;
 import tools.vitruv.stoex.interpreter.visitors.ExpressionMeanVisitor;
+import tools.vitruv.stoex.interpreter.visitors.ExpressionSimplificationVisitor;
 import tools.vitruv.stoex.stoex.BoolLiteral;
 import tools.vitruv.stoex.stoex.DoubleLiteral;
 import tools.vitruv.stoex.stoex.Expression;
@@ -34,30 +47,111 @@ import tools.vitruv.stoex.stoex.StringLiteral;
  * Expression.
  * Besides a simple evaluation, the evaluator also supports computing the mean
  * value of an expression.
+ * 
+ * Expressions given as strings are parsed once and kept in an
+ * {@link ExpressionCache}, so repeated evaluations of the same expression
+ * (e.g. with different variables) skip the Xtext parser. The
+ * {@link ParseMode} determines whether the Xtext node model is kept with the
+ * parsed expressions; by default it is dropped. Expressions without node model are simplified by the
+ * {@link ExpressionSimplificationVisitor} before caching, which folds constant
+ * subexpressions.
+ * 
+ * An evaluator can be shared between threads. Every evaluation gets its own
+ * visitor and {@link EvaluationContext}; the variables passed to an evaluation
+ * are only visible to that evaluation, while variables set with
+ * {@link #setVariable(String, Object)} are visible to all evaluations.
  */
 public class StoexEvaluator {
 
-    private final ExpressionEvaluationVisitor evaluator;
+    private final Map<String, Object> globalVariables = new ConcurrentHashMap<>();
+    private final StoexLanguageRuntime runtime;
     private final ResourceSet resourceSet;
     private final ISerializer serializer;
-    private int expressionCounter = 0;
+    private final ExpressionCache expressionCache;
+    private final AtomicInteger expressionCounter = new AtomicInteger();
+
+    private volatile ParseMode parseMode = ParseMode.EVALUATION_ONLY;
+    private volatile EvaluationSettings settings = EvaluationSettings.DEFAULT;
+    private final LongAdder droppedNodeModelBytes = new LongAdder();
 
     public StoexEvaluator() {
-        // Initialize Xtext for parsing
-        Injector injector = new StoexStandaloneSetup().createInjectorAndDoEMFRegistration();
-        this.resourceSet = injector.getInstance(XtextResourceSet.class);
-        this.serializer = injector.getInstance(ISerializer.class);
+        this(ExpressionCache.DEFAULT_MAX_SIZE);
+    }
 
-        // Initialize visitors
-        this.evaluator = new ExpressionEvaluationVisitor();
+    /**
+     * @param cacheSize Maximum number of parsed expressions kept in the
+     *                  expression cache.
+     */
+    public StoexEvaluator(int cacheSize) {
+        // Xtext is initialized once per process by the shared language runtime
+        this.runtime = StoexLanguageRuntime.getInstance();
+        this.resourceSet = runtime.createResourceSet();
+        this.serializer = runtime.getSerializer();
+        this.expressionCache = new ExpressionCache(cacheSize);
     }
 
+    /**
+     * Sets a variable that is visible to all subsequent evaluations. Setting a
+     * variable to null removes it.
+     */
     public void setVariable(String name, Object value) {
-        evaluator.setVariable(name, value);
+        if (value == null) {
+            globalVariables.remove(name);
+        } else {
+            globalVariables.put(name, value);
+        }
     }
 
     public Object getVariable(String name) {
-        return evaluator.getVariable(name);
+        return new EvaluationContext(Map.of(), globalVariables).getVariable(name);
+    }
+
+    public ParseMode getParseMode() {
+        return parseMode;
+    }
+
+    /**
+     * Sets how expressions given as strings are parsed. Changing the mode clears
+     * the expression cache, as the cached expressions were parsed with the
+     * previous mode.
+     * 
+     * @param parseMode The parse mode to use for subsequent parses.
+     */
+    public synchronized void setParseMode(ParseMode parseMode) {
+        if (this.parseMode != parseMode) {
+            this.parseMode = parseMode;
+            expressionCache.clear();
+        }
+    }
+
+    public EvaluationSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Sets the settings used by all evaluations that are not given their own,
+     * including batch evaluations.
+     * 
+     * @param settings The settings, e.g. the sample count.
+     */
+    public void setSettings(EvaluationSettings settings) {
+        this.settings = Objects.requireNonNull(settings);
+    }
+
+    public Long getSeed() {
+        return settings.getSeed();
+    }
+
+    /**
+     * Sets the seed for sampling distributions. With a seed, every evaluation
+     * draws the same samples, so its result is reproducible; the rows of a
+     * batch each draw from their own stream, also when evaluated in parallel.
+     * Shorthand for updating the {@link EvaluationSettings}.
+     * 
+     * @param seed The seed, or null to draw unseeded samples (the default).
+     */
+    public synchronized void setSeed(Long seed) {
+        this.settings = settings.withSeed(seed);
     }
 
     /**
@@ -65,24 +159,62 @@ public class StoexEvaluator {
      * variables.
      * 
      * @param expressionString The Stoex expression as a string.
-     * @param variables        A map of variable names to their values.
+     * @param variables        A map of variable names to their values. They
+     *                         take precedence over the variables set on the
+     *                         evaluator and are only used for this evaluation.
      * @return The evaluated expression as an Expression object.
      */
     public Expression evaluate(String expressionString, Map<String, Object> variables) {
+        return evaluate(expressionString, variables, settings);
+    }
+
+    /**
+     * Evaluates a Stoex expression given as a string with its own settings, e.g.
+     * a lower sample count for a quick estimate.
+     * 
+     * @param expressionString The Stoex expression as a string.
+     * @param variables        A map of variable names to their values, only used
+     *                         for this evaluation.
+     * @param settings         The settings for this evaluation.
+     * @return The evaluated expression as an Expression object.
+     */
+    public Expression evaluate(String expressionString, Map<String, Object> variables,
+            EvaluationSettings settings) {
+        return evaluate(expressionString, variables, settings.createSamplingContext(null));
+    }
+
+    /**
+     * Evaluates a Stoex expression given as a string and reports how the Monte
+     * Carlo operations converged and how much probability the conversions of
+     * unbounded distributions dropped, e.g. with settings having a
+     * {@link tools.vitruv.stoex.interpreter.operations.ConvergenceCriterion}.
+     * 
+     * @param expressionString The Stoex expression as a string.
+     * @param variables        A map of variable names to their values, only used
+     *                         for this evaluation.
+     * @param settings         The settings for this evaluation.
+     * @return The evaluated expression with the reports.
+     */
+    public EvaluationReport evaluateWithReport(String expressionString, Map<String, Object> variables,
+            EvaluationSettings settings) {
+        SamplingContext context = settings.createSamplingContext(null);
+        Expression result = evaluate(expressionString, variables, context);
+        return new EvaluationReport(result, context.getReports(), context.getTruncatedMass());
+    }
+
+    private Expression evaluate(String expressionString, Map<String, Object> variables, SamplingContext context) {
         try {
-            // 1. Parse the expression
-            Expression expr = parseExpression(expressionString);
+            // 1. Parse the expression (or take it from the cache)
+            Expression expr = parseCached(expressionString);
 
-            // 2. Set variables in the evaluator and type context
-            for (Map.Entry<String, Object> var : variables.entrySet()) {
-                evaluator.setVariable(var.getKey(), var.getValue());
-            }
+            // 2. Bind the variables for this evaluation
+            ExpressionEvaluationVisitor evaluator = createVisitor(variables);
 
             // 3. Evaluate the expression
-            Object result = evaluator.doSwitch(expr);
+            Object result = context.call(() -> evaluator.evaluate(expr));
 
             // 4. Return the result as an Expression
-            return wrapResult(result);
+            return wrapResult(detachFromCache(expr, result));
 
         } catch (Exception e) {
             throw new RuntimeException("Failed to evaluate expression: " + expressionString, e);
@@ -96,7 +228,7 @@ public class StoexEvaluator {
      * @return The evaluated expression as an Expression object.
      */
     public Expression evaluate(String expressionString) {
-        return evaluate(expressionString, new HashMap<>());
+        return evaluate(expressionString, Map.of());
     }
 
     /**
@@ -104,19 +236,33 @@ public class StoexEvaluator {
      * variables.
      * 
      * @param expression The Stoex expression as an Expression object.
-     * @param variables  A map of variable names to their values.
+     * @param variables  A map of variable names to their values. They take
+     *                   precedence over the variables set on the evaluator and
+     *                   are only used for this evaluation.
      * @return The evaluated expression as an Expression object.
      */
     public Expression evaluate(Expression expression, Map<String, Object> variables) {
+        return evaluate(expression, variables, settings);
+    }
+
+    /**
+     * Evaluates a Stoex expression given as an Expression AST with its own
+     * settings.
+     * 
+     * @param expression The Stoex expression as an Expression object.
+     * @param variables  A map of variable names to their values, only used for
+     *                   this evaluation.
+     * @param settings   The settings for this evaluation.
+     * @return The evaluated expression as an Expression object.
+     */
+    public Expression evaluate(Expression expression, Map<String, Object> variables, EvaluationSettings settings) {
 
         try {
-            // 1. Set variables in the evaluator
-            for (Map.Entry<String, Object> var : variables.entrySet()) {
-                evaluator.setVariable(var.getKey(), var.getValue());
-            }
+            // 1. Bind the variables for this evaluation
+            ExpressionEvaluationVisitor evaluator = createVisitor(variables);
 
             // 2. Evaluate the expression
-            Object result = evaluator.doSwitch(expression);
+            Object result = sample(settings, null, () -> evaluator.evaluate(expression));
 
             // 3. Return the result as an Expression
             return wrapResult(result);
@@ -133,7 +279,131 @@ public class StoexEvaluator {
      * @return The evaluated expression as an Expression object.
      */
     public Expression evaluate(Expression expression) {
-        return evaluate(expression, new HashMap<>());
+        return evaluate(expression, Map.of());
+    }
+
+    /**
+     * Evaluates one expression for many sets of variables given as columns, e.g.
+     * one row per component instance. The expression is parsed and the columns
+     * are validated only once. If all columns are numeric and the expression is
+     * statically scalar, it is compiled (see {@link BytecodeCompiler}) instead
+     * of being interpreted for every row.
+     * 
+     * @param expressionString The Stoex expression as a string.
+     * @param columns          Variable names mapped to double[], int[] or
+     *                         Expression[] columns, all of the same length.
+     * @return The evaluated expression for every row.
+     */
+    public List<Expression> evaluateBatch(String expressionString, Map<String, ?> columns) {
+        return evaluateBatch(expressionString, columns, false);
+    }
+
+    /**
+     * Evaluates one expression for many sets of variables given as columns.
+     * 
+     * @param expressionString The Stoex expression as a string.
+     * @param columns          Variable names mapped to double[], int[] or
+     *                         Expression[] columns, all of the same length.
+     * @param parallel         Whether the rows are evaluated in parallel.
+     * @return The evaluated expression for every row.
+     */
+    public List<Expression> evaluateBatch(String expressionString, Map<String, ?> columns, boolean parallel) {
+        ColumnBindings bindings = new ColumnBindings(columns);
+        Expression expr = parseForBatch(expressionString);
+        Expression[] results = new Expression[bindings.getRowCount()];
+        EvaluationSettings batchSettings = settings;
+        CompiledBatch compiled = CompiledBatch.compile(expr, bindings, globalVariables);
+        if (compiled != null) {
+            rows(bindings, parallel).forEach(row -> results[row] = wrapResult(
+                    evaluateRow(expressionString, row, () -> compiled.evaluate(row))));
+        } else {
+            rows(bindings, parallel).forEach(row -> results[row] = wrapResult(
+                    detachFromCache(expr, evaluateRow(expressionString, expr, bindings, batchSettings, row))));
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Evaluates one expression for many sets of variables given as columns and
+     * returns the results as numbers. Avoids wrapping every result in a literal.
+     * 
+     * @param expressionString The Stoex expression as a string.
+     * @param columns          Variable names mapped to double[], int[] or
+     *                         Expression[] columns, all of the same length.
+     * @param parallel         Whether the rows are evaluated in parallel.
+     * @return The numeric result for every row.
+     * @throws RuntimeException if the expression does not evaluate to a number
+     *                          for some row.
+     */
+    public double[] evaluateBatchToDouble(String expressionString, Map<String, ?> columns, boolean parallel) {
+        ColumnBindings bindings = new ColumnBindings(columns);
+        Expression expr = parseForBatch(expressionString);
+        double[] results = new double[bindings.getRowCount()];
+        EvaluationSettings batchSettings = settings;
+        CompiledBatch compiled = CompiledBatch.compile(expr, bindings, globalVariables);
+        if (compiled != null && compiled.getResultType() != ScalarType.BOOLEAN) {
+            rows(bindings, parallel).forEach(row -> results[row] = evaluateRowToDouble(expressionString, row,
+                    () -> compiled.evaluateDouble(row)));
+            return results;
+        }
+        rows(bindings, parallel).forEach(row -> {
+            Object result = evaluateRow(expressionString, expr, bindings, batchSettings, row);
+            if (!(result instanceof Number number)) {
+                throw new RuntimeException("Expression " + expressionString + " does not evaluate to a number in row "
+                        + row + ": " + result);
+            }
+            results[row] = number.doubleValue();
+        });
+        return results;
+    }
+
+    private Expression parseForBatch(String expressionString) {
+        try {
+            return parseCached(expressionString);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to evaluate expression: " + expressionString, e);
+        }
+    }
+
+    private IntStream rows(ColumnBindings bindings, boolean parallel) {
+        IntStream rows = IntStream.range(0, bindings.getRowCount());
+        return parallel ? rows.parallel() : rows;
+    }
+
+    private Object evaluateRow(String expressionString, Expression expr, ColumnBindings bindings,
+            EvaluationSettings settings, int row) {
+        return evaluateRow(expressionString, row,
+                () -> sample(settings, (long) row, () -> createVisitor(bindings.row(row)).evaluate(expr)));
+    }
+
+    private <T> T evaluateRow(String expressionString, int row, Supplier<T> evaluation) {
+        try {
+            return evaluation.get();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to evaluate expression: " + expressionString + " in row " + row, e);
+        }
+    }
+
+    private double evaluateRowToDouble(String expressionString, int row, DoubleSupplier evaluation) {
+        try {
+            return evaluation.getAsDouble();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to evaluate expression: " + expressionString + " in row " + row, e);
+        }
+    }
+
+    /**
+     * Compiles an expression over scalar variables to bytecode for fast repeated
+     * evaluation, e.g. in a hot loop. Variables set on this evaluator are not
+     * bound; all variables have to be given in the slot array.
+     * 
+     * @param expressionString The Stoex expression as a string.
+     * @param variableTypes    The types of the variables, in slot order.
+     * @return The compiled expression. It falls back to the visitor if the
+     *         expression is not statically scalar.
+     */
+    public CompiledExpression compile(String expressionString, Map<String, ScalarType> variableTypes) {
+        return BytecodeCompiler.compile(parseForBatch(expressionString), variableTypes);
     }
 
     /**
@@ -145,7 +415,7 @@ public class StoexEvaluator {
      */
     public Number getMean(String expressionString) {
         try {
-            Expression expr = parseExpression(expressionString);
+            Expression expr = parseCached(expressionString);
             return getMean(expr);
 
         } catch (Exception e) {
@@ -182,9 +452,45 @@ public class StoexEvaluator {
         }
     }
 
+    /**
+     * @return The cache holding the parsed expressions of this evaluator, e.g. to
+     *         inspect its hit, miss and eviction counters.
+     */
+    public ExpressionCache getExpressionCache() {
+        return expressionCache;
+    }
+
+    /**
+     * Runs an evaluation with a sampling context for the given settings.
+     * 
+     * @param stream The row of a batch, or null for a single evaluation.
+     */
+    private <T> T sample(EvaluationSettings settings, Long stream, Supplier<T> evaluation) {
+        return settings.createSamplingContext(stream).call(evaluation);
+    }
+
+    private ExpressionEvaluationVisitor createVisitor(Map<String, Object> variables) {
+        return new ExpressionEvaluationVisitor(new EvaluationContext(variables, globalVariables, this::parseCached));
+    }
+
+    /**
+     * Evaluation results may be nodes of the cached AST (e.g. a distribution
+     * literal evaluates to itself). Those are copied so callers can never modify
+     * the shared cached expression.
+     */
+    private Object detachFromCache(Expression cached, Object result) {
+        if (result instanceof EObject eObject && EcoreUtil.isAncestor(cached, eObject)) {
+            return EcoreUtil.copy(eObject);
+        }
+        return result;
+    }
+
     private Expression wrapResult(Object result) {
         if (result instanceof Expression expr) {
             return expr;
+        } else if (result instanceof MassFunction massFunction) {
+            // discrete results stay primitive until here
+            return massFunction.toPMF();
         } else if (result instanceof Integer integer) {
             IntLiteral intLiteral = StoexFactory.eINSTANCE.createIntLiteral();
             intLiteral.setValue(integer);
@@ -206,16 +512,87 @@ public class StoexEvaluator {
         }
     }
 
+    /**
+     * Estimates how many bytes the Xtext node model of the given expression
+     * takes, i.e. how much memory {@link ParseMode#EVALUATION_ONLY} saves for it.
+     * 
+     * @param expressionString The Stoex expression as a string.
+     * @return The estimated size of the node model in bytes.
+     */
+    public long estimateNodeModelBytes(String expressionString) {
+        return NodeModelFootprint.estimateBytes(runtime.parse(expressionString).getRootNode());
+    }
+
+    /**
+     * @return The estimated number of bytes of node model dropped by all parses
+     *         in {@link ParseMode#EVALUATION_ONLY} so far.
+     */
+    public long getDroppedNodeModelBytes() {
+        return droppedNodeModelBytes.sum();
+    }
+
+    Expression parseCached(String input) {
+        return expressionCache.computeIfAbsent(input, expressionString -> {
+            try {
+                if (parseMode == ParseMode.FULL) {
+                    // simplifying would leave the node model out of sync with the AST
+                    return parseExpression(expressionString);
+                }
+                return new ExpressionSimplificationVisitor().simplifyInPlace(parseForEvaluation(expressionString));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to parse expression: " + expressionString, e);
+            }
+        });
+    }
+
+    /**
+     * Parses the given string in a temporary resource. The resource is unloaded
+     * and removed from the resource set right after parsing, so the resource set
+     * does not grow with the number of parsed expressions; the returned AST is
+     * detached from any resource. The resource set is not thread-safe, so
+     * access to it is serialized.
+     */
     private Expression parseExpression(String input) throws Exception {
         // Create unique URI to avoid conflicts
-        URI uri = URI.createURI("expression" + (++expressionCounter) + ".stoex");
-        Resource resource = resourceSet.createResource(uri);
-        resource.load(new ByteArrayInputStream(input.getBytes()), null);
+        URI uri = URI.createURI("expression" + expressionCounter.incrementAndGet() + ".stoex");
+        synchronized (resourceSet) {
+            Resource resource = resourceSet.createResource(uri);
+            try {
+                resource.load(new ByteArrayInputStream(input.getBytes()), null);
+
+                if (!resource.getErrors().isEmpty()) {
+                    throw new RuntimeException("Parse errors: " + resource.getErrors());
+                }
 
-        if (!resource.getErrors().isEmpty()) {
-            throw new RuntimeException("Parse errors: " + resource.getErrors());
+                Expression expression = (Expression) resource.getContents().get(0);
+                EcoreUtil.remove(expression);
+                return expression;
+            } finally {
+                resource.unload();
+                resourceSet.getResources().remove(resource);
+            }
         }
+    }
 
-        return (Expression) resource.getContents().get(0);
+    /**
+     * Parses the given string without a resource and strips the node model from
+     * the resulting AST, leaving only the semantic Expression tree.
+     */
+    private Expression parseForEvaluation(String input) {
+        IParseResult result = runtime.parse(input);
+        droppedNodeModelBytes.add(NodeModelFootprint.estimateBytes(result.getRootNode()));
+        return StoexLanguageRuntime.dropNodeModel(result);
+    }
+
+    /**
+     * @return The number of resources currently held by the internal resource
+     *         set.
+     */
+    int getResourceCount() {
+        synchronized (resourceSet) {
+            return resourceSet.getResources().size();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,128 @@
+package tools.vitruv.stoex.interpreter;
+
+import java.io.StringReader;
+
+import org.eclipse.xtext.nodemodel.INode;
+import org.eclipse.xtext.parser.IParseResult;
+import org.eclipse.xtext.parser.IParser;
+import org.eclipse.xtext.resource.XtextResourceSet;
+import org.eclipse.xtext.serializer.ISerializer;
+
+import com.google.inject.Injector;
+
+import tools.vitruv.stoex.StoexStandaloneSetup;
+import tools.vitruv.stoex.interpreter.visitors.ExpressionSimplificationVisitor;
+import tools.vitruv.stoex.stoex.Expression;
+
+/**
+ * Process-wide runtime of the Stoex language.
+ *
+ * Creating the Guice injector and registering the EMF packages is expensive,
+ * so it is done once, lazily on first use, and shared by all evaluators and
+ * visitors. The parser and serializer handed out by the runtime are stateless
+ * and can be used from many threads; resource sets are not thread-safe and
+ * are therefore created per caller.
+ */
+public final class StoexLanguageRuntime {
+
+    private static final class Holder {
+        private static final StoexLanguageRuntime INSTANCE = new StoexLanguageRuntime();
+    }
+
+    private final Injector injector;
+    private final IParser parser;
+    private final ISerializer serializer;
+    private final ExpressionCache expressionCache = new ExpressionCache();
+
+    private StoexLanguageRuntime() {
+        this.injector = new StoexStandaloneSetup().createInjectorAndDoEMFRegistration();
+        this.parser = injector.getInstance(IParser.class);
+        this.serializer = injector.getInstance(ISerializer.class);
+    }
+
+    public static StoexLanguageRuntime getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    public Injector getInjector() {
+        return injector;
+    }
+
+    public IParser getParser() {
+        return parser;
+    }
+
+    public ISerializer getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * @return A new resource set for the Stoex language. Resource sets must not
+     *         be shared between threads.
+     */
+    public XtextResourceSet createResourceSet() {
+        return injector.getInstance(XtextResourceSet.class);
+    }
+
+    /**
+     * Parses the given string directly with the parser, without creating a
+     * resource.
+     *
+     * @param input The Stoex expression as a string.
+     * @return The parse result including the node model.
+     * @throws RuntimeException if the input contains syntax errors.
+     */
+    public IParseResult parse(String input) {
+        IParseResult result = parser.parse(new StringReader(input));
+        if (result.hasSyntaxErrors()) {
+            StringBuilder errors = new StringBuilder();
+            for (INode node : result.getSyntaxErrors()) {
+                errors.append(node.getSyntaxErrorMessage().getMessage()).append("; ");
+            }
+            throw new RuntimeException("Parse errors: " + errors);
+        }
+        if (!(result.getRootASTElement() instanceof Expression)) {
+            throw new RuntimeException("Parse errors: no expression found in '" + input + "'");
+        }
+        return result;
+    }
+
+    /**
+     * Parses the given string for evaluation only, i.e. without resource and
+     * without node model.
+     *
+     * @param input The Stoex expression as a string.
+     * @return The semantic Expression tree.
+     */
+    public Expression parseForEvaluation(String input) {
+        return dropNodeModel(parse(input));
+    }
+
+    /**
+     * Like {@link #parseForEvaluation(String)}, but the result is taken from a
+     * process-wide expression cache and simplified by the
+     * {@link ExpressionSimplificationVisitor}. The returned expression is shared
+     * and must not be modified.
+     *
+     * @param input The Stoex expression as a string.
+     * @return The shared semantic Expression tree.
+     */
+    public Expression parseCached(String input) {
+        return expressionCache.computeIfAbsent(input,
+                expression -> new ExpressionSimplificationVisitor().simplifyInPlace(parseForEvaluation(expression)));
+    }
+
+    /**
+     * Strips the node model from the AST of a parse result.
+     *
+     * @param result The parse result.
+     * @return The root of the semantic Expression tree without node model.
+     */
+    public static Expression dropNodeModel(IParseResult result) {
+        Expression expression = (Expression) result.getRootASTElement();
+        expression.eAdapters().removeIf(INode.class::isInstance);
+        expression.eAllContents().forEachRemaining(
+                eObject -> eObject.eAdapters().removeIf(INode.class::isInstance));
+        return expression;
+    }
+}
@@ -0,0 +1,449 @@
+package tools.vitruv.stoex.interpreter.compiler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import tools.vitruv.stoex.interpreter.AdapterLocks;
+import tools.vitruv.stoex.interpreter.compiler.CompiledExpression.BooleanNode;
+import tools.vitruv.stoex.interpreter.compiler.CompiledExpression.DoubleNode;
+import tools.vitruv.stoex.interpreter.compiler.CompiledExpression.IntNode;
+import tools.vitruv.stoex.stoex.BoolLiteral;
+import tools.vitruv.stoex.stoex.BooleanExpression;
+import tools.vitruv.stoex.stoex.BooleanOperatorExpression;
+import tools.vitruv.stoex.stoex.CompareExpression;
+import tools.vitruv.stoex.stoex.DoubleLiteral;
+import tools.vitruv.stoex.stoex.Expression;
+import tools.vitruv.stoex.stoex.FunctionLiteral;
+import tools.vitruv.stoex.stoex.IfElseExpression;
+import tools.vitruv.stoex.stoex.IntLiteral;
+import tools.vitruv.stoex.stoex.NegativeExpression;
+import tools.vitruv.stoex.stoex.NotExpression;
+import tools.vitruv.stoex.stoex.Parenthesis;
+import tools.vitruv.stoex.stoex.PowerExpression;
+import tools.vitruv.stoex.stoex.ProductExpression;
+import tools.vitruv.stoex.stoex.TermExpression;
+import tools.vitruv.stoex.stoex.Variable;
+import tools.vitruv.stoex.stoex.util.StoexSwitch;
+
+/**
+ * Compiles expressions over scalar variables into hidden classes, generated
+ * with ASM, that implement the primitive node interfaces of
+ * {@link CompiledExpression}. The whole expression becomes a single method, so
+ * the JIT can inline the arithmetic, the {@link Math} functions and the
+ * conditionals.
+ *
+ * Generating and loading a class is far more expensive than building closures
+ * (see {@link ExpressionCompiler}), so compiled expressions are cached on the
+ * expression itself, per set of variable types. The cache is dropped when the
+ * expression is modified, and it is collected together with the expression;
+ * generated classes are unloaded once they are no longer used.
+ *
+ * Expressions that are not statically scalar are handed to the
+ * {@link ExpressionCompiler}, which falls back to the visitor. The same
+ * happens if ASM is not on the class path.
+ */
+public final class BytecodeCompiler {
+
+    private static final boolean ASM_AVAILABLE = isAsmAvailable();
+
+    private static final String GENERATED_NAME = "tools/vitruv/stoex/interpreter/compiler/GeneratedExpression";
+    private static final String SELF = Type.getInternalName(BytecodeCompiler.class);
+    private static final String MATH = Type.getInternalName(Math.class);
+
+    private BytecodeCompiler() {
+    }
+
+    /**
+     * @param expression    The expression to compile.
+     * @param variableTypes The types of all variables the expression may
+     *                      reference. The iteration order defines the slot
+     *                      order.
+     * @return The compiled expression, cached per expression and variable
+     *         types.
+     */
+    public static CompiledExpression compile(Expression expression, Map<String, ScalarType> variableTypes) {
+        Map<String, ScalarType> types = new LinkedHashMap<>(variableTypes);
+        if (!ASM_AVAILABLE) {
+            return ExpressionCompiler.compile(expression, types);
+        }
+        List<Map.Entry<String, ScalarType>> key = types.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue()))
+                .toList();
+        return cacheOf(expression).compiled.computeIfAbsent(key, k -> generate(expression, types));
+    }
+
+    /**
+     * @return Whether ASM is available, i.e. whether expressions are compiled to
+     *         bytecode at all.
+     */
+    public static boolean isAvailable() {
+        return ASM_AVAILABLE;
+    }
+
+    private static boolean isAsmAvailable() {
+        try {
+            Class.forName("org.objectweb.asm.ClassWriter", false, BytecodeCompiler.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static CompiledExpressionCache cacheOf(Expression expression) {
+        // cached expressions may be shared between threads
+        synchronized (AdapterLocks.of(expression)) {
+            CompiledExpressionCache cache = (CompiledExpressionCache) EcoreUtil.getExistingAdapter(expression,
+                    CompiledExpressionCache.class);
+            if (cache == null) {
+                cache = new CompiledExpressionCache();
+                expression.eAdapters().add(cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Compiled expressions attached to the root of an expression; cleared on any
+     * change within the expression.
+     */
+    private static final class CompiledExpressionCache extends EContentAdapter {
+
+        private final Map<List<Map.Entry<String, ScalarType>>, CompiledExpression> compiled = new ConcurrentHashMap<>();
+
+        @Override
+        public void notifyChanged(Notification notification) {
+            super.notifyChanged(notification);
+            if (!notification.isTouch()) {
+                compiled.clear();
+            }
+        }
+
+        @Override
+        public boolean isAdapterForType(Object type) {
+            return type == CompiledExpressionCache.class;
+        }
+    }
+
+    private static CompiledExpression generate(Expression expression, Map<String, ScalarType> types) {
+        ScalarTypeInference inference = new ScalarTypeInference(types);
+        ScalarType resultType = inference.typeOf(expression);
+        if (resultType == null) {
+            return ExpressionCompiler.compile(expression, types);
+        }
+        Class<?> nodeType = switch (resultType) {
+            case DOUBLE -> DoubleNode.class;
+            case INT -> IntNode.class;
+            case BOOLEAN -> BooleanNode.class;
+        };
+
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // the generated code only deals with primitives and the slot array
+                return "java/lang/Object";
+            }
+        };
+        writer.visit(Opcodes.V17, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, GENERATED_NAME, null, "java/lang/Object",
+                new String[] { Type.getInternalName(nodeType) });
+
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor eval = writer.visitMethod(Opcodes.ACC_PUBLIC, "eval",
+                "([D)" + Type.getDescriptor(resultType == ScalarType.DOUBLE ? double.class
+                        : resultType == ScalarType.INT ? int.class : boolean.class),
+                null, null);
+        eval.visitCode();
+        new Generator(eval, inference, types).emit(expression, resultType);
+        eval.visitInsn(resultType == ScalarType.DOUBLE ? Opcodes.DRETURN : Opcodes.IRETURN);
+        eval.visitMaxs(0, 0);
+        eval.visitEnd();
+        writer.visitEnd();
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(writer.toByteArray(), true);
+            Object root = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+            return new CompiledExpression(expression, types, resultType, root);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to generate bytecode for expression", e);
+        }
+    }
+
+    // Helpers called by the generated code, matching the visitor's semantics
+
+    static int divide(int left, int right) {
+        if (right == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        return left / right;
+    }
+
+    static double divide(double left, double right) {
+        if (right == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        return left / right;
+    }
+
+    static boolean equal(double left, double right) {
+        return Math.abs(left - right) < 1e-10;
+    }
+
+    static boolean notEqual(double left, double right) {
+        return Math.abs(left - right) >= 1e-10;
+    }
+
+    /**
+     * Emits the code of a node. Every case leaves the value of the node on the
+     * operand stack, with the type inferred for the node (booleans as int 0 or
+     * 1); {@link #emit(EObject, ScalarType)} converts it as needed.
+     */
+    private static final class Generator extends StoexSwitch<Boolean> {
+
+        private final MethodVisitor code;
+        private final ScalarTypeInference inference;
+        private final Map<String, Integer> slots = new LinkedHashMap<>();
+
+        Generator(MethodVisitor code, ScalarTypeInference inference, Map<String, ScalarType> types) {
+            this.code = code;
+            this.inference = inference;
+            for (String name : types.keySet()) {
+                slots.put(name, slots.size());
+            }
+        }
+
+        void emit(EObject node, ScalarType target) {
+            doSwitch(node);
+            convert(inference.typeOf(node), target);
+        }
+
+        private void convert(ScalarType from, ScalarType to) {
+            if (from == to) {
+                return;
+            }
+            switch (to) {
+                // booleans are 0 or 1, so both convert with I2D
+                case DOUBLE -> code.visitInsn(Opcodes.I2D);
+                case BOOLEAN -> {
+                    if (from == ScalarType.DOUBLE) {
+                        code.visitInsn(Opcodes.DCONST_0);
+                        code.visitInsn(Opcodes.DCMPL);
+                    }
+                    intToBoolean();
+                }
+                case INT -> throw new IllegalStateException("Cannot convert " + from + " to int");
+            }
+        }
+
+        /** Replaces the int on the stack with 1 if it is not 0. */
+        private void intToBoolean() {
+            Label nonZero = new Label();
+            Label end = new Label();
+            code.visitJumpInsn(Opcodes.IFNE, nonZero);
+            code.visitInsn(Opcodes.ICONST_0);
+            code.visitJumpInsn(Opcodes.GOTO, end);
+            code.visitLabel(nonZero);
+            code.visitInsn(Opcodes.ICONST_1);
+            code.visitLabel(end);
+        }
+
+        private void callStatic(String owner, String name, String descriptor) {
+            code.visitMethodInsn(Opcodes.INVOKESTATIC, owner, name, descriptor, false);
+        }
+
+        private ScalarType typeOf(EObject node) {
+            return inference.typeOf(node);
+        }
+
+        @Override
+        public Boolean caseIntLiteral(IntLiteral object) {
+            code.visitLdcInsn(object.getValue());
+            return true;
+        }
+
+        @Override
+        public Boolean caseDoubleLiteral(DoubleLiteral object) {
+            code.visitLdcInsn(object.getValue());
+            return true;
+        }
+
+        @Override
+        public Boolean caseBoolLiteral(BoolLiteral object) {
+            code.visitInsn(object.isValue() ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+            return true;
+        }
+
+        @Override
+        public Boolean caseVariable(Variable object) {
+            String name = ScalarNodeSwitch.resolveVariableName(object.getId_Variable());
+            Integer slot = slots.get(name);
+            if (slot == null) {
+                code.visitLdcInsn(ScalarTypeInference.CONSTANTS.get(name));
+                return true;
+            }
+            code.visitVarInsn(Opcodes.ALOAD, 1);
+            code.visitLdcInsn(slot);
+            code.visitInsn(Opcodes.DALOAD);
+            switch (typeOf(object)) {
+                case INT -> code.visitInsn(Opcodes.D2I);
+                case BOOLEAN -> convert(ScalarType.DOUBLE, ScalarType.BOOLEAN);
+                case DOUBLE -> {
+                    // stored as is
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Boolean caseParenthesis(Parenthesis object) {
+            doSwitch(object.getInnerExpression());
+            return true;
+        }
+
+        @Override
+        public Boolean caseTermExpression(TermExpression object) {
+            ScalarType type = typeOf(object);
+            emit(object.getLeft(), type);
+            emit(object.getRight(), type);
+            boolean isInt = type == ScalarType.INT;
+            switch (object.getOperation()) {
+                case ADD -> code.visitInsn(isInt ? Opcodes.IADD : Opcodes.DADD);
+                case SUB -> code.visitInsn(isInt ? Opcodes.ISUB : Opcodes.DSUB);
+                default -> throw new UnsupportedOperationException("Unknown term operation: " + object.getOperation());
+            }
+            return true;
+        }
+
+        @Override
+        public Boolean caseProductExpression(ProductExpression object) {
+            ScalarType type = typeOf(object);
+            emit(object.getLeft(), type);
+            emit(object.getRight(), type);
+            boolean isInt = type == ScalarType.INT;
+            switch (object.getOperation()) {
+                case MULT -> code.visitInsn(isInt ? Opcodes.IMUL : Opcodes.DMUL);
+                case DIV -> callStatic(SELF, "divide", isInt ? "(II)I" : "(DD)D");
+                case MOD -> code.visitInsn(isInt ? Opcodes.IREM : Opcodes.DREM);
+                default -> throw new UnsupportedOperationException(
+                        "Unknown product operation: " + object.getOperation());
+            }
+            return true;
+        }
+
+        @Override
+        public Boolean casePowerExpression(PowerExpression object) {
+            emit(object.getBase(), ScalarType.DOUBLE);
+            emit(object.getExponent(), ScalarType.DOUBLE);
+            callStatic(MATH, "pow", "(DD)D");
+            if (typeOf(object) == ScalarType.INT) {
+                code.visitInsn(Opcodes.D2I);
+            }
+            return true;
+        }
+
+        @Override
+        public Boolean caseNegativeExpression(NegativeExpression object) {
+            emit(object.getInner(), ScalarType.DOUBLE);
+            code.visitInsn(Opcodes.DNEG);
+            return true;
+        }
+
+        @Override
+        public Boolean caseFunctionLiteral(FunctionLiteral object) {
+            List<BooleanExpression> parameters = object.getParameters_FunctionLiteral();
+            for (BooleanExpression parameter : parameters) {
+                emit(parameter, ScalarType.DOUBLE);
+            }
+            // sin, cos, sqrt, abs, max and min, as checked by the type inference
+            callStatic(MATH, object.getId().toLowerCase(), parameters.size() == 1 ? "(D)D" : "(DD)D");
+            return true;
+        }
+
+        @Override
+        public Boolean caseCompareExpression(CompareExpression object) {
+            emit(object.getLeft(), ScalarType.DOUBLE);
+            emit(object.getRight(), ScalarType.DOUBLE);
+            // the same instructions javac emits, for the same NaN behavior
+            switch (object.getOperation()) {
+                case GREATER -> compare(Opcodes.DCMPL, Opcodes.IFLE);
+                case GREATEREQUAL -> compare(Opcodes.DCMPL, Opcodes.IFLT);
+                case LESS -> compare(Opcodes.DCMPG, Opcodes.IFGE);
+                case LESSEQUAL -> compare(Opcodes.DCMPG, Opcodes.IFGT);
+                case EQUALS -> callStatic(SELF, "equal", "(DD)Z");
+                case NOTEQUAL -> callStatic(SELF, "notEqual", "(DD)Z");
+                default -> throw new UnsupportedOperationException(
+                        "Unknown comparison operation: " + object.getOperation());
+            }
+            return true;
+        }
+
+        private void compare(int compareInstruction, int jumpIfFalse) {
+            Label isFalse = new Label();
+            Label end = new Label();
+            code.visitInsn(compareInstruction);
+            code.visitJumpInsn(jumpIfFalse, isFalse);
+            code.visitInsn(Opcodes.ICONST_1);
+            code.visitJumpInsn(Opcodes.GOTO, end);
+            code.visitLabel(isFalse);
+            code.visitInsn(Opcodes.ICONST_0);
+            code.visitLabel(end);
+        }
+
+        @Override
+        public Boolean caseBooleanOperatorExpression(BooleanOperatorExpression object) {
+            // the visitor evaluates both operands, so no short circuit here either
+            emit(object.getLeft(), ScalarType.BOOLEAN);
+            emit(object.getRight(), ScalarType.BOOLEAN);
+            switch (object.getOperation()) {
+                case AND -> code.visitInsn(Opcodes.IAND);
+                case OR -> code.visitInsn(Opcodes.IOR);
+                case XOR -> code.visitInsn(Opcodes.IXOR);
+                default -> throw new UnsupportedOperationException(
+                        "Unknown boolean operation: " + object.getOperation());
+            }
+            return true;
+        }
+
+        @Override
+        public Boolean caseNotExpression(NotExpression object) {
+            emit(object.getInner(), ScalarType.BOOLEAN);
+            code.visitInsn(Opcodes.ICONST_1);
+            code.visitInsn(Opcodes.IXOR);
+            return true;
+        }
+
+        @Override
+        public Boolean caseIfElseExpression(IfElseExpression object) {
+            ScalarType type = typeOf(object);
+            Label elseBranch = new Label();
+            Label end = new Label();
+            emit(object.getConditionExpression(), ScalarType.BOOLEAN);
+            code.visitJumpInsn(Opcodes.IFEQ, elseBranch);
+            emit(object.getIfExpression(), type);
+            code.visitJumpInsn(Opcodes.GOTO, end);
+            code.visitLabel(elseBranch);
+            emit(object.getElseExpression(), type);
+            code.visitLabel(end);
+            return true;
+        }
+    }
+}
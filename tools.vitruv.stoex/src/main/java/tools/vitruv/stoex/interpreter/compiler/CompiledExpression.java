@@ -0,0 +1,185 @@
+package tools.vitruv.stoex.interpreter.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+import tools.vitruv.stoex.interpreter.EvaluationContext;
+import tools.vitruv.stoex.interpreter.visitors.ExpressionEvaluationVisitor;
+import tools.vitruv.stoex.stoex.Expression;
+
+/**
+ * An expression compiled by the {@link ExpressionCompiler} or the
+ * {@link BytecodeCompiler} for a fixed set of scalar variables.
+ *
+ * Variable values are passed in a slot array (see {@link #newSlots()} and
+ * {@link #getSlot(String)}); ints and booleans are stored as doubles (1.0 for
+ * true). If the expression could be compiled, it is evaluated by a tree of
+ * primitive closures or by a generated class, without boxing or allocation.
+ * Otherwise the slots are bound as variables and the expression is evaluated
+ * by the {@link ExpressionEvaluationVisitor}. Either way the results are the same as
+ * those of the visitor.
+ *
+ * A compiled expression holds no mutable state and can be shared between
+ * threads; slot arrays cannot.
+ */
+public final class CompiledExpression {
+
+    interface DoubleNode {
+        double eval(double[] slots);
+    }
+
+    interface IntNode {
+        int eval(double[] slots);
+    }
+
+    interface BooleanNode {
+        boolean eval(double[] slots);
+    }
+
+    private final Expression expression;
+    private final List<String> variables;
+    private final List<ScalarType> variableTypes;
+    private final ScalarType resultType;
+    private final DoubleNode doubleRoot;
+    private final IntNode intRoot;
+    private final BooleanNode booleanRoot;
+
+    CompiledExpression(Expression expression, Map<String, ScalarType> variableTypes, ScalarType resultType,
+            Object root) {
+        this.expression = expression;
+        this.variables = List.copyOf(variableTypes.keySet());
+        this.variableTypes = Collections.unmodifiableList(new ArrayList<>(variableTypes.values()));
+        this.resultType = resultType;
+        this.doubleRoot = resultType == ScalarType.DOUBLE ? (DoubleNode) root : null;
+        this.intRoot = resultType == ScalarType.INT ? (IntNode) root : null;
+        this.booleanRoot = resultType == ScalarType.BOOLEAN ? (BooleanNode) root : null;
+    }
+
+    /**
+     * @return Whether the expression was compiled, false if it is evaluated by
+     *         the visitor.
+     */
+    public boolean isCompiled() {
+        return resultType != null;
+    }
+
+    /**
+     * @return The static result type, or null if the expression is evaluated by
+     *         the visitor.
+     */
+    public ScalarType getResultType() {
+        return resultType;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return The root node of the compiled expression, or null if it is
+     *         evaluated by the visitor.
+     */
+    Object getRoot() {
+        if (doubleRoot != null) {
+            return doubleRoot;
+        }
+        return intRoot != null ? intRoot : booleanRoot;
+    }
+
+    /**
+     * @return The variable names in slot order.
+     */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return The slot index of the given variable, or -1 if it is unknown.
+     */
+    public int getSlot(String variable) {
+        return variables.indexOf(variable);
+    }
+
+    /**
+     * @return A new slot array with all variables set to 0.
+     */
+    public double[] newSlots() {
+        return new double[variables.size()];
+    }
+
+    /**
+     * Stores a variable value in a slot array.
+     *
+     * @throws IllegalArgumentException if the variable is unknown or the value
+     *                                  does not have the declared type.
+     */
+    public void setSlot(double[] slots, String variable, Object value) {
+        int slot = getSlot(variable);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Unknown variable: " + variable);
+        }
+        ScalarType type = variableTypes.get(slot);
+        if (ScalarType.of(value) != type) {
+            throw new IllegalArgumentException("Variable " + variable + " is declared as " + type + ": " + value);
+        }
+        slots[slot] = type.toSlot(value);
+    }
+
+    /**
+     * @param slots The variable values.
+     * @return The result as the visitor returns it, i.e. Integer, Double or
+     *         Boolean for scalar expressions.
+     */
+    public Object evaluate(double[] slots) {
+        if (resultType == null) {
+            return interpret(slots);
+        }
+        return switch (resultType) {
+            case DOUBLE -> doubleRoot.eval(slots);
+            case INT -> intRoot.eval(slots);
+            case BOOLEAN -> booleanRoot.eval(slots);
+        };
+    }
+
+    /**
+     * @param slots The variable values.
+     * @return The result converted to a double (1.0 for true).
+     * @throws IllegalArgumentException if the result is not a scalar.
+     */
+    public double evaluateDouble(double[] slots) {
+        if (resultType == null) {
+            Object result = interpret(slots);
+            if (result instanceof Number number) {
+                return number.doubleValue();
+            } else if (result instanceof Boolean bool) {
+                return bool ? 1.0 : 0.0;
+            }
+            throw new IllegalArgumentException("Cannot convert " + result + " to double");
+        }
+        return switch (resultType) {
+            case DOUBLE -> doubleRoot.eval(slots);
+            case INT -> intRoot.eval(slots);
+            case BOOLEAN -> booleanRoot.eval(slots) ? 1.0 : 0.0;
+        };
+    }
+
+    private Object interpret(double[] slots) {
+        Map<String, Object> bindings = new HashMap<>();
+        for (int i = 0; i < variables.size(); i++) {
+            bindings.put(variables.get(i), variableTypes.get(i).fromSlot(slots[i]));
+        }
+        Object result = new ExpressionEvaluationVisitor(new EvaluationContext(bindings, Map.of()))
+                .doSwitch(expression);
+        if (result instanceof EObject eObject && EcoreUtil.isAncestor(expression, eObject)) {
+            // never hand out nodes of the compiled expression
+            return EcoreUtil.copy(eObject);
+        }
+        return result;
+    }
+}
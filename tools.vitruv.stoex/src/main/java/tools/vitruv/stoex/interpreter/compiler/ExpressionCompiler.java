@@ -0,0 +1,37 @@
+package tools.vitruv.stoex.interpreter.compiler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import tools.vitruv.stoex.stoex.Expression;
+
+/**
+ * Compiles expressions over scalar variables into trees of primitive closures.
+ *
+ * Only expressions whose nodes are all statically scalar (int, double or
+ * boolean) are compiled; others, e.g. with distributions, strings or an
+ * if-else with branches of different types, fall back to the visitor.
+ */
+public final class ExpressionCompiler {
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * @param expression    The expression to compile. It must not be modified
+     *                      while the compiled expression is in use.
+     * @param variableTypes The types of all variables the expression may
+     *                      reference. The iteration order defines the slot
+     *                      order.
+     * @return The compiled expression; it falls back to the visitor if the
+     *         expression is not statically scalar.
+     */
+    public static CompiledExpression compile(Expression expression, Map<String, ScalarType> variableTypes) {
+        Map<String, ScalarType> types = new LinkedHashMap<>(variableTypes);
+        ScalarNodeSwitch.Typed root = new ScalarNodeSwitch(types).doSwitch(expression);
+        if (root == null) {
+            return new CompiledExpression(expression, types, null, null);
+        }
+        return new CompiledExpression(expression, types, root.type(), root.node());
+    }
+}
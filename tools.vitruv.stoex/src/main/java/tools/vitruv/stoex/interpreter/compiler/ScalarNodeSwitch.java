@@ -0,0 +1,326 @@
+package tools.vitruv.stoex.interpreter.compiler;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+
+import tools.vitruv.stoex.interpreter.compiler.CompiledExpression.BooleanNode;
+import tools.vitruv.stoex.interpreter.compiler.CompiledExpression.DoubleNode;
+import tools.vitruv.stoex.interpreter.compiler.CompiledExpression.IntNode;
+import tools.vitruv.stoex.stoex.AbstractNamedReference;
+import tools.vitruv.stoex.stoex.BoolLiteral;
+import tools.vitruv.stoex.stoex.BooleanExpression;
+import tools.vitruv.stoex.stoex.BooleanOperatorExpression;
+import tools.vitruv.stoex.stoex.CompareExpression;
+import tools.vitruv.stoex.stoex.DoubleLiteral;
+import tools.vitruv.stoex.stoex.FunctionLiteral;
+import tools.vitruv.stoex.stoex.IfElseExpression;
+import tools.vitruv.stoex.stoex.IntLiteral;
+import tools.vitruv.stoex.stoex.NamespaceReference;
+import tools.vitruv.stoex.stoex.NegativeExpression;
+import tools.vitruv.stoex.stoex.NotExpression;
+import tools.vitruv.stoex.stoex.Parenthesis;
+import tools.vitruv.stoex.stoex.PowerExpression;
+import tools.vitruv.stoex.stoex.ProductExpression;
+import tools.vitruv.stoex.stoex.TermExpression;
+import tools.vitruv.stoex.stoex.Variable;
+import tools.vitruv.stoex.stoex.VariableReference;
+import tools.vitruv.stoex.stoex.util.StoexSwitch;
+
+/**
+ * Builds closures for the nodes of an expression, with the types inferred by
+ * the {@link ScalarTypeInference}. Returns null for nodes that are not
+ * statically scalar.
+ */
+final class ScalarNodeSwitch extends StoexSwitch<ScalarNodeSwitch.Typed> {
+
+    /**
+     * A compiled node together with its static type; the node is a
+     * {@link DoubleNode}, {@link IntNode} or {@link BooleanNode} accordingly.
+     */
+    record Typed(ScalarType type, Object node) {
+    }
+
+    private final Map<String, Integer> slots = new LinkedHashMap<>();
+    private final ScalarTypeInference inference;
+
+    ScalarNodeSwitch(Map<String, ScalarType> variableTypes) {
+        this.inference = new ScalarTypeInference(variableTypes);
+        for (String name : variableTypes.keySet()) {
+            slots.put(name, slots.size());
+        }
+    }
+
+    @Override
+    public Typed doSwitch(EObject node) {
+        // the cases below rely on the inference for the operands being scalar
+        return inference.typeOf(node) == null ? null : super.doSwitch(node);
+    }
+
+    // Literals and variables
+
+    @Override
+    public Typed caseIntLiteral(IntLiteral object) {
+        int value = object.getValue();
+        return intNode(s -> value);
+    }
+
+    @Override
+    public Typed caseDoubleLiteral(DoubleLiteral object) {
+        double value = object.getValue();
+        return doubleNode(s -> value);
+    }
+
+    @Override
+    public Typed caseBoolLiteral(BoolLiteral object) {
+        boolean value = object.isValue();
+        return booleanNode(s -> value);
+    }
+
+    @Override
+    public Typed caseVariable(Variable object) {
+        String name = resolveVariableName(object.getId_Variable());
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            double value = ScalarTypeInference.CONSTANTS.get(name);
+            return doubleNode(s -> value);
+        }
+        int index = slot;
+        return switch (inference.typeOf(object)) {
+            case INT -> intNode(s -> (int) s[index]);
+            case DOUBLE -> doubleNode(s -> s[index]);
+            case BOOLEAN -> booleanNode(s -> s[index] != 0.0);
+        };
+    }
+
+    static String resolveVariableName(AbstractNamedReference ref) {
+        if (ref instanceof VariableReference variableReference) {
+            return variableReference.getReferenceName();
+        } else if (ref instanceof NamespaceReference nsRef) {
+            return nsRef.getReferenceName() + "." + resolveVariableName(nsRef.getInnerReference_NamespaceReference());
+        }
+        throw new IllegalArgumentException("Unknown reference type: " + ref.getClass().getSimpleName());
+    }
+
+    @Override
+    public Typed caseParenthesis(Parenthesis object) {
+        return doSwitch(object.getInnerExpression());
+    }
+
+    // Arithmetic operations
+
+    @Override
+    public Typed caseTermExpression(TermExpression object) {
+        Typed left = doSwitch(object.getLeft());
+        Typed right = doSwitch(object.getRight());
+        if (inference.typeOf(object) == ScalarType.INT) {
+            IntNode l = (IntNode) left.node();
+            IntNode r = (IntNode) right.node();
+            return switch (object.getOperation()) {
+                case ADD -> intNode(s -> l.eval(s) + r.eval(s));
+                case SUB -> intNode(s -> l.eval(s) - r.eval(s));
+                default -> null;
+            };
+        }
+        DoubleNode l = asDouble(left);
+        DoubleNode r = asDouble(right);
+        return switch (object.getOperation()) {
+            case ADD -> doubleNode(s -> l.eval(s) + r.eval(s));
+            case SUB -> doubleNode(s -> l.eval(s) - r.eval(s));
+            default -> null;
+        };
+    }
+
+    @Override
+    public Typed caseProductExpression(ProductExpression object) {
+        Typed left = doSwitch(object.getLeft());
+        Typed right = doSwitch(object.getRight());
+        if (inference.typeOf(object) == ScalarType.INT) {
+            IntNode l = (IntNode) left.node();
+            IntNode r = (IntNode) right.node();
+            return switch (object.getOperation()) {
+                case MULT -> intNode(s -> l.eval(s) * r.eval(s));
+                case DIV -> intNode(s -> divide(l.eval(s), r.eval(s)));
+                case MOD -> intNode(s -> l.eval(s) % r.eval(s));
+                default -> null;
+            };
+        }
+        DoubleNode l = asDouble(left);
+        DoubleNode r = asDouble(right);
+        return switch (object.getOperation()) {
+            case MULT -> doubleNode(s -> l.eval(s) * r.eval(s));
+            case DIV -> doubleNode(s -> divide(l.eval(s), r.eval(s)));
+            case MOD -> doubleNode(s -> l.eval(s) % r.eval(s));
+            default -> null;
+        };
+    }
+
+    private static int divide(int left, int right) {
+        if (right == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        return left / right;
+    }
+
+    private static double divide(double left, double right) {
+        if (right == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        return left / right;
+    }
+
+    @Override
+    public Typed casePowerExpression(PowerExpression object) {
+        Typed base = doSwitch(object.getBase());
+        Typed exponent = doSwitch(object.getExponent());
+        if (inference.typeOf(object) == ScalarType.INT) {
+            IntNode b = (IntNode) base.node();
+            IntNode e = (IntNode) exponent.node();
+            return intNode(s -> (int) Math.pow(b.eval(s), e.eval(s)));
+        }
+        DoubleNode b = asDouble(base);
+        DoubleNode e = asDouble(exponent);
+        return doubleNode(s -> Math.pow(b.eval(s), e.eval(s)));
+    }
+
+    @Override
+    public Typed caseNegativeExpression(NegativeExpression object) {
+        DoubleNode i = asDouble(doSwitch(object.getInner()));
+        return doubleNode(s -> -i.eval(s));
+    }
+
+    @Override
+    public Typed caseFunctionLiteral(FunctionLiteral object) {
+        List<BooleanExpression> parameters = object.getParameters_FunctionLiteral();
+        DoubleNode[] args = new DoubleNode[parameters.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = asDouble(doSwitch(parameters.get(i)));
+        }
+        // sin, cos, sqrt, abs, max and min, as checked by the type inference
+        String name = object.getId().toLowerCase();
+        if (args.length == 1) {
+            DoubleNode a = args[0];
+            return switch (name) {
+                case "sin" -> doubleNode(s -> Math.sin(a.eval(s)));
+                case "cos" -> doubleNode(s -> Math.cos(a.eval(s)));
+                case "sqrt" -> doubleNode(s -> Math.sqrt(a.eval(s)));
+                case "abs" -> doubleNode(s -> Math.abs(a.eval(s)));
+                default -> null;
+            };
+        } else if (args.length == 2) {
+            DoubleNode a = args[0];
+            DoubleNode b = args[1];
+            return switch (name) {
+                case "max" -> doubleNode(s -> Math.max(a.eval(s), b.eval(s)));
+                case "min" -> doubleNode(s -> Math.min(a.eval(s), b.eval(s)));
+                default -> null;
+            };
+        }
+        return null;
+    }
+
+    // Comparisons and boolean operations
+
+    @Override
+    public Typed caseCompareExpression(CompareExpression object) {
+        DoubleNode l = asDouble(doSwitch(object.getLeft()));
+        DoubleNode r = asDouble(doSwitch(object.getRight()));
+        return switch (object.getOperation()) {
+            case GREATER -> booleanNode(s -> l.eval(s) > r.eval(s));
+            case LESS -> booleanNode(s -> l.eval(s) < r.eval(s));
+            case EQUALS -> booleanNode(s -> Math.abs(l.eval(s) - r.eval(s)) < 1e-10);
+            case NOTEQUAL -> booleanNode(s -> Math.abs(l.eval(s) - r.eval(s)) >= 1e-10);
+            case GREATEREQUAL -> booleanNode(s -> l.eval(s) >= r.eval(s));
+            case LESSEQUAL -> booleanNode(s -> l.eval(s) <= r.eval(s));
+            default -> null;
+        };
+    }
+
+    @Override
+    public Typed caseBooleanOperatorExpression(BooleanOperatorExpression object) {
+        BooleanNode l = asBoolean(doSwitch(object.getLeft()));
+        BooleanNode r = asBoolean(doSwitch(object.getRight()));
+        // the visitor evaluates both operands, so no short circuit here either
+        return switch (object.getOperation()) {
+            case AND -> booleanNode(s -> l.eval(s) & r.eval(s));
+            case OR -> booleanNode(s -> l.eval(s) | r.eval(s));
+            case XOR -> booleanNode(s -> l.eval(s) ^ r.eval(s));
+            default -> null;
+        };
+    }
+
+    @Override
+    public Typed caseNotExpression(NotExpression object) {
+        BooleanNode i = asBoolean(doSwitch(object.getInner()));
+        return booleanNode(s -> !i.eval(s));
+    }
+
+    @Override
+    public Typed caseIfElseExpression(IfElseExpression object) {
+        BooleanNode c = asBoolean(doSwitch(object.getConditionExpression()));
+        // both branches have the type of the node
+        Typed ifValue = doSwitch(object.getIfExpression());
+        Typed elseValue = doSwitch(object.getElseExpression());
+        return switch (ifValue.type()) {
+            case INT -> {
+                IntNode a = (IntNode) ifValue.node();
+                IntNode b = (IntNode) elseValue.node();
+                yield intNode(s -> c.eval(s) ? a.eval(s) : b.eval(s));
+            }
+            case DOUBLE -> {
+                DoubleNode a = (DoubleNode) ifValue.node();
+                DoubleNode b = (DoubleNode) elseValue.node();
+                yield doubleNode(s -> c.eval(s) ? a.eval(s) : b.eval(s));
+            }
+            case BOOLEAN -> {
+                BooleanNode a = (BooleanNode) ifValue.node();
+                BooleanNode b = (BooleanNode) elseValue.node();
+                yield booleanNode(s -> c.eval(s) ? a.eval(s) : b.eval(s));
+            }
+        };
+    }
+
+    // Conversions, matching toDouble and toBoolean of the visitor
+
+    private static DoubleNode asDouble(Typed typed) {
+        return switch (typed.type()) {
+            case DOUBLE -> (DoubleNode) typed.node();
+            case INT -> {
+                IntNode node = (IntNode) typed.node();
+                yield s -> node.eval(s);
+            }
+            case BOOLEAN -> {
+                BooleanNode node = (BooleanNode) typed.node();
+                yield s -> node.eval(s) ? 1.0 : 0.0;
+            }
+        };
+    }
+
+    private static BooleanNode asBoolean(Typed typed) {
+        return switch (typed.type()) {
+            case BOOLEAN -> (BooleanNode) typed.node();
+            case INT -> {
+                IntNode node = (IntNode) typed.node();
+                yield s -> node.eval(s) != 0;
+            }
+            case DOUBLE -> {
+                DoubleNode node = (DoubleNode) typed.node();
+                yield s -> node.eval(s) != 0.0;
+            }
+        };
+    }
+
+    private static Typed intNode(IntNode node) {
+        return new Typed(ScalarType.INT, node);
+    }
+
+    private static Typed doubleNode(DoubleNode node) {
+        return new Typed(ScalarType.DOUBLE, node);
+    }
+
+    private static Typed booleanNode(BooleanNode node) {
+        return new Typed(ScalarType.BOOLEAN, node);
+    }
+}
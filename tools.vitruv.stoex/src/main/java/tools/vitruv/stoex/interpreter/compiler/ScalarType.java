@@ -0,0 +1,53 @@
+package tools.vitruv.stoex.interpreter.compiler;
+
+/**
+ * Static types of scalar values, as produced by the
+ * {@link tools.vitruv.stoex.interpreter.visitors.ExpressionEvaluationVisitor}:
+ * Integer, Double and Boolean.
+ */
+public enum ScalarType {
+
+    INT,
+    DOUBLE,
+    BOOLEAN;
+
+    /**
+     * @param value A variable value.
+     * @return The scalar type of the value, or null if it is not a scalar (e.g. a
+     *         distribution or an expression given as string).
+     */
+    public static ScalarType of(Object value) {
+        if (value instanceof Integer) {
+            return INT;
+        } else if (value instanceof Number) {
+            // all other numbers are evaluated as doubles
+            return DOUBLE;
+        } else if (value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        return null;
+    }
+
+    /**
+     * @param value A scalar value of this type.
+     * @return The value as stored in a slot array.
+     */
+    double toSlot(Object value) {
+        return switch (this) {
+            case INT, DOUBLE -> ((Number) value).doubleValue();
+            case BOOLEAN -> ((Boolean) value) ? 1.0 : 0.0;
+        };
+    }
+
+    /**
+     * @param slot A slot value of this type.
+     * @return The boxed value, as the visitor would return it.
+     */
+    Object fromSlot(double slot) {
+        return switch (this) {
+            case INT -> (int) slot;
+            case DOUBLE -> slot;
+            case BOOLEAN -> slot != 0.0;
+        };
+    }
+}
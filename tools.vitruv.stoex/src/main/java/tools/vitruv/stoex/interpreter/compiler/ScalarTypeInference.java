@@ -0,0 +1,164 @@
+package tools.vitruv.stoex.interpreter.compiler;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+
+import tools.vitruv.stoex.stoex.BoolLiteral;
+import tools.vitruv.stoex.stoex.BooleanExpression;
+import tools.vitruv.stoex.stoex.BooleanOperatorExpression;
+import tools.vitruv.stoex.stoex.CompareExpression;
+import tools.vitruv.stoex.stoex.DoubleLiteral;
+import tools.vitruv.stoex.stoex.FunctionLiteral;
+import tools.vitruv.stoex.stoex.IfElseExpression;
+import tools.vitruv.stoex.stoex.IntLiteral;
+import tools.vitruv.stoex.stoex.NegativeExpression;
+import tools.vitruv.stoex.stoex.NotExpression;
+import tools.vitruv.stoex.stoex.Parenthesis;
+import tools.vitruv.stoex.stoex.PowerExpression;
+import tools.vitruv.stoex.stoex.ProductExpression;
+import tools.vitruv.stoex.stoex.TermExpression;
+import tools.vitruv.stoex.stoex.Variable;
+import tools.vitruv.stoex.stoex.util.StoexSwitch;
+
+/**
+ * Infers the static type of every node from the types of the variables,
+ * following the semantics of the
+ * {@link tools.vitruv.stoex.interpreter.visitors.ExpressionEvaluationVisitor}:
+ * arithmetic on two ints stays int, everything else on numbers is double,
+ * negation and functions always return doubles. The type of a node is null if
+ * it is not statically scalar (e.g. distributions, strings or an if-else with
+ * branches of different types). Results are memoized per node.
+ *
+ * These are the only typing rules of the compilers: the {@link ScalarNodeSwitch}
+ * and the {@link BytecodeCompiler} only generate code for the types inferred
+ * here.
+ */
+public final class ScalarTypeInference extends StoexSwitch<ScalarType> {
+
+    /**
+     * The constants that variables without a value stand for.
+     */
+    static final Map<String, Double> CONSTANTS = Map.of(
+            "PI", Math.PI,
+            "E", Math.E);
+
+    private final Map<String, ScalarType> variableTypes;
+    private final Map<EObject, ScalarType> types = new IdentityHashMap<>();
+
+    /**
+     * @param variableTypes The static types of the variables; variables that are
+     *                      not contained are not statically scalar.
+     */
+    public ScalarTypeInference(Map<String, ScalarType> variableTypes) {
+        this.variableTypes = variableTypes;
+    }
+
+    /**
+     * @param node A node of an expression.
+     * @return The static scalar type of the node, or null if it is not
+     *         statically scalar.
+     */
+    public ScalarType typeOf(EObject node) {
+        if (!types.containsKey(node)) {
+            types.put(node, doSwitch(node));
+        }
+        return types.get(node);
+    }
+
+    @Override
+    public ScalarType caseIntLiteral(IntLiteral object) {
+        return ScalarType.INT;
+    }
+
+    @Override
+    public ScalarType caseDoubleLiteral(DoubleLiteral object) {
+        return ScalarType.DOUBLE;
+    }
+
+    @Override
+    public ScalarType caseBoolLiteral(BoolLiteral object) {
+        return ScalarType.BOOLEAN;
+    }
+
+    @Override
+    public ScalarType caseVariable(Variable object) {
+        String name = ScalarNodeSwitch.resolveVariableName(object.getId_Variable());
+        if (variableTypes.containsKey(name)) {
+            return variableTypes.get(name);
+        }
+        return CONSTANTS.containsKey(name) ? ScalarType.DOUBLE : null;
+    }
+
+    @Override
+    public ScalarType caseParenthesis(Parenthesis object) {
+        return typeOf(object.getInnerExpression());
+    }
+
+    @Override
+    public ScalarType caseTermExpression(TermExpression object) {
+        return arithmetic(typeOf(object.getLeft()), typeOf(object.getRight()));
+    }
+
+    @Override
+    public ScalarType caseProductExpression(ProductExpression object) {
+        return arithmetic(typeOf(object.getLeft()), typeOf(object.getRight()));
+    }
+
+    @Override
+    public ScalarType casePowerExpression(PowerExpression object) {
+        return arithmetic(typeOf(object.getBase()), typeOf(object.getExponent()));
+    }
+
+    private static ScalarType arithmetic(ScalarType left, ScalarType right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        return left == ScalarType.INT && right == ScalarType.INT ? ScalarType.INT : ScalarType.DOUBLE;
+    }
+
+    @Override
+    public ScalarType caseNegativeExpression(NegativeExpression object) {
+        return typeOf(object.getInner()) == null ? null : ScalarType.DOUBLE;
+    }
+
+    @Override
+    public ScalarType caseFunctionLiteral(FunctionLiteral object) {
+        for (BooleanExpression parameter : object.getParameters_FunctionLiteral()) {
+            if (typeOf(parameter) == null) {
+                return null;
+            }
+        }
+        int arity = object.getParameters_FunctionLiteral().size();
+        return switch (object.getId().toLowerCase()) {
+            case "sin", "cos", "sqrt", "abs" -> arity == 1 ? ScalarType.DOUBLE : null;
+            case "max", "min" -> arity == 2 ? ScalarType.DOUBLE : null;
+            default -> null;
+        };
+    }
+
+    @Override
+    public ScalarType caseCompareExpression(CompareExpression object) {
+        return typeOf(object.getLeft()) == null || typeOf(object.getRight()) == null ? null : ScalarType.BOOLEAN;
+    }
+
+    @Override
+    public ScalarType caseBooleanOperatorExpression(BooleanOperatorExpression object) {
+        return typeOf(object.getLeft()) == null || typeOf(object.getRight()) == null ? null : ScalarType.BOOLEAN;
+    }
+
+    @Override
+    public ScalarType caseNotExpression(NotExpression object) {
+        return typeOf(object.getInner()) == null ? null : ScalarType.BOOLEAN;
+    }
+
+    @Override
+    public ScalarType caseIfElseExpression(IfElseExpression object) {
+        ScalarType ifType = typeOf(object.getIfExpression());
+        if (typeOf(object.getConditionExpression()) == null || ifType != typeOf(object.getElseExpression())) {
+            return null;
+        }
+        return ifType;
+    }
+}
@@ -24,6 +24,9 @@ import tools.vitruv.stoex.stoex.StoexFactory;
  */
 public class AddOperation implements Operation {
 
+	/** Shared instance; the operation is stateless. */
+	public static final AddOperation INSTANCE = new AddOperation();
+
 	public int evaluate(Integer left, Integer right) {
 		return left + right;
 	}
@@ -56,7 +59,7 @@ public class AddOperation implements Operation {
 		// Closed Form Solution exists only for same lambda
 		if (left.getLambda() != right.getLambda()) {
 			SampleHelper helper = new SampleHelper();
-			return evaluate(helper.getSamples(left), helper.getSamples(right));
+			return evaluate(helper.sampler(left), helper.sampler(right));
 		}
 
 		GammaDistribution result = StoexFactory.eINSTANCE.createGammaDistribution();
@@ -69,7 +72,21 @@ public class AddOperation implements Operation {
 	public SampledDistribution evaluate(double[] samplesLeft, double[] samplesRight) {
 
 		MonteCarloOperation op = new MonteCarloOperation();
-		double[] combinedSamples = op.evaluateTermOperation(samplesLeft, samplesRight, 10000,
+		double[] combinedSamples = op.evaluateTermOperation(samplesLeft, samplesRight,
+				ProbabilityFunctionOperations.ADD);
+
+		SampledDistribution result = StoexFactory.eINSTANCE.createSampledDistribution();
+		for (double d : combinedSamples) {
+			result.getValues().add(d);
+		}
+		return result;
+	}
+
+	@Override
+	public SampledDistribution evaluate(Sampler samplerLeft, Sampler samplerRight) {
+
+		MonteCarloOperation op = new MonteCarloOperation();
+		double[] combinedSamples = op.evaluateTermOperation(samplerLeft, samplerRight,
 				ProbabilityFunctionOperations.ADD);
 
 		SampledDistribution result = StoexFactory.eINSTANCE.createSampledDistribution();
@@ -84,7 +101,7 @@ public class AddOperation implements Operation {
 		// Closed Form Solution exists only for same theta
 		if (left.getTheta() != right.getTheta()) {
 			SampleHelper helper = new SampleHelper();
-			return evaluate(helper.getSamples(left), helper.getSamples(right));
+			return evaluate(helper.sampler(left), helper.sampler(right));
 		}
 
 		GammaDistribution result = StoexFactory.eINSTANCE.createGammaDistribution();
@@ -112,9 +129,10 @@ public class AddOperation implements Operation {
 
 	@Override
 	public SampledDistribution evaluate(double[] samplesLeft, double right) {
+		double[] samples = SampleKernels.get().add(samplesLeft, right, new double[samplesLeft.length]);
 		SampledDistribution result = StoexFactory.eINSTANCE.createSampledDistribution();
-		for (double d : samplesLeft) {
-			result.getValues().add(d + right);
+		for (double d : samples) {
+			result.getValues().add(d);
 		}
 		return result;
 	}
@@ -129,7 +147,7 @@ public class AddOperation implements Operation {
 	// ==================================================================
 
 	@Override
-	public ProbabilityMassFunction evaluate(PoissonDistribution left, PoissonDistribution right) {
+	public PoissonDistribution evaluate(PoissonDistribution left, PoissonDistribution right) {
 		PoissonDistribution result = StoexFactory.eINSTANCE.createPoissonDistribution();
 		result.setLambda(left.getLambda() + right.getLambda());
 		return result;
@@ -138,34 +156,56 @@ public class AddOperation implements Operation {
 	@Override
 	public ProbabilityMassFunction evaluate(BernoulliDistribution left,
 			BernoulliDistribution right) {
-		// Closed Form Solution exists only for same p
-		if (left.getP() != right.getP()) {
-			ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
-			return conv.combine(conv.convertToPMF(left), conv.convertToPMF(right), ProbabilityFunctionOperations.ADD);
-		}
-		BinomialDistribution result = StoexFactory.eINSTANCE.createBinomialDistribution();
-		result.setN(2);
-		result.setP(left.getP());
-		return result;
+		ProbabilityMassFunction result = closedForm(left, right);
+		return result != null ? result : combine(left, right).toPMF();
 	}
 
 	@Override
 	public ProbabilityMassFunction evaluate(BinomialDistribution left,
 			BinomialDistribution right) {
+		ProbabilityMassFunction result = closedForm(left, right);
+		return result != null ? result : combine(left, right).toPMF();
+	}
+
+	/**
+	 * @return The sum of two distributions of the same family as a distribution
+	 *         of that family, or null if there is no closed form for them.
+	 */
+	ProbabilityMassFunction closedForm(ProbabilityMassFunction left, ProbabilityMassFunction right) {
+		if (left instanceof PoissonDistribution l && right instanceof PoissonDistribution r) {
+			return evaluate(l, r);
+		}
 		// Closed Form Solution exists only for same p
-		if (left.getP() != right.getP()) {
-			ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
-			return conv.combine(conv.convertToPMF(left), conv.convertToPMF(right), ProbabilityFunctionOperations.ADD);
+		if (left instanceof BernoulliDistribution l && right instanceof BernoulliDistribution r
+				&& l.getP() == r.getP()) {
+			BinomialDistribution result = StoexFactory.eINSTANCE.createBinomialDistribution();
+			result.setN(2);
+			result.setP(l.getP());
+			return result;
 		}
-		BinomialDistribution result = StoexFactory.eINSTANCE.createBinomialDistribution();
-		result.setN(left.getN() + right.getN());
-		result.setP(left.getP());
-		return result;
+		if (left instanceof BinomialDistribution l && right instanceof BinomialDistribution r
+				&& l.getP() == r.getP()) {
+			BinomialDistribution result = StoexFactory.eINSTANCE.createBinomialDistribution();
+			result.setN(l.getN() + r.getN());
+			result.setP(l.getP());
+			return result;
+		}
+		return null;
+	}
+
+	private MassFunction combine(ProbabilityMassFunction left, ProbabilityMassFunction right) {
+		ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
+		return evaluate(conv.toMassFunction(left), conv.toMassFunction(right));
 	}
 
 	@Override
 	public IntProbabilityMassFunction evaluate(IntProbabilityMassFunction left,
 			IntProbabilityMassFunction right) {
+		return evaluate(MassFunction.of(left), MassFunction.of(right)).toPMF();
+	}
+
+	@Override
+	public MassFunction evaluate(MassFunction left, MassFunction right) {
 		ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
 		return conv.combine(left, right, ProbabilityFunctionOperations.ADD);
 	}
@@ -176,14 +216,7 @@ public class AddOperation implements Operation {
 
 	@Override
 	public IntProbabilityMassFunction evaluate(IntProbabilityMassFunction left, int right) {
-		IntProbabilityMassFunction result = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
-		for (var sample : left.getSamples()) {
-			var newSample = StoexFactory.eINSTANCE.createIntSample();
-			newSample.setValue(sample.getValue() + right);
-			newSample.setProbability(sample.getProbability());
-			result.getSamples().add(newSample);
-		}
-		return result;
+		return evaluate(MassFunction.of(left), right).toPMF();
 	}
 
 	@Override
@@ -191,26 +224,19 @@ public class AddOperation implements Operation {
 		return evaluate(right, left);
 	}
 
-	private double toDouble(Object value) {
-		if (value instanceof Number number) {
-			return number.doubleValue();
-		}
-		if (value instanceof Boolean aBoolean) {
-			return aBoolean ? 1.0 : 0.0;
-		}
-		if (value instanceof String string) {
-			try {
-				return Double.parseDouble(string);
-			} catch (NumberFormatException e) {
-				throw new IllegalArgumentException("Cannot convert string to double: " + value);
-			}
-		}
-		throw new IllegalArgumentException("Cannot convert " + value + " to double");
+	@Override
+	public MassFunction evaluate(MassFunction left, int right) {
+		return left.map(value -> value + right);
+	}
+
+	@Override
+	public MassFunction evaluate(int left, MassFunction right) {
+		return evaluate(right, left);
 	}
 
 	@Override
 	public ProbabilityDensityFunction evaluate(LognormalDistribution left, LognormalDistribution right) {
 		SampleHelper helper = new SampleHelper();
-		return evaluate(helper.getSamples(left), helper.getSamples(right));
+		return evaluate(helper.sampler(left), helper.sampler(right));
 	}
 }
@@ -0,0 +1,91 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Walker's alias method for sampling an index of a discrete distribution in
+ * constant time, built with Vose's algorithm in linear time.
+ *
+ * Every index owns a column of height one that it shares with at most one
+ * alias; a sample picks a column uniformly and then either the index or its
+ * alias.
+ */
+public final class AliasTable {
+
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * @param weights The non-negative weights of the indices; they need not sum
+     *                to one.
+     * @throws IllegalArgumentException if there are no weights, a weight is
+     *                                  negative or not finite, or all are zero.
+     */
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        if (n == 0) {
+            throw new IllegalArgumentException("Alias table needs at least one weight");
+        }
+        double sum = 0;
+        for (double weight : weights) {
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Weight must be non-negative and finite: " + weight);
+            }
+            sum += weight;
+        }
+        if (sum == 0) {
+            throw new IllegalArgumentException("Weights must not all be zero");
+        }
+
+        probability = new double[n];
+        alias = new int[n];
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // the remaining columns are full up to rounding errors
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1;
+        }
+    }
+
+    /**
+     * @return The number of indices.
+     */
+    public int size() {
+        return probability.length;
+    }
+
+    /**
+     * @return An index in [0, {@link #size()}) with probability proportional to
+     *         its weight.
+     */
+    public int sample(RandomGenerator random) {
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+}
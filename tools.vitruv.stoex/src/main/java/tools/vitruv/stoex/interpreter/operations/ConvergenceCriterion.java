@@ -0,0 +1,151 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import java.util.Arrays;
+
+/**
+ * When an adaptive Monte Carlo operation may stop drawing samples: once the
+ * confidence intervals of the mean, the variance and the selected quantiles are
+ * all within the relative tolerance of their estimates, or once the maximum
+ * number of samples is reached.
+ *
+ * Samples are drawn in batches; the criterion is checked after every batch,
+ * starting with the second one.
+ */
+public final class ConvergenceCriterion {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_MAX_SAMPLES = 1_000_000;
+    private static final double[] DEFAULT_QUANTILES = { 0.5, 0.95 };
+
+    private final double relativeTolerance;
+    private final double confidence;
+    private final int batchSize;
+    private final int maxSamples;
+    private final double[] quantiles;
+
+    private ConvergenceCriterion(double relativeTolerance, double confidence, int batchSize, int maxSamples,
+            double[] quantiles) {
+        this.relativeTolerance = relativeTolerance;
+        this.confidence = confidence;
+        this.batchSize = batchSize;
+        this.maxSamples = maxSamples;
+        this.quantiles = quantiles;
+    }
+
+    /**
+     * @param relativeTolerance The allowed half-width of the confidence intervals
+     *                          relative to the estimates, e.g. 0.01.
+     * @param confidence        The confidence level of the intervals, e.g. 0.95.
+     * @return A criterion for the mean, the variance and the median and 95th
+     *         percentile.
+     * @throws IllegalArgumentException if the tolerance is not positive or the
+     *                                  confidence not in (0, 1).
+     */
+    public static ConvergenceCriterion of(double relativeTolerance, double confidence) {
+        if (!(relativeTolerance > 0)) {
+            throw new IllegalArgumentException("Relative tolerance must be positive: " + relativeTolerance);
+        }
+        if (!(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException("Confidence must be between 0 and 1: " + confidence);
+        }
+        return new ConvergenceCriterion(relativeTolerance, confidence, DEFAULT_BATCH_SIZE, DEFAULT_MAX_SAMPLES,
+                DEFAULT_QUANTILES);
+    }
+
+    /**
+     * @param batchSize The number of samples drawn between two checks.
+     */
+    public ConvergenceCriterion withBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        return new ConvergenceCriterion(relativeTolerance, confidence, batchSize, maxSamples, quantiles);
+    }
+
+    /**
+     * @param maxSamples The number of samples after which sampling stops even if
+     *                   the estimates did not converge.
+     */
+    public ConvergenceCriterion withMaxSamples(int maxSamples) {
+        if (maxSamples <= 0) {
+            throw new IllegalArgumentException("Maximum number of samples must be positive: " + maxSamples);
+        }
+        return new ConvergenceCriterion(relativeTolerance, confidence, batchSize, maxSamples, quantiles);
+    }
+
+    /**
+     * @param quantiles The probabilities of the quantiles that have to converge,
+     *                  each in (0, 1); none to only check mean and variance.
+     */
+    public ConvergenceCriterion withQuantiles(double... quantiles) {
+        for (double p : quantiles) {
+            if (!(p > 0 && p < 1)) {
+                throw new IllegalArgumentException("Quantile must be between 0 and 1: " + p);
+            }
+        }
+        return new ConvergenceCriterion(relativeTolerance, confidence, batchSize, maxSamples, quantiles.clone());
+    }
+
+    public double getRelativeTolerance() {
+        return relativeTolerance;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getMaxSamples() {
+        return maxSamples;
+    }
+
+    public double[] getQuantiles() {
+        return quantiles.clone();
+    }
+
+    /**
+     * @return The critical value of the standard normal distribution for the
+     *         two-sided confidence level.
+     */
+    double getCriticalValue() {
+        return inverseNormal(0.5 + confidence / 2);
+    }
+
+    /**
+     * Inverse of the standard normal distribution function (Acklam's rational
+     * approximation, relative error below 1.2e-9).
+     */
+    static double inverseNormal(double p) {
+        final double[] a = { -3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00 };
+        final double[] b = { -5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01 };
+        final double[] c = { -7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00 };
+        final double[] d = { 7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00 };
+        double low = 0.02425;
+        if (p < low) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - low) {
+            return -inverseNormal(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "ConvergenceCriterion[relativeTolerance=" + relativeTolerance + ", confidence=" + confidence
+                + ", batchSize=" + batchSize + ", maxSamples=" + maxSamples + ", quantiles="
+                + Arrays.toString(quantiles) + "]";
+    }
+}
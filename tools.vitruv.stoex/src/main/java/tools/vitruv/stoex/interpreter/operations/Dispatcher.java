@@ -1,5 +1,9 @@
 package tools.vitruv.stoex.interpreter.operations;
 
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
+
 import tools.vitruv.stoex.stoex.BernoulliDistribution;
 import tools.vitruv.stoex.stoex.BinomialDistribution;
 import tools.vitruv.stoex.stoex.ExponentialDistribution;
@@ -9,145 +13,205 @@ import tools.vitruv.stoex.stoex.LognormalDistribution;
 import tools.vitruv.stoex.stoex.NormalDistribution;
 import tools.vitruv.stoex.stoex.PoissonDistribution;
 import tools.vitruv.stoex.stoex.ProbabilityDensityFunction;
+import tools.vitruv.stoex.stoex.ProbabilityFunction;
 import tools.vitruv.stoex.stoex.ProbabilityMassFunction;
+import tools.vitruv.stoex.stoex.SampledDistribution;
 
+/**
+ * Dispatches a binary {@link Operation} on the runtime kinds of its operands.
+ *
+ * Both operands are classified into a {@link TypeKind}; the classification is
+ * cached per class. The handler for a pair of kinds is looked up in a table
+ * that is built once for all operations, so a dispatch costs two class lookups
+ * and an array access. Pairs of mass functions, and of a mass function and an
+ * integer, are computed exactly regardless of their order. Other pairs of
+ * distributions and numbers, which have a continuous operand, i.e. a density
+ * or a non-integer number, are combined by Monte Carlo sampling. Other pairs
+ * with a distribution are reported as unsupported and pairs of scalars fall
+ * back to the numeric operation.
+ *
+ * Operations on mass functions compute on {@link MassFunction}s. An operand
+ * that is a {@link MassFunction} is handled like the
+ * {@link IntProbabilityMassFunction} it stands for.
+ *
+ * Dispatchers and operations are stateless and can be shared between threads;
+ * use the singletons such as {@link #ADD}.
+ */
 public class Dispatcher {
 
-    private Operation operation;
+    public static final Dispatcher ADD = new Dispatcher(AddOperation.INSTANCE);
+    public static final Dispatcher SUB = new Dispatcher(SubOperation.INSTANCE);
+    public static final Dispatcher MULT = new Dispatcher(MultOperation.INSTANCE);
+    public static final Dispatcher DIV = new Dispatcher(DivOperation.INSTANCE);
+
+    private static final ClassValue<TypeKind> KINDS = new ClassValue<>() {
+        @Override
+        protected TypeKind computeValue(Class<?> type) {
+            return classify(type);
+        }
+    };
+
+    private static final Handler[][] HANDLERS = createHandlers();
+
+    private final Operation operation;
 
     public Dispatcher(Operation operation) {
         this.operation = operation;
     }
 
+    /**
+     * @return The result of the operation; discrete results are
+     *         {@link IntProbabilityMassFunction}s.
+     */
     public Object dispatch(Object left, Object right) {
-        // Portable switch-like implementation using explicit classification of argument
-        // types.
-        TypeKind l = classify(left);
-        TypeKind r = classify(right);
-
-        switch (l) {
-            case NORMAL -> {
-                if (r == TypeKind.NORMAL) {
-                    return operation.evaluate((NormalDistribution) left, (NormalDistribution) right);
-                } else if (TypeKind.PDF == r) {
-                    return operation.evaluate(new SampleHelper().getSamples((NormalDistribution) left),
-                            new SampleHelper().getSamples((ProbabilityDensityFunction) right));
-                } else if (isNumeric(r)) {
-                    return operation.evaluate((NormalDistribution) left, ((Number) right).doubleValue());
-                }
-            }
-            case EXPONENTIAL -> {
-                if (r == TypeKind.EXPONENTIAL) {
-                    return operation.evaluate((ExponentialDistribution) left, (ExponentialDistribution) right);
-                }
-            }
-            case GAMMA -> {
-                if (r == TypeKind.GAMMA) {
-                    return operation.evaluate((GammaDistribution) left, (GammaDistribution) right);
-                }
-            }
-            case LOGNORMAL -> {
-                if (r == TypeKind.LOGNORMAL) {
-                    return operation.evaluate((LognormalDistribution) left, (LognormalDistribution) right);
-                }
-            }
-            case PDF -> {
-                if (r == TypeKind.PDF) {
-                    return operation.evaluate(
-                            new SampleHelper().getSamples((ProbabilityDensityFunction) left),
-                            new SampleHelper().getSamples((ProbabilityDensityFunction) right));
-                } else if (isNumeric(r)) {
-                    return operation.evaluate(
-                            new SampleHelper().getSamples((ProbabilityDensityFunction) left),
-                            ((Number) right).doubleValue());
-                }
-            }
-            case NUMBER -> {
-                if (r == TypeKind.NORMAL) {
-                    return operation.evaluate(((Number) left).doubleValue(), (NormalDistribution) right);
-                } else if (r == TypeKind.PDF) {
-                    return operation.evaluate(((Number) left).doubleValue(),
-                            new SampleHelper().getSamples((ProbabilityDensityFunction) right));
-                }
-            }
-            case POISSON -> {
-                if (r == TypeKind.POISSON) {
-                    return operation.evaluate((PoissonDistribution) left, (PoissonDistribution) right);
-                } else if (isMassFunction(r)) {
-                    return evalPMF((ProbabilityMassFunction) left, (ProbabilityMassFunction) right);
-                }
-            }
-            case BERNOULLI -> {
-                if (r == TypeKind.BERNOULLI) {
-                    return operation.evaluate((BernoulliDistribution) left, (BernoulliDistribution) right);
-                } else if (isMassFunction(r)) {
-                    return evalPMF((ProbabilityMassFunction) left, (ProbabilityMassFunction) right);
-                }
-            }
-            case BINOMIAL -> {
-                if (r == TypeKind.BINOMIAL) {
-                    return operation.evaluate((BinomialDistribution) left, (BinomialDistribution) right);
-                }
-            }
-            case PMF -> {
-                if (r == TypeKind.PMF) {
-                    return evalPMF((ProbabilityMassFunction) left, (ProbabilityMassFunction) right);
-                } else if (r == TypeKind.INTEGER) {
-                    return operation.evaluate(
-                            new ProbabilityMassFunctionHelper().convertToPMF((ProbabilityMassFunction) left),
-                            (Integer) right);
-                }
+        Object result = evaluate(left, right);
+        if (result instanceof MassFunction massFunction) {
+            return massFunction.toPMF();
+        }
+        return result;
+    }
+
+    /**
+     * Like {@link #dispatch(Object, Object)}, but discrete results are
+     * {@link MassFunction}s, so that they can be passed on to further operations
+     * without converting them.
+     *
+     * @return The result of the operation.
+     */
+    public Object evaluate(Object left, Object right) {
+        TypeKind l = kindOf(left);
+        TypeKind r = kindOf(right);
+        Handler handler = HANDLERS[l.ordinal()][r.ordinal()];
+        if (handler != null) {
+            return handler.apply(operation, left, right);
+        }
+        if (l.isDistribution() || r.isDistribution()) {
+            throw new IllegalArgumentException("Unsupported operands for " + operation.getClass().getSimpleName()
+                    + ": " + describe(left) + " and " + describe(right));
+        }
+
+        // fallback to numeric conversion
+        double leftVal = toDouble(left);
+        double rightVal = toDouble(right);
+        return operation.evaluate(leftVal, rightVal);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object apply(Operation operation, Object left, Object right);
+    }
+
+    private static Handler[][] createHandlers() {
+        int kinds = TypeKind.values().length;
+        Handler[][] handlers = new Handler[kinds][kinds];
+
+        handlers[TypeKind.NORMAL.ordinal()][TypeKind.NORMAL.ordinal()] = (op, left,
+                right) -> op.evaluate((NormalDistribution) left, (NormalDistribution) right);
+        for (TypeKind numeric : new TypeKind[] { TypeKind.NUMBER, TypeKind.INTEGER }) {
+            handlers[TypeKind.NORMAL.ordinal()][numeric.ordinal()] = (op, left,
+                    right) -> op.evaluate((NormalDistribution) left, ((Number) right).doubleValue());
+            handlers[TypeKind.PDF.ordinal()][numeric.ordinal()] = (op, left, right) -> op.evaluate(
+                    new SampleHelper().getSamples((ProbabilityDensityFunction) left), ((Number) right).doubleValue());
+        }
+
+        handlers[TypeKind.EXPONENTIAL.ordinal()][TypeKind.EXPONENTIAL.ordinal()] = (op, left,
+                right) -> op.evaluate((ExponentialDistribution) left, (ExponentialDistribution) right);
+        handlers[TypeKind.GAMMA.ordinal()][TypeKind.GAMMA.ordinal()] = (op, left,
+                right) -> op.evaluate((GammaDistribution) left, (GammaDistribution) right);
+        handlers[TypeKind.LOGNORMAL.ordinal()][TypeKind.LOGNORMAL.ordinal()] = (op, left,
+                right) -> op.evaluate((LognormalDistribution) left, (LognormalDistribution) right);
+
+        handlers[TypeKind.NUMBER.ordinal()][TypeKind.NORMAL.ordinal()] = (op, left,
+                right) -> op.evaluate(((Number) left).doubleValue(), (NormalDistribution) right);
+        handlers[TypeKind.NUMBER.ordinal()][TypeKind.PDF.ordinal()] = (op, left, right) -> op.evaluate(
+                ((Number) left).doubleValue(), new SampleHelper().getSamples((ProbabilityDensityFunction) right));
+
+        // sums of the same family may have a closed form, everything else on them is computed on mass functions
+        for (TypeKind family : List.of(TypeKind.POISSON, TypeKind.BERNOULLI, TypeKind.BINOMIAL)) {
+            handlers[family.ordinal()][family.ordinal()] = Dispatcher::evalSameFamily;
+        }
+
+        // any other pair of mass functions, or of a mass function and an integer, is computed exactly in
+        // either order; mass functions are handled like the IntPMFs they stand for
+        for (TypeKind left : TypeKind.values()) {
+            if (!left.isMassFunction()) {
+                continue;
             }
-            case INT_PMF -> {
-                // left is IntProbabilityMassFunction; original code handled Integer left &
-                // IntPMF right
-                if (r == TypeKind.INTEGER) {
-                    ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
-                    return operation.evaluate(conv.convertToPMF((IntProbabilityMassFunction) left), (Integer) right);
-                } else if (r == TypeKind.INT_PMF) {
-                    return operation.evaluate((IntProbabilityMassFunction) left, (IntProbabilityMassFunction) right);
-                } else if (isMassFunction(r)) {
-                    return evalPMF((IntProbabilityMassFunction) left, (ProbabilityMassFunction) right);
+            for (TypeKind right : TypeKind.values()) {
+                if (right.isMassFunction() && handlers[left.ordinal()][right.ordinal()] == null) {
+                    handlers[left.ordinal()][right.ordinal()] = Dispatcher::evalPMF;
                 }
             }
-            case INTEGER -> {
-                if (r == TypeKind.INT_PMF) {
-                    ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
-                    return operation.evaluate(conv.convertToPMF((IntProbabilityMassFunction) right), (Integer) left);
-                } else if (TypeKind.PDF == r) {
-                    return operation.evaluate((int) left,
-                            new SampleHelper().getSamples((ProbabilityDensityFunction) right));
-                } else if (r == TypeKind.NORMAL) {
-                    return operation.evaluate(((Number) left).doubleValue(), (NormalDistribution) right);
-                } else if (r == TypeKind.INTEGER) {
-                    return operation.evaluate((int) left, (int) right);
+            handlers[left.ordinal()][TypeKind.INTEGER.ordinal()] = (op, l,
+                    r) -> op.evaluate(toMassFunction(l), (int) r);
+            handlers[TypeKind.INTEGER.ordinal()][left.ordinal()] = (op, l,
+                    r) -> op.evaluate((int) l, toMassFunction(r));
+        }
+
+        handlers[TypeKind.INTEGER.ordinal()][TypeKind.PDF.ordinal()] = (op, left, right) -> op.evaluate((int) left,
+                new SampleHelper().getSamples((ProbabilityDensityFunction) right));
+        handlers[TypeKind.INTEGER.ordinal()][TypeKind.NORMAL.ordinal()] = (op, left,
+                right) -> op.evaluate(((Number) left).doubleValue(), (NormalDistribution) right);
+        handlers[TypeKind.INTEGER.ordinal()][TypeKind.INTEGER.ordinal()] = (op, left,
+                right) -> op.evaluate((int) left, (int) right);
+
+        // any other mix of distributions and numbers has a continuous operand and is sampled
+        for (TypeKind left : TypeKind.values()) {
+            for (TypeKind right : TypeKind.values()) {
+                if (handlers[left.ordinal()][right.ordinal()] == null && left != TypeKind.OTHER
+                        && right != TypeKind.OTHER && (left.isDistribution() || right.isDistribution())) {
+                    handlers[left.ordinal()][right.ordinal()] = Dispatcher::evalSamples;
                 }
             }
-            default -> {
-                // fall through to numeric conversion
-            }
         }
+        return handlers;
+    }
 
-        // fallback to numeric conversion
-        double leftVal = toDouble(left);
-        double rightVal = toDouble(right);
-        return operation.evaluate(leftVal, rightVal);
+    private static SampledDistribution evalSamples(Operation operation, Object left, Object right) {
+        SampleHelper helper = new SampleHelper();
+        if (left instanceof Number number) {
+            return operation.evaluate(number.doubleValue(), samples(helper, right));
+        }
+        if (right instanceof Number number) {
+            return operation.evaluate(samples(helper, left), number.doubleValue());
+        }
+        return operation.evaluate(sampler(helper, left), sampler(helper, right));
     }
 
-    private boolean isMassFunction(TypeKind kind) {
-        return kind == TypeKind.PMF || kind == TypeKind.INT_PMF || kind == TypeKind.BERNOULLI
-                || kind == TypeKind.BINOMIAL;
+    private static double[] samples(SampleHelper helper, Object distribution) {
+        if (distribution instanceof MassFunction massFunction) {
+            return helper.getSamples(massFunction);
+        }
+        return helper.getSamples((ProbabilityFunction) distribution);
+    }
+
+    private static Sampler sampler(SampleHelper helper, Object distribution) {
+        if (distribution instanceof MassFunction massFunction) {
+            return helper.sampler(massFunction);
+        }
+        return helper.sampler((ProbabilityFunction) distribution);
+    }
+
+    private static Object evalSameFamily(Operation operation, Object left, Object right) {
+        if (operation instanceof AddOperation add) {
+            ProbabilityMassFunction result = add.closedForm((ProbabilityMassFunction) left,
+                    (ProbabilityMassFunction) right);
+            if (result != null) {
+                return result;
+            }
+        }
+        return evalPMF(operation, left, right);
     }
 
-    private boolean isNumeric(TypeKind kind) {
-        return kind == TypeKind.NUMBER || kind == TypeKind.INTEGER;
+    private static MassFunction evalPMF(Operation operation, Object left, Object right) {
+        return operation.evaluate(toMassFunction(left), toMassFunction(right));
     }
 
-    private ProbabilityMassFunction evalPMF(ProbabilityMassFunction left, ProbabilityMassFunction right) {
-        ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
-        return operation.evaluate(
-                conv.convertToPMF(left),
-                conv.convertToPMF(right));
+    private static MassFunction toMassFunction(Object distribution) {
+        if (distribution instanceof MassFunction massFunction) {
+            return massFunction;
+        }
+        return new ProbabilityMassFunctionHelper().toMassFunction((ProbabilityMassFunction) distribution);
     }
 
     private enum TypeKind {
@@ -161,39 +225,65 @@ public class Dispatcher {
         BERNOULLI,
         BINOMIAL,
         INT_PMF,
+        MASS_FUNCTION,
         INTEGER,
         NUMBER,
-        OTHER
+        OTHER;
+
+        boolean isDistribution() {
+            return this != INTEGER && this != NUMBER && this != OTHER;
+        }
+
+        boolean isMassFunction() {
+            return this == PMF || this == POISSON || this == BERNOULLI || this == BINOMIAL || this == INT_PMF
+                    || this == MASS_FUNCTION;
+        }
+    }
+
+    private static TypeKind kindOf(Object o) {
+        return o == null ? TypeKind.OTHER : KINDS.get(o.getClass());
     }
 
-    private TypeKind classify(Object o) {
-        if (o instanceof NormalDistribution)
+    private static TypeKind classify(Class<?> type) {
+        if (NormalDistribution.class.isAssignableFrom(type))
             return TypeKind.NORMAL;
-        if (o instanceof ExponentialDistribution)
+        if (ExponentialDistribution.class.isAssignableFrom(type))
             return TypeKind.EXPONENTIAL;
-        if (o instanceof GammaDistribution)
+        if (GammaDistribution.class.isAssignableFrom(type))
             return TypeKind.GAMMA;
-        if (o instanceof LognormalDistribution)
+        if (LognormalDistribution.class.isAssignableFrom(type))
             return TypeKind.LOGNORMAL;
-        if (o instanceof ProbabilityDensityFunction)
+        if (ProbabilityDensityFunction.class.isAssignableFrom(type))
             return TypeKind.PDF;
-        if (o instanceof IntProbabilityMassFunction)
+        if (IntProbabilityMassFunction.class.isAssignableFrom(type))
             return TypeKind.INT_PMF;
-        if (o instanceof PoissonDistribution)
+        if (PoissonDistribution.class.isAssignableFrom(type))
             return TypeKind.POISSON;
-        if (o instanceof BernoulliDistribution)
+        if (BernoulliDistribution.class.isAssignableFrom(type))
             return TypeKind.BERNOULLI;
-        if (o instanceof BinomialDistribution)
+        if (BinomialDistribution.class.isAssignableFrom(type))
             return TypeKind.BINOMIAL;
-        if (o instanceof ProbabilityMassFunction)
+        if (ProbabilityMassFunction.class.isAssignableFrom(type))
             return TypeKind.PMF;
-        if (o instanceof Integer)
+        if (MassFunction.class.isAssignableFrom(type))
+            return TypeKind.MASS_FUNCTION;
+        if (Integer.class.isAssignableFrom(type))
             return TypeKind.INTEGER; // Integer before Number
-        if (o instanceof Number)
+        if (Number.class.isAssignableFrom(type))
             return TypeKind.NUMBER;
         return TypeKind.OTHER;
     }
 
+    private static String describe(Object value) {
+        if (value instanceof EObject eObject) {
+            return eObject.eClass().getName();
+        }
+        if (value instanceof MassFunction) {
+            return MassFunction.class.getSimpleName();
+        }
+        return String.valueOf(value);
+    }
+
     private double toDouble(Object value) {
         if (value instanceof Number number) {
             return number.doubleValue();
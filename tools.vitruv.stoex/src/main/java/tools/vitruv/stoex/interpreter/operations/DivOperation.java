@@ -9,7 +9,6 @@ import tools.vitruv.stoex.stoex.LognormalDistribution;
 import tools.vitruv.stoex.stoex.NormalDistribution;
 import tools.vitruv.stoex.stoex.PoissonDistribution;
 import tools.vitruv.stoex.stoex.ProbabilityDensityFunction;
-import tools.vitruv.stoex.stoex.ProbabilityMassFunction;
 import tools.vitruv.stoex.stoex.SampledDistribution;
 import tools.vitruv.stoex.stoex.StoexFactory;
 
@@ -25,6 +24,9 @@ import tools.vitruv.stoex.stoex.StoexFactory;
  */
 public class DivOperation implements Operation {
 
+    /** Shared instance; the operation is stateless. */
+    public static final DivOperation INSTANCE = new DivOperation();
+
     @Override
     public int evaluate(int left, int right) {
         if (right == 0) {
@@ -56,7 +58,21 @@ public class DivOperation implements Operation {
     public SampledDistribution evaluate(double[] samplesLeft, double[] samplesRight) {
 
         MonteCarloOperation op = new MonteCarloOperation();
-        double[] combinedSamples = op.evaluateTermOperation(samplesLeft, samplesRight, 10000,
+        double[] combinedSamples = op.evaluateTermOperation(samplesLeft, samplesRight,
+                ProbabilityFunctionOperations.DIV);
+
+        SampledDistribution result = StoexFactory.eINSTANCE.createSampledDistribution();
+        for (double d : combinedSamples) {
+            result.getValues().add(d);
+        }
+        return result;
+    }
+
+    @Override
+    public SampledDistribution evaluate(Sampler samplerLeft, Sampler samplerRight) {
+
+        MonteCarloOperation op = new MonteCarloOperation();
+        double[] combinedSamples = op.evaluateTermOperation(samplerLeft, samplerRight,
                 ProbabilityFunctionOperations.DIV);
 
         SampledDistribution result = StoexFactory.eINSTANCE.createSampledDistribution();
@@ -94,9 +110,10 @@ public class DivOperation implements Operation {
         if (right == 0) {
             throw new ArithmeticException("Division by zero");
         }
+        double[] samples = SampleKernels.get().divide(samplesLeft, right, new double[samplesLeft.length]);
         SampledDistribution result = StoexFactory.eINSTANCE.createSampledDistribution();
-        for (double d : samplesLeft) {
-            result.getValues().add(d / right);
+        for (double d : samples) {
+            result.getValues().add(d);
         }
         return result;
     }
@@ -106,9 +123,10 @@ public class DivOperation implements Operation {
         if (left == 0) {
             throw new ArithmeticException("Division by zero");
         }
+        double[] samples = SampleKernels.get().divide(left, samplesRight, new double[samplesRight.length]);
         SampledDistribution result = StoexFactory.eINSTANCE.createSampledDistribution();
-        for (double d : samplesRight) {
-            result.getValues().add(left / d);
+        for (double d : samples) {
+            result.getValues().add(d);
         }
         return result;
     }
@@ -120,6 +138,11 @@ public class DivOperation implements Operation {
     @Override
     public IntProbabilityMassFunction evaluate(IntProbabilityMassFunction left,
             IntProbabilityMassFunction right) {
+        return evaluate(MassFunction.of(left), MassFunction.of(right)).toPMF();
+    }
+
+    @Override
+    public MassFunction evaluate(MassFunction left, MassFunction right) {
         ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
         return conv.combine(left, right, ProbabilityFunctionOperations.DIV);
     }
@@ -130,73 +153,67 @@ public class DivOperation implements Operation {
 
     @Override
     public IntProbabilityMassFunction evaluate(IntProbabilityMassFunction left, int right) {
+        return evaluate(MassFunction.of(left), right).toPMF();
+    }
+
+    @Override
+    public IntProbabilityMassFunction evaluate(int left, IntProbabilityMassFunction right) {
+        return evaluate(left, MassFunction.of(right)).toPMF();
+    }
+
+    @Override
+    public MassFunction evaluate(MassFunction left, int right) {
         if (right == 0) {
             throw new ArithmeticException("Division by zero");
         }
-        IntProbabilityMassFunction result = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
-        for (var sample : left.getSamples()) {
-            if (sample.getValue() % right == 0) { // only include samples that divide evenly
-                var newSample = StoexFactory.eINSTANCE.createIntSample();
-                newSample.setValue(sample.getValue() / right);
-                newSample.setProbability(sample.getProbability());
-                result.getSamples().add(newSample);
-            }
-        }
-        return result;
+        // only include values that divide evenly
+        return left.filter(value -> value % right == 0).map(value -> value / right);
     }
 
     @Override
-    public IntProbabilityMassFunction evaluate(int left, IntProbabilityMassFunction right) {
+    public MassFunction evaluate(int left, MassFunction right) {
         if (left == 0) {
             throw new ArithmeticException("Division by zero");
         }
-        IntProbabilityMassFunction result = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
-        for (var sample : right.getSamples()) {
-            if (left % sample.getValue() == 0) { // only include samples that divide evenly
-                var newSample = StoexFactory.eINSTANCE.createIntSample();
-                newSample.setValue(left / sample.getValue());
-                newSample.setProbability(sample.getProbability());
-                result.getSamples().add(newSample);
-            }
-        }
-        return result;
+        // only include values that divide evenly
+        return right.filter(value -> left % value == 0).map(value -> left / value);
     }
 
     @Override
     public ProbabilityDensityFunction evaluate(ExponentialDistribution left, ExponentialDistribution right) {
         SampleHelper helper = new SampleHelper();
-        return evaluate(helper.getSamples(left), helper.getSamples(right));
+        return evaluate(helper.sampler(left), helper.sampler(right));
 
     }
 
     @Override
     public ProbabilityDensityFunction evaluate(NormalDistribution left, NormalDistribution right) {
         SampleHelper helper = new SampleHelper();
-        return evaluate(helper.getSamples(left), helper.getSamples(right));
+        return evaluate(helper.sampler(left), helper.sampler(right));
     }
 
     @Override
     public ProbabilityDensityFunction evaluate(GammaDistribution left, GammaDistribution right) {
         SampleHelper helper = new SampleHelper();
-        return evaluate(helper.getSamples(left), helper.getSamples(right));
+        return evaluate(helper.sampler(left), helper.sampler(right));
     }
 
     @Override
-    public ProbabilityMassFunction evaluate(PoissonDistribution left, PoissonDistribution right) {
+    public IntProbabilityMassFunction evaluate(PoissonDistribution left, PoissonDistribution right) {
         ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
-        return evaluate(conv.convertToPMF(left), conv.convertToPMF(right));
+        return evaluate(conv.toMassFunction(left), conv.toMassFunction(right)).toPMF();
     }
 
     @Override
-    public ProbabilityMassFunction evaluate(BernoulliDistribution left, BernoulliDistribution right) {
+    public IntProbabilityMassFunction evaluate(BernoulliDistribution left, BernoulliDistribution right) {
         ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
-        return evaluate(conv.convertToPMF(left), conv.convertToPMF(right));
+        return evaluate(conv.toMassFunction(left), conv.toMassFunction(right)).toPMF();
     }
 
     @Override
-    public ProbabilityMassFunction evaluate(BinomialDistribution left, BinomialDistribution right) {
+    public IntProbabilityMassFunction evaluate(BinomialDistribution left, BinomialDistribution right) {
         ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
-        return evaluate(conv.convertToPMF(left), conv.convertToPMF(right));
+        return evaluate(conv.toMassFunction(left), conv.toMassFunction(right)).toPMF();
     }
 
 }
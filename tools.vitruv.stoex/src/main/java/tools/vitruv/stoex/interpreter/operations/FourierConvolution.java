@@ -0,0 +1,101 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+/**
+ * Convolution of two real sequences with a fast Fourier transform, in
+ * O(N log N) instead of O(n·m) for the direct sum over all pairs.
+ *
+ * Both sequences are transformed at once as the real and imaginary part of one
+ * complex sequence z = a + ib: the imaginary part of z * z is 2 (a * b), so the
+ * convolution takes one forward and one inverse transform of size
+ * N ≥ n + m - 1.
+ */
+final class FourierConvolution {
+
+    private FourierConvolution() {
+    }
+
+    /**
+     * @param a The first sequence, not empty.
+     * @param b The second sequence, not empty.
+     * @return The sequence c of length a.length + b.length - 1 with
+     *         c[k] = sum of a[i] * b[k - i], up to rounding errors of the order
+     *         of 1e-16 times the largest products.
+     */
+    static double[] convolve(double[] a, double[] b) {
+        int length = a.length + b.length - 1;
+        int size = Integer.highestOneBit(Math.max(1, length - 1)) << 1;
+        double[] re = new double[size];
+        double[] im = new double[size];
+        System.arraycopy(a, 0, re, 0, a.length);
+        System.arraycopy(b, 0, im, 0, b.length);
+
+        transform(re, im, false);
+        for (int k = 0; k < size; k++) {
+            double r = re[k];
+            double i = im[k];
+            re[k] = r * r - i * i;
+            im[k] = 2 * r * i;
+        }
+        transform(re, im, true);
+
+        double[] c = new double[length];
+        double scale = 0.5 / size;
+        for (int k = 0; k < length; k++) {
+            c[k] = im[k] * scale;
+        }
+        return c;
+    }
+
+    /**
+     * Iterative radix-2 transform in place, without the 1/N scaling of the
+     * inverse.
+     */
+    private static void transform(double[] re, double[] im, boolean inverse) {
+        int n = re.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        // twiddle factors of the largest stage; smaller stages use every k-th one
+        int half = n >> 1;
+        double[] cos = new double[half];
+        double[] sin = new double[half];
+        double sign = inverse ? 1 : -1;
+        for (int k = 0; k < half; k++) {
+            double angle = 2 * Math.PI * k / n;
+            cos[k] = Math.cos(angle);
+            sin[k] = sign * Math.sin(angle);
+        }
+
+        for (int length = 2; length <= n; length <<= 1) {
+            int step = n / length;
+            int span = length >> 1;
+            for (int start = 0; start < n; start += length) {
+                for (int k = 0; k < span; k++) {
+                    double wr = cos[k * step];
+                    double wi = sin[k * step];
+                    int even = start + k;
+                    int odd = even + span;
+                    double tr = re[odd] * wr - im[odd] * wi;
+                    double ti = re[odd] * wi + im[odd] * wr;
+                    re[odd] = re[even] - tr;
+                    im[odd] = im[even] - ti;
+                    re[even] += tr;
+                    im[even] += ti;
+                }
+            }
+        }
+    }
+}
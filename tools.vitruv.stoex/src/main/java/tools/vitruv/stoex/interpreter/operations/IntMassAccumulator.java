@@ -0,0 +1,190 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import java.util.Arrays;
+
+/**
+ * Sums up probabilities per integer value, e.g. of the sample pairs of a
+ * convolution, without creating a sample per addition.
+ *
+ * If the values lie within a compact range, the probabilities are summed in a
+ * dense array over that range, otherwise in an open-addressing hash map.
+ */
+final class IntMassAccumulator {
+
+    /** The largest range that is summed in a dense array. */
+    static final int MAX_DENSE_RANGE = 1 << 20;
+
+    /** The most values a hash map initially has room for; it grows as needed. */
+    private static final int MAX_INITIAL_VALUES = 1 << 12;
+
+    /** How many slots of a dense array there may be per expected value. */
+    private static final int DENSE_SLOTS_PER_VALUE = 4;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final long offset;
+    private int[] keys;
+    private double[] masses;
+    private boolean[] used;
+    private int count;
+
+    private IntMassAccumulator(long offset, int[] keys, int capacity) {
+        this.offset = offset;
+        this.keys = keys;
+        this.masses = new double[capacity];
+        this.used = new boolean[capacity];
+    }
+
+    /**
+     * @param min    The smallest value that may be added.
+     * @param max    The largest value that may be added.
+     * @param values The expected number of additions, which bounds the number
+     *               of distinct values.
+     * @return An accumulator for values in [min, max], dense if the range is
+     *         small compared to the number of values.
+     */
+    static IntMassAccumulator forRange(long min, long max, long values) {
+        long range = max - min + 1;
+        if (min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE && range <= MAX_DENSE_RANGE
+                && range <= Math.max(MIN_CAPACITY, values * DENSE_SLOTS_PER_VALUE)) {
+            return new IntMassAccumulator(min, null, (int) range);
+        }
+        return hashed(values);
+    }
+
+    /**
+     * @param values The expected number of additions.
+     * @return An accumulator for arbitrary values.
+     */
+    static IntMassAccumulator hashed(long values) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < Math.min(values, MAX_INITIAL_VALUES) * 2) {
+            capacity <<= 1;
+        }
+        return new IntMassAccumulator(0, new int[capacity], capacity);
+    }
+
+    /**
+     * @param min    The smallest value.
+     * @param masses The probabilities of the consecutive values from min on,
+     *               which are taken over.
+     * @return A dense accumulator to which every one of the values has been
+     *         added.
+     */
+    static IntMassAccumulator ofDense(long min, double[] masses) {
+        IntMassAccumulator accumulator = new IntMassAccumulator(min, null, 0);
+        accumulator.masses = masses;
+        accumulator.used = new boolean[masses.length];
+        Arrays.fill(accumulator.used, true);
+        return accumulator;
+    }
+
+    boolean isDense() {
+        return keys == null;
+    }
+
+    /**
+     * @param value       The value, which must lie within the range of a dense
+     *                    accumulator.
+     * @param probability The probability to add to the value.
+     */
+    void add(int value, double probability) {
+        int slot;
+        if (isDense()) {
+            slot = (int) (value - offset);
+            used[slot] = true;
+        } else {
+            slot = find(value);
+            if (!used[slot]) {
+                if ((count + 1) * 2 > keys.length) {
+                    grow();
+                    slot = find(value);
+                }
+                used[slot] = true;
+                keys[slot] = value;
+                count++;
+            }
+        }
+        masses[slot] += probability;
+    }
+
+    /**
+     * @return The mass function of the added values, with the probabilities
+     *         normalized to sum up to one unless they are all zero.
+     */
+    MassFunction toMassFunction() {
+        int[] values;
+        double[] probabilities;
+        if (isDense()) {
+            int size = 0;
+            for (boolean slotUsed : used) {
+                if (slotUsed) {
+                    size++;
+                }
+            }
+            values = new int[size];
+            probabilities = new double[size];
+            int i = 0;
+            for (int slot = 0; slot < used.length; slot++) {
+                if (used[slot]) {
+                    values[i] = (int) (slot + offset);
+                    probabilities[i++] = masses[slot];
+                }
+            }
+        } else {
+            values = new int[count];
+            int i = 0;
+            for (int slot = 0; slot < used.length; slot++) {
+                if (used[slot]) {
+                    values[i++] = keys[slot];
+                }
+            }
+            Arrays.sort(values);
+            probabilities = new double[count];
+            for (i = 0; i < count; i++) {
+                probabilities[i] = masses[find(values[i])];
+            }
+        }
+
+        double total = 0;
+        for (double probability : probabilities) {
+            total += probability;
+        }
+        if (total > 0) {
+            for (int i = 0; i < probabilities.length; i++) {
+                probabilities[i] /= total;
+            }
+        }
+        return new MassFunction(values, probabilities);
+    }
+
+    /**
+     * @return The slot of the value, or the free slot it would be stored in.
+     */
+    private int find(int value) {
+        int mask = keys.length - 1;
+        int hash = value * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (used[slot] && keys[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        double[] oldMasses = masses;
+        boolean[] oldUsed = used;
+        keys = new int[oldKeys.length * 2];
+        masses = new double[keys.length];
+        used = new boolean[keys.length];
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldUsed[slot]) {
+                int newSlot = find(oldKeys[slot]);
+                used[newSlot] = true;
+                keys[newSlot] = oldKeys[slot];
+                masses[newSlot] = oldMasses[slot];
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
+import tools.vitruv.stoex.stoex.IntSample;
+import tools.vitruv.stoex.stoex.StoexFactory;
+
+/**
+ * An immutable probability mass function over integers, held in primitive
+ * arrays: the distinct values in ascending order and their probabilities.
+ *
+ * This is the value of discrete intermediate results, so that chained
+ * operations such as {@code IntPMF[...] + IntPMF[...] * 2} do not create an
+ * {@link IntSample} per value and step. It is converted into an
+ * {@link IntProbabilityMassFunction} with {@link #toPMF()} once the result
+ * leaves the interpreter.
+ */
+public final class MassFunction {
+
+    private final int[] values;
+    private final double[] probabilities;
+    private volatile MassFunctionTable table;
+
+    /**
+     * @param values        The distinct values in ascending order, which are
+     *                      taken over.
+     * @param probabilities Their probabilities, which are taken over.
+     */
+    MassFunction(int[] values, double[] probabilities) {
+        this.values = values;
+        this.probabilities = probabilities;
+    }
+
+    /**
+     * @param pmf The mass function; its samples may be in any order and repeat
+     *            values.
+     * @return A mass function with the probabilities of the samples, summed up
+     *         per value, without normalizing them.
+     */
+    public static MassFunction of(IntProbabilityMassFunction pmf) {
+        List<IntSample> samples = pmf.getSamples();
+        int[] values = new int[samples.size()];
+        double[] probabilities = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = samples.get(i).getValue();
+            probabilities[i] = samples.get(i).getProbability();
+        }
+        return canonical(values, probabilities);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param index The index in [0, {@link #size()}).
+     * @return The index-th smallest value.
+     */
+    public int getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param index The index in [0, {@link #size()}).
+     * @return The probability of the index-th smallest value.
+     */
+    public double getProbability(int index) {
+        return probabilities[index];
+    }
+
+    /**
+     * @return The values, which must not be modified.
+     */
+    int[] values() {
+        return values;
+    }
+
+    /**
+     * @return The probabilities, which must not be modified.
+     */
+    double[] probabilities() {
+        return probabilities;
+    }
+
+    /**
+     * @param function The function applied to every value.
+     * @return The mass function of the function values, with the probabilities
+     *         of values mapped to the same one summed up.
+     */
+    MassFunction map(IntUnaryOperator function) {
+        int[] mapped = new int[values.length];
+        for (int i = 0; i < mapped.length; i++) {
+            mapped[i] = function.applyAsInt(values[i]);
+        }
+        return canonical(mapped, probabilities.clone());
+    }
+
+    /**
+     * @param predicate The predicate the kept values satisfy.
+     * @return The mass function restricted to the values satisfying the
+     *         predicate, without normalizing it.
+     */
+    MassFunction filter(IntPredicate predicate) {
+        int[] kept = new int[values.length];
+        double[] keptProbabilities = new double[values.length];
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (predicate.test(values[i])) {
+                kept[size] = values[i];
+                keptProbabilities[size++] = probabilities[i];
+            }
+        }
+        return new MassFunction(Arrays.copyOf(kept, size), Arrays.copyOf(keptProbabilities, size));
+    }
+
+    /**
+     * @return The table for sampling the values, built on first use.
+     */
+    MassFunctionTable table() {
+        MassFunctionTable result = table;
+        if (result == null) {
+            result = MassFunctionTable.of(this);
+            table = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return A new mass function with a sample per value in ascending order.
+     */
+    public IntProbabilityMassFunction toPMF() {
+        IntProbabilityMassFunction pmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
+        for (int i = 0; i < values.length; i++) {
+            IntSample sample = StoexFactory.eINSTANCE.createIntSample();
+            sample.setValue(values[i]);
+            sample.setProbability(probabilities[i]);
+            pmf.getSamples().add(sample);
+        }
+        return pmf;
+    }
+
+    /**
+     * @return The mass function of the values, sorted and with the
+     *         probabilities of equal values summed up; the arrays are reused if
+     *         the values are ascending already.
+     */
+    private static MassFunction canonical(int[] values, double[] probabilities) {
+        boolean ascending = true;
+        for (int i = 1; i < values.length && ascending; i++) {
+            ascending = values[i - 1] < values[i];
+        }
+        if (ascending) {
+            return new MassFunction(values, probabilities);
+        }
+
+        // sort the indices by value; the index in the lower half keeps the order stable
+        long[] order = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            order[i] = ((long) values[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        int[] sortedValues = new int[values.length];
+        double[] sortedProbabilities = new double[values.length];
+        int size = 0;
+        for (long entry : order) {
+            int value = (int) (entry >> 32);
+            double probability = probabilities[(int) entry];
+            if (size > 0 && sortedValues[size - 1] == value) {
+                sortedProbabilities[size - 1] += probability;
+            } else {
+                sortedValues[size] = value;
+                sortedProbabilities[size++] = probability;
+            }
+        }
+        return new MassFunction(Arrays.copyOf(sortedValues, size), Arrays.copyOf(sortedProbabilities, size));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("MassFunction[");
+        for (int i = 0; i < values.length; i++) {
+            builder.append('(').append(values[i]).append(';').append(probabilities[i]).append(')');
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,129 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+import tools.vitruv.stoex.interpreter.AdapterLocks;
+import tools.vitruv.stoex.stoex.DoubleProbabilityMassFunction;
+import tools.vitruv.stoex.stoex.DoubleSample;
+import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
+import tools.vitruv.stoex.stoex.IntSample;
+import tools.vitruv.stoex.stoex.ProbabilityMassFunction;
+
+/**
+ * The values of a probability mass function literal with an
+ * {@link AliasTable} over their probabilities, for sampling in constant time.
+ * Intermediate {@link MassFunction}s have their own table.
+ *
+ * A table is built once per mass function and attached to it, so parsed
+ * expressions that are evaluated repeatedly reuse it; it is rebuilt after any
+ * change within the mass function. Adapters are attached under the
+ * {@link AdapterLocks lock} of the root of the expression.
+ */
+final class MassFunctionTable {
+
+    private final double[] values;
+    private final AliasTable table;
+
+    private MassFunctionTable(double[] values, double[] weights) {
+        this.values = values;
+        this.table = new AliasTable(weights);
+    }
+
+    static MassFunctionTable of(IntProbabilityMassFunction pmf) {
+        return cacheOf(pmf).get(pmf);
+    }
+
+    static MassFunctionTable of(DoubleProbabilityMassFunction pmf) {
+        return cacheOf(pmf).get(pmf);
+    }
+
+    /**
+     * @return A table for the mass function, which is not cached; see
+     *         {@link MassFunction#table()}.
+     */
+    static MassFunctionTable of(MassFunction massFunction) {
+        double[] values = new double[massFunction.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = massFunction.getValue(i);
+        }
+        return new MassFunctionTable(values, massFunction.probabilities());
+    }
+
+    double sample(RandomGenerator random) {
+        return values[table.sample(random)];
+    }
+
+    int size() {
+        return values.length;
+    }
+
+    private static MassFunctionTable build(ProbabilityMassFunction pmf) {
+        if (pmf instanceof IntProbabilityMassFunction intPmf) {
+            List<IntSample> samples = intPmf.getSamples();
+            double[] values = new double[samples.size()];
+            double[] weights = new double[samples.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = samples.get(i).getValue();
+                weights[i] = samples.get(i).getProbability();
+            }
+            return new MassFunctionTable(values, weights);
+        }
+        List<DoubleSample> samples = ((DoubleProbabilityMassFunction) pmf).getSamples();
+        double[] values = new double[samples.size()];
+        double[] weights = new double[samples.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = samples.get(i).getValue();
+            weights[i] = samples.get(i).getProbability();
+        }
+        return new MassFunctionTable(values, weights);
+    }
+
+    private static Cache cacheOf(ProbabilityMassFunction pmf) {
+        // literals of cached expressions may be shared between threads; content
+        // adapters on the root (e.g. the cache of the BytecodeCompiler) add
+        // themselves to every node
+        synchronized (AdapterLocks.of(pmf)) {
+            Cache cache = (Cache) EcoreUtil.getExistingAdapter(pmf, Cache.class);
+            if (cache == null) {
+                cache = new Cache();
+                pmf.eAdapters().add(cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * The table attached to a mass function; cleared on any change within it.
+     */
+    private static final class Cache extends EContentAdapter {
+
+        private volatile MassFunctionTable table;
+
+        MassFunctionTable get(ProbabilityMassFunction pmf) {
+            MassFunctionTable result = table;
+            if (result == null) {
+                result = build(pmf);
+                table = result;
+            }
+            return result;
+        }
+
+        @Override
+        public void notifyChanged(Notification notification) {
+            super.notifyChanged(notification);
+            if (!notification.isTouch()) {
+                table = null;
+            }
+        }
+
+        @Override
+        public boolean isAdapterForType(Object type) {
+            return type == Cache.class;
+        }
+    }
+}
@@ -7,6 +7,9 @@ package tools.vitruv.stoex.interpreter.operations;
  */
 public class ModOperation {
 
+    /** Shared instance; the operation is stateless. */
+    public static final ModOperation INSTANCE = new ModOperation();
+
     public double evaluate(double left, double right) {
         return left % right;
     }
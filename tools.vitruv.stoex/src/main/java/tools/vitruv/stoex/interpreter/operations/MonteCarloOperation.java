@@ -1,18 +1,35 @@
 package tools.vitruv.stoex.interpreter.operations;
 
 import java.util.Arrays;
-import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.random.RandomGenerator;
 import java.util.stream.DoubleStream;
 
 /**
  * Implements Monte Carlo sampling operations for combining continuous
- * probability distributions.
+ * probability distributions. Samples are drawn from the generator of the
+ * {@link SamplingContext} that is current when the operation is created.
  * 
  * @author Hammann
  */
 public class MonteCarloOperation {
 
-    private final Random random = new Random();
+    /**
+     * The number of samples drawn with one generator; the unit of parallel work.
+     */
+    public static final int CHUNK_SIZE = 1 << 14;
+
+    private final RandomGenerator random;
+    private MonteCarloReport lastReport;
+
+    public MonteCarloOperation() {
+        this(SamplingContext.current().getGenerator());
+    }
+
+    public MonteCarloOperation(RandomGenerator random) {
+        this.random = random;
+    }
 
     /**
      * Performs Monte Carlo addition of two distributions represented by sample
@@ -26,45 +43,367 @@ public class MonteCarloOperation {
      */
     public double[] evaluateTermOperation(double[] dist1, double[] dist2,
             int numSamples, ProbabilityFunctionOperations operation) {
+        return evaluateTermOperation(dist1, dist2, numSamples, operation, null);
+    }
+
+    /**
+     * Performs a Monte Carlo operation, optionally in parallel. The result is
+     * split into chunks of {@link #CHUNK_SIZE} samples, each drawn with its own
+     * generator derived from the generator of this operation. The result for a
+     * given seed is therefore the same with and without a pool and for any
+     * number of threads.
+     *
+     * @param dist1      Samples of the first distribution
+     * @param dist2      Samples of the second distribution
+     * @param numSamples Number of Monte Carlo samples to generate
+     * @param operation  The term operation to perform (ADD, SUB, MUL, DIV)
+     * @param pool       The pool computing the chunks in parallel, or null to
+     *                   compute them in the calling thread
+     * @return Array of samples representing the resulting distribution
+     */
+    public double[] evaluateTermOperation(double[] dist1, double[] dist2, int numSamples,
+            ProbabilityFunctionOperations operation, ForkJoinPool pool) {
         double[] result = new double[numSamples];
+        long seed = random.nextLong();
+        int chunks = (numSamples + CHUNK_SIZE - 1) / CHUNK_SIZE;
 
-        for (int i = 0; i < numSamples; i++) {
-            double sample1 = dist1[random.nextInt(dist1.length)];
-            double sample2 = dist2[random.nextInt(dist2.length)];
-
-            switch (operation) {
-                case ADD:
-                    result[i] = sample1 + sample2;
-                    break;
-                case SUB:
-                    result[i] = sample1 - sample2;
-                    break;
-                case MUL:
-                    result[i] = sample1 * sample2;
-                    break;
-                case DIV:
-                    if (sample2 == 0) {
-                        throw new ArithmeticException("Division by zero encountered in Monte Carlo operation.");
-                    }
-                    result[i] = sample1 / sample2;
-                    break;
-                default:
-                    throw new UnsupportedOperationException("Unknown term operation: " + operation);
+        if (pool == null || chunks < 2) {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                fillChunk(result, chunk, dist1, dist2, operation, seed);
             }
+        } else {
+            pool.invoke(new ChunkTask(result, 0, chunks, dist1, dist2, operation, seed));
         }
-
         return result;
     }
 
-    public double[] evaluatePowerOperation(double[] dist, double exponent) {
-        double[] result = new double[dist.length];
+    /**
+     * Performs a Monte Carlo operation as configured by the current
+     * {@link SamplingContext}: adaptively if it has a convergence criterion,
+     * otherwise with its fixed sample count.
+     *
+     * The given samples are resampled, so the errors of an adaptive operation
+     * are conditional on them; see
+     * {@link #evaluateTermOperation(Sampler, Sampler, ProbabilityFunctionOperations)}
+     * for operands that can be sampled afresh.
+     *
+     * @param dist1     Samples of the first distribution
+     * @param dist2     Samples of the second distribution
+     * @param operation The term operation to perform (ADD, SUB, MUL, DIV)
+     * @return Array of samples representing the resulting distribution
+     */
+    public double[] evaluateTermOperation(double[] dist1, double[] dist2, ProbabilityFunctionOperations operation) {
+        SamplingContext context = SamplingContext.current();
+        if (context.getConvergence() == null) {
+            return evaluateTermOperation(dist1, dist2, context.getSampleCount(), operation, context.getPool());
+        }
+        double[] result = evaluateTermOperation(dist1, dist2, context.getConvergence(), operation);
+        context.addReport(lastReport);
+        return result;
+    }
 
-        for (int i = 0; i < dist.length; i++) {
-            result[i] = Math.pow(dist[i], exponent);
+    /**
+     * Performs a Monte Carlo operation as configured by the current
+     * {@link SamplingContext}. With a fixed sample count, both operands are
+     * sampled once with that count and their samples are paired at random.
+     * Adaptive operations draw fresh operand samples for every batch instead,
+     * so that more samples also resolve the operands better, e.g. the tails of
+     * a heavy-tailed distribution, and the reported errors include the
+     * sampling error of the operands.
+     *
+     * @param dist1     Sampler of the first distribution
+     * @param dist2     Sampler of the second distribution
+     * @param operation The term operation to perform (ADD, SUB, MUL, DIV)
+     * @return Array of samples representing the resulting distribution
+     */
+    public double[] evaluateTermOperation(Sampler dist1, Sampler dist2, ProbabilityFunctionOperations operation) {
+        SamplingContext context = SamplingContext.current();
+        if (context.getConvergence() == null) {
+            int numSamples = context.getSampleCount();
+            return evaluateTermOperation(dist1.sample(numSamples), dist2.sample(numSamples), numSamples, operation,
+                    context.getPool());
         }
+        double[] result = evaluateTermOperation(dist1, dist2, context.getConvergence(), operation);
+        context.addReport(lastReport);
         return result;
     }
 
+    /**
+     * Performs an adaptive Monte Carlo operation on fixed operand samples, which
+     * are resampled. The reported errors only cover the resampling, i.e. they
+     * are conditional on the given samples, see
+     * {@link #evaluateTermOperation(Sampler, Sampler, ConvergenceCriterion, ProbabilityFunctionOperations)}.
+     *
+     * @param dist1     Samples of the first distribution
+     * @param dist2     Samples of the second distribution
+     * @param criterion When to stop sampling
+     * @param operation The term operation to perform (ADD, SUB, MUL, DIV)
+     * @return Array of samples representing the resulting distribution
+     */
+    public double[] evaluateTermOperation(double[] dist1, double[] dist2, ConvergenceCriterion criterion,
+            ProbabilityFunctionOperations operation) {
+        return evaluateTermOperation(SampleHelper.resampler(dist1, random), SampleHelper.resampler(dist2, random),
+                criterion, operation);
+    }
+
+    /**
+     * Performs a Monte Carlo operation, drawing samples in batches until the
+     * estimates of the mean, the variance and the quantiles of the result have
+     * converged. Every batch draws fresh samples of both operands and pairs
+     * them up. The mean and variance are tracked with streaming (Welford)
+     * estimators, the quantiles with the batch-means method, i.e. from the
+     * spread of the quantiles of the individual batches. Errors are relative to
+     * the estimate, or to the standard deviation if that is larger, so that
+     * estimates close to zero can converge as well.
+     *
+     * The outcome is available from {@link #getLastReport()}.
+     *
+     * @param dist1     Sampler of the first distribution
+     * @param dist2     Sampler of the second distribution
+     * @param criterion When to stop sampling
+     * @param operation The term operation to perform (ADD, SUB, MUL, DIV)
+     * @return Array of samples representing the resulting distribution
+     */
+    public double[] evaluateTermOperation(Sampler dist1, Sampler dist2, ConvergenceCriterion criterion,
+            ProbabilityFunctionOperations operation) {
+        int batchSize = criterion.getBatchSize();
+        double[] probabilities = criterion.getQuantiles();
+        double z = criterion.getCriticalValue();
+        double tolerance = criterion.getRelativeTolerance();
+
+        Moments moments = new Moments();
+        Moments[] quantileMoments = new Moments[probabilities.length];
+        Arrays.setAll(quantileMoments, i -> new Moments());
+        double[] result = new double[Math.min(batchSize * 2, criterion.getMaxSamples())];
+        double[] batch = new double[batchSize];
+        int n = 0;
+        int batches = 0;
+
+        while (true) {
+            int size = Math.min(batchSize, criterion.getMaxSamples() - n);
+            if (n + size > result.length) {
+                result = Arrays.copyOf(result, (int) Math.min(2L * result.length, criterion.getMaxSamples()));
+            }
+            combine(dist1.sample(size), dist2.sample(size), size, operation, batch);
+            System.arraycopy(batch, 0, result, n, size);
+            for (int i = 0; i < size; i++) {
+                moments.add(batch[i]);
+            }
+            n += size;
+            if (size == batchSize) {
+                // only full batches estimate the quantiles
+                Arrays.sort(batch);
+                for (int q = 0; q < probabilities.length; q++) {
+                    quantileMoments[q].add(quantile(batch, probabilities[q]));
+                }
+                batches++;
+            }
+
+            double sd = Math.sqrt(moments.variance());
+            double meanError = relativeError(z * sd / Math.sqrt(n), moments.mean, sd);
+            double varianceError = relativeError(z * moments.varianceStandardError(), moments.variance(),
+                    moments.variance());
+            double[] quantileValues = new double[probabilities.length];
+            double[] quantileErrors = new double[probabilities.length];
+            boolean converged = batches >= 2 && meanError <= tolerance && varianceError <= tolerance;
+            for (int q = 0; q < probabilities.length; q++) {
+                quantileValues[q] = quantileMoments[q].mean;
+                quantileErrors[q] = batches >= 2
+                        ? relativeError(z * Math.sqrt(quantileMoments[q].variance() / batches), quantileValues[q], sd)
+                        : Double.POSITIVE_INFINITY;
+                converged &= quantileErrors[q] <= tolerance;
+            }
+
+            if (converged || n >= criterion.getMaxSamples()) {
+                lastReport = new MonteCarloReport(n, converged, moments.mean, meanError, moments.variance(),
+                        varianceError, probabilities, quantileValues, quantileErrors);
+                return n == result.length ? result : Arrays.copyOf(result, n);
+            }
+        }
+    }
+
+    /**
+     * @return The report of the last adaptive operation, or null if there was
+     *         none.
+     */
+    public MonteCarloReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Combines the samples pairwise. The operation is selected once per call
+     * and every operation has its own loop, so the JIT compiles each loop for
+     * a single primitive operation.
+     */
+    private static void combine(double[] samples1, double[] samples2, int size,
+            ProbabilityFunctionOperations operation, double[] result) {
+        switch (operation) {
+            case ADD -> {
+                for (int i = 0; i < size; i++) {
+                    result[i] = samples1[i] + samples2[i];
+                }
+            }
+            case SUB -> {
+                for (int i = 0; i < size; i++) {
+                    result[i] = samples1[i] - samples2[i];
+                }
+            }
+            case MUL -> {
+                for (int i = 0; i < size; i++) {
+                    result[i] = samples1[i] * samples2[i];
+                }
+            }
+            case DIV -> {
+                for (int i = 0; i < size; i++) {
+                    result[i] = divide(samples1[i], samples2[i]);
+                }
+            }
+            default -> throw new UnsupportedOperationException("Unknown term operation: " + operation);
+        }
+    }
+
+    /**
+     * Fills a chunk with randomly paired samples, with one loop per operation
+     * like {@link #combine}. The left sample of a pair is drawn first.
+     */
+    private static void fillChunk(double[] result, int chunk, double[] dist1, double[] dist2,
+            ProbabilityFunctionOperations operation, long seed) {
+        RandomGenerator chunkRandom = SamplingContext.seeded(seed, chunk).getGenerator();
+        int from = chunk * CHUNK_SIZE;
+        int to = Math.min(from + CHUNK_SIZE, result.length);
+        switch (operation) {
+            case ADD -> {
+                for (int i = from; i < to; i++) {
+                    result[i] = dist1[chunkRandom.nextInt(dist1.length)] + dist2[chunkRandom.nextInt(dist2.length)];
+                }
+            }
+            case SUB -> {
+                for (int i = from; i < to; i++) {
+                    result[i] = dist1[chunkRandom.nextInt(dist1.length)] - dist2[chunkRandom.nextInt(dist2.length)];
+                }
+            }
+            case MUL -> {
+                for (int i = from; i < to; i++) {
+                    result[i] = dist1[chunkRandom.nextInt(dist1.length)] * dist2[chunkRandom.nextInt(dist2.length)];
+                }
+            }
+            case DIV -> {
+                for (int i = from; i < to; i++) {
+                    double sample1 = dist1[chunkRandom.nextInt(dist1.length)];
+                    result[i] = divide(sample1, dist2[chunkRandom.nextInt(dist2.length)]);
+                }
+            }
+            default -> throw new UnsupportedOperationException("Unknown term operation: " + operation);
+        }
+    }
+
+    private static double divide(double sample1, double sample2) {
+        if (sample2 == 0) {
+            throw new ArithmeticException("Division by zero encountered in Monte Carlo operation.");
+        }
+        return sample1 / sample2;
+    }
+
+    /**
+     * Computes a range of chunks, splitting it in halves until single chunks
+     * remain.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] result;
+        private final int fromChunk;
+        private final int toChunk;
+        private final double[] dist1;
+        private final double[] dist2;
+        private final ProbabilityFunctionOperations operation;
+        private final long seed;
+
+        ChunkTask(double[] result, int fromChunk, int toChunk, double[] dist1, double[] dist2,
+                ProbabilityFunctionOperations operation, long seed) {
+            this.result = result;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.dist1 = dist1;
+            this.dist2 = dist2;
+            this.operation = operation;
+            this.seed = seed;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk == 1) {
+                fillChunk(result, fromChunk, dist1, dist2, operation, seed);
+                return;
+            }
+            int middle = (fromChunk + toChunk) >>> 1;
+            invokeAll(new ChunkTask(result, fromChunk, middle, dist1, dist2, operation, seed),
+                    new ChunkTask(result, middle, toChunk, dist1, dist2, operation, seed));
+        }
+    }
+
+    private static double quantile(double[] sorted, double p) {
+        double index = p * (sorted.length - 1);
+        int lower = (int) index;
+        int upper = Math.min(lower + 1, sorted.length - 1);
+        return sorted[lower] + (index - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    private static double relativeError(double halfWidth, double estimate, double spread) {
+        double scale = Math.max(Math.abs(estimate), spread);
+        if (scale == 0) {
+            return halfWidth == 0 ? 0 : Double.POSITIVE_INFINITY;
+        }
+        return halfWidth / scale;
+    }
+
+    /**
+     * Streaming estimator of the mean and the second to fourth central moments
+     * (Welford's algorithm, extended by Terriberry).
+     */
+    private static final class Moments {
+        private long n;
+        private double mean;
+        private double m2;
+        private double m3;
+        private double m4;
+
+        void add(double x) {
+            long n1 = n;
+            n++;
+            double delta = x - mean;
+            double deltaN = delta / n;
+            double deltaN2 = deltaN * deltaN;
+            double term1 = delta * deltaN * n1;
+            mean += deltaN;
+            m4 += term1 * deltaN2 * ((double) n * n - 3 * n + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+            m3 += term1 * deltaN * (n - 2) - 3 * deltaN * m2;
+            m2 += term1;
+        }
+
+        /**
+         * @return The sample variance.
+         */
+        double variance() {
+            return n > 1 ? m2 / (n - 1) : 0;
+        }
+
+        /**
+         * @return The asymptotic standard error of the sample variance.
+         */
+        double varianceStandardError() {
+            if (n < 2) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double variance = m2 / n;
+            return Math.sqrt(Math.max(m4 / n - variance * variance, 0) / n);
+        }
+    }
+
+    public double[] evaluatePowerOperation(double[] dist, double exponent) {
+        return SampleKernels.get().pow(dist, exponent, new double[dist.length]);
+    }
+
     /**
      * Computes a histogram for a sample array.
      *
@@ -0,0 +1,92 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import java.util.Arrays;
+
+/**
+ * Outcome of one adaptive Monte Carlo operation: how many samples were drawn
+ * and the achieved relative errors, i.e. the half-widths of the confidence
+ * intervals relative to the estimates.
+ */
+public final class MonteCarloReport {
+
+    private final int sampleCount;
+    private final boolean converged;
+    private final double mean;
+    private final double meanError;
+    private final double variance;
+    private final double varianceError;
+    private final double[] quantiles;
+    private final double[] quantileValues;
+    private final double[] quantileErrors;
+
+    MonteCarloReport(int sampleCount, boolean converged, double mean, double meanError, double variance,
+            double varianceError, double[] quantiles, double[] quantileValues, double[] quantileErrors) {
+        this.sampleCount = sampleCount;
+        this.converged = converged;
+        this.mean = mean;
+        this.meanError = meanError;
+        this.variance = variance;
+        this.varianceError = varianceError;
+        this.quantiles = quantiles;
+        this.quantileValues = quantileValues;
+        this.quantileErrors = quantileErrors;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return Whether all estimates are within the tolerance, false if sampling
+     *         stopped at the maximum number of samples.
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getMeanError() {
+        return meanError;
+    }
+
+    public double getVariance() {
+        return variance;
+    }
+
+    public double getVarianceError() {
+        return varianceError;
+    }
+
+    /**
+     * @return The probabilities of the checked quantiles.
+     */
+    public double[] getQuantiles() {
+        return quantiles.clone();
+    }
+
+    /**
+     * @return The estimated quantiles, in the order of {@link #getQuantiles()}.
+     */
+    public double[] getQuantileValues() {
+        return quantileValues.clone();
+    }
+
+    /**
+     * @return The relative errors of the quantiles, in the order of
+     *         {@link #getQuantiles()}.
+     */
+    public double[] getQuantileErrors() {
+        return quantileErrors.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "MonteCarloReport[sampleCount=" + sampleCount + ", converged=" + converged + ", mean=" + mean
+                + " (±" + meanError + "), variance=" + variance + " (±" + varianceError + "), quantiles "
+                + Arrays.toString(quantiles) + "=" + Arrays.toString(quantileValues) + " (±"
+                + Arrays.toString(quantileErrors) + ")]";
+    }
+}
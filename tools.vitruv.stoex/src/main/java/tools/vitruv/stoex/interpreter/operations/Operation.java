@@ -24,6 +24,8 @@ public interface Operation {
 
     public SampledDistribution evaluate(double[] left, double[] right);
 
+    public SampledDistribution evaluate(Sampler left, Sampler right);
+
     public ProbabilityDensityFunction evaluate(GammaDistribution left, GammaDistribution right);
 
     public NormalDistribution evaluate(NormalDistribution left, double right);
@@ -48,5 +50,11 @@ public interface Operation {
 
     public IntProbabilityMassFunction evaluate(int left, IntProbabilityMassFunction right);
 
+    public MassFunction evaluate(MassFunction left, MassFunction right);
+
+    public MassFunction evaluate(MassFunction left, int right);
+
+    public MassFunction evaluate(int left, MassFunction right);
+
     public ProbabilityDensityFunction evaluate(LognormalDistribution left, LognormalDistribution right);
 }
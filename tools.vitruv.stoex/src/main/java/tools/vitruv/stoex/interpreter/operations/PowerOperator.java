@@ -7,6 +7,9 @@ import tools.vitruv.stoex.stoex.StoexFactory;
 
 public class PowerOperator {
 
+    /** Shared instance; the operation is stateless. */
+    public static final PowerOperator INSTANCE = new PowerOperator();
+
     public int evaluate(int base, int exponent) {
         return (int) Math.pow(base, exponent);
     }
@@ -25,16 +28,18 @@ public class PowerOperator {
     }
 
     public IntProbabilityMassFunction evaluate(IntProbabilityMassFunction pmf, int exponent) {
-        IntProbabilityMassFunction result = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
-        for (var sample : pmf.getSamples()) {
-            var newSample = StoexFactory.eINSTANCE.createIntSample();
-            newSample.setValue((int) Math.pow(sample.getValue(), exponent));
-            newSample.setProbability(sample.getProbability());
-            result.getSamples().add(newSample);
-        }
-        return result;
+        return evaluate(MassFunction.of(pmf), exponent).toPMF();
     }
 
+    public MassFunction evaluate(MassFunction base, int exponent) {
+        return base.map(value -> (int) Math.pow(value, exponent));
+    }
+
+    /**
+     * Raises a value of the interpreter to a power. Mass functions, given as
+     * {@link IntProbabilityMassFunction} or {@link MassFunction}, result in a
+     * {@link MassFunction}.
+     */
     public Object evaluate(Object base, Object exponent) {
 
         if (base instanceof ProbabilityDensityFunction basePDF
@@ -44,7 +49,11 @@ public class PowerOperator {
         }
 
         if (base instanceof IntProbabilityMassFunction basePMF && exponent instanceof Integer expInt) {
-            return evaluate(basePMF, (int) expInt);
+            return evaluate(MassFunction.of(basePMF), (int) expInt);
+        }
+
+        if (base instanceof MassFunction baseMassFunction && exponent instanceof Integer expInt) {
+            return evaluate(baseMassFunction, (int) expInt);
         }
 
         if (base instanceof Integer baseInt && exponent instanceof Integer expInt) {
@@ -1,5 +1,7 @@
 package tools.vitruv.stoex.interpreter.operations;
 
+import java.util.Arrays;
+
 import tools.vitruv.stoex.stoex.BernoulliDistribution;
 import tools.vitruv.stoex.stoex.BinomialDistribution;
 import tools.vitruv.stoex.stoex.DiscreteUniformDistribution;
@@ -7,7 +9,6 @@ import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
 import tools.vitruv.stoex.stoex.IntSample;
 import tools.vitruv.stoex.stoex.PoissonDistribution;
 import tools.vitruv.stoex.stoex.ProbabilityMassFunction;
-import tools.vitruv.stoex.stoex.StoexFactory;
 
 /**
  * Helper class to perform operations on discrete probability mass functions
@@ -15,105 +16,212 @@ import tools.vitruv.stoex.stoex.StoexFactory;
  * It supports convolution of two PMFs using addition, subtraction,
  * multiplication, and division.
  * It also provides methods to convert common discrete distributions to
- * IntProbabilityMassFunction.
+ * IntProbabilityMassFunction, computing the probabilities with recurrences
+ * instead of factorials.
  * 
  * @author Hammann
  */
 public class ProbabilityMassFunctionHelper {
 
+    /**
+     * The number of samples both operands of an addition or subtraction need
+     * for the convolution by a fast Fourier transform.
+     */
+    static final int DEFAULT_FOURIER_THRESHOLD = 128;
+
+    private final int fourierThreshold;
+    private final SamplingContext context;
+
+    /**
+     * Creates a helper that truncates unbounded distributions with the tail
+     * mass of the current sampling context and records the dropped
+     * probability on it, see {@link SamplingContext#getTailMass()}.
+     */
+    public ProbabilityMassFunctionHelper() {
+        this(DEFAULT_FOURIER_THRESHOLD);
+    }
+
+    /**
+     * @param fourierThreshold The number of samples both operands of an
+     *                         addition or subtraction need for the convolution
+     *                         by a fast Fourier transform.
+     */
+    ProbabilityMassFunctionHelper(int fourierThreshold) {
+        this.fourierThreshold = fourierThreshold;
+        this.context = SamplingContext.current();
+    }
+
+    /**
+     * Combines every pair of samples of the two mass functions with the
+     * operation, see {@link #combine(MassFunction, MassFunction, ProbabilityFunctionOperations)}.
+     *
+     * @return A new mass function with the samples in ascending order of their
+     *         values.
+     * @throws ArithmeticException if a value of the right mass function is zero
+     *                             in a division.
+     */
     public IntProbabilityMassFunction combine(
             IntProbabilityMassFunction left,
             IntProbabilityMassFunction right,
             ProbabilityFunctionOperations operation) {
+        return combine(MassFunction.of(left), MassFunction.of(right), operation).toPMF();
+    }
+
+    /**
+     * Combines every pair of values of the two mass functions with the
+     * operation. The probabilities are summed up per resulting value in a
+     * primitive accumulator (see {@link IntMassAccumulator}) and the result is
+     * normalized.
+     *
+     * Additions and subtractions of large operands whose values are consecutive
+     * integers, e.g. conversions of binomial or Poisson distributions, are
+     * computed with a fast Fourier transform instead (see
+     * {@link FourierConvolution}). Its rounding errors are of the order of 1e-16;
+     * negative probabilities they cause are clamped to zero before normalizing.
+     *
+     * @throws ArithmeticException if a value of the right mass function is zero
+     *                             in a division.
+     */
+    public MassFunction combine(MassFunction left, MassFunction right, ProbabilityFunctionOperations operation) {
+        if ((operation == ProbabilityFunctionOperations.ADD || operation == ProbabilityFunctionOperations.SUB)
+                && Math.min(left.size(), right.size()) >= fourierThreshold) {
+            MassFunction result = convolve(left, right, operation == ProbabilityFunctionOperations.SUB);
+            if (result != null) {
+                return result;
+            }
+        }
 
-        IntProbabilityMassFunction result = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
+        int[] leftValues = left.values();
+        double[] leftProbabilities = left.probabilities();
+        int[] rightValues = right.values();
+        double[] rightProbabilities = right.probabilities();
+        IntMassAccumulator accumulator = createAccumulator(leftValues, rightValues, operation);
 
         // combine all sample pairs
-        for (IntSample sampleLeft : left.getSamples()) {
-            for (IntSample sampleRight : right.getSamples()) {
-
-                int newValue = evaluate(sampleLeft.getValue(), sampleRight.getValue(), operation);
-                double newProbability = sampleLeft.getProbability() * sampleRight.getProbability();
-
-                IntSample existingSample = result.getSamples().stream()
-                        .filter(s -> s.getValue() == newValue)
-                        .findFirst()
-                        .orElse(null);
-
-                if (existingSample != null) {
-                    existingSample.setProbability(existingSample.getProbability() + newProbability);
-                } else {
-                    IntSample newSample = StoexFactory.eINSTANCE.createIntSample();
-                    newSample.setValue(newValue);
-                    newSample.setProbability(newProbability);
-                    result.getSamples().add(newSample);
-                }
+        for (int i = 0; i < leftValues.length; i++) {
+            for (int j = 0; j < rightValues.length; j++) {
+                accumulator.add(evaluate(leftValues[i], rightValues[j], operation),
+                        leftProbabilities[i] * rightProbabilities[j]);
             }
         }
 
-        // normalize
-        double totalProb = result.getSamples().stream()
-                .mapToDouble(IntSample::getProbability)
-                .sum();
+        return accumulator.toMassFunction();
+    }
 
-        if (totalProb > 0) {
-            for (IntSample s : result.getSamples()) {
-                s.setProbability(s.getProbability() / totalProb);
+    /**
+     * @return The sum or difference of the operands computed with a fast Fourier
+     *         transform, or null if the values of an operand are not consecutive
+     *         or the result does not fit into integers.
+     */
+    private MassFunction convolve(MassFunction leftFunction, MassFunction rightFunction, boolean subtract) {
+        if (!isConsecutive(leftFunction) || !isConsecutive(rightFunction)) {
+            return null;
+        }
+        double[] left = leftFunction.probabilities();
+        double[] right = rightFunction.probabilities();
+        long min;
+        if (subtract) {
+            // l - r is l + (-r), whose masses are those of r in reverse order
+            right = right.clone();
+            for (int i = 0, j = right.length - 1; i < j; i++, j--) {
+                double swap = right[i];
+                right[i] = right[j];
+                right[j] = swap;
             }
+            min = (long) leftFunction.getValue(0) - rightFunction.getValue(rightFunction.size() - 1);
+        } else {
+            min = (long) leftFunction.getValue(0) + rightFunction.getValue(0);
+        }
+        long max = min + left.length + right.length - 2;
+        if (min < Integer.MIN_VALUE || max > Integer.MAX_VALUE) {
+            return null;
         }
 
-        return result;
+        double[] masses = FourierConvolution.convolve(left, right);
+        for (int i = 0; i < masses.length; i++) {
+            if (masses[i] < 0) {
+                masses[i] = 0;
+            }
+        }
+        return IntMassAccumulator.ofDense(min, masses).toMassFunction();
     }
 
-    public IntProbabilityMassFunction convertToPMF(BernoulliDistribution distribution) {
-        IntProbabilityMassFunction pmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
-        IntSample leftSuccess = StoexFactory.eINSTANCE.createIntSample();
-        leftSuccess.setValue(1);
-        leftSuccess.setProbability(distribution.getP());
-        IntSample leftFailure = StoexFactory.eINSTANCE.createIntSample();
-        leftFailure.setValue(0);
-        leftFailure.setProbability(1 - distribution.getP());
-        pmf.getSamples().add(leftSuccess);
-        pmf.getSamples().add(leftFailure);
+    private static boolean isConsecutive(MassFunction function) {
+        return function.size() > 0 && (long) function.getValue(function.size() - 1) - function.getValue(0) + 1 == function.size();
+    }
 
-        return pmf;
+    /**
+     * @return An accumulator over the range of the combined values, which is
+     *         dense if that range is compact.
+     */
+    private IntMassAccumulator createAccumulator(int[] leftValues, int[] rightValues,
+            ProbabilityFunctionOperations operation) {
+        long pairs = (long) leftValues.length * rightValues.length;
+        if (pairs == 0) {
+            return IntMassAccumulator.hashed(0);
+        }
+        // the values are in ascending order
+        long leftMin = leftValues[0];
+        long leftMax = leftValues[leftValues.length - 1];
+        long rightMin = rightValues[0];
+        long rightMax = rightValues[rightValues.length - 1];
+        switch (operation) {
+            case ADD -> {
+                return IntMassAccumulator.forRange(leftMin + rightMin, leftMax + rightMax, pairs);
+            }
+            case SUB -> {
+                return IntMassAccumulator.forRange(leftMin - rightMax, leftMax - rightMin, pairs);
+            }
+            case MUL -> {
+                long[] corners = { leftMin * rightMin, leftMin * rightMax, leftMax * rightMin, leftMax * rightMax };
+                return IntMassAccumulator.forRange(Arrays.stream(corners).min().getAsLong(),
+                        Arrays.stream(corners).max().getAsLong(), pairs);
+            }
+            case DIV -> {
+                // integer division does not increase the magnitude
+                long magnitude = Math.max(Math.abs(leftMin), Math.abs(leftMax));
+                return IntMassAccumulator.forRange(-magnitude, magnitude, pairs);
+            }
+            default -> throw new IllegalArgumentException("Unsupported operation: " + operation);
+        }
     }
 
-    public IntProbabilityMassFunction convertToPMF(BinomialDistribution distribution) {
-        IntProbabilityMassFunction pmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
-        for (int k = 0; k <= distribution.getN(); k++) {
-            IntSample sample = StoexFactory.eINSTANCE.createIntSample();
-            sample.setValue(k);
-            sample.setProbability(binomialProbability(distribution.getN(), distribution.getP(), k));
-            pmf.getSamples().add(sample);
+    /**
+     * @param distribution A discrete distribution.
+     * @return Its mass function, see {@link #convertToPMF(ProbabilityMassFunction)}.
+     * @throws IllegalArgumentException if the distribution is not supported.
+     */
+    public MassFunction toMassFunction(ProbabilityMassFunction distribution) {
+        if (distribution instanceof IntProbabilityMassFunction intPmf) {
+            return MassFunction.of(intPmf);
+        } else if (distribution instanceof BernoulliDistribution bernoulliDistribution) {
+            return bernoulli(bernoulliDistribution.getP());
+        } else if (distribution instanceof BinomialDistribution binomialDistribution) {
+            return binomial(binomialDistribution.getN(), binomialDistribution.getP());
+        } else if (distribution instanceof PoissonDistribution poissonDistribution) {
+            return poisson(poissonDistribution.getLambda());
+        } else if (distribution instanceof DiscreteUniformDistribution discreteUniformDistribution) {
+            return discreteUniform(discreteUniformDistribution.getA(), discreteUniformDistribution.getB());
+        } else {
+            throw new IllegalArgumentException(
+                    "Unsupported distribution type: " + distribution.getClass().getSimpleName());
         }
-        return pmf;
+    }
+
+    public IntProbabilityMassFunction convertToPMF(BernoulliDistribution distribution) {
+        return bernoulli(distribution.getP()).toPMF();
+    }
+
+    public IntProbabilityMassFunction convertToPMF(BinomialDistribution distribution) {
+        return binomial(distribution.getN(), distribution.getP()).toPMF();
     }
 
     public IntProbabilityMassFunction convertToPMF(PoissonDistribution distribution) {
-        IntProbabilityMassFunction pmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
-        double lambda = distribution.getLambda();
-        for (int k = 0; k <= 10 * lambda; k++) {
-            IntSample sample = StoexFactory.eINSTANCE.createIntSample();
-            sample.setValue(k);
-            sample.setProbability(poissonProbability(lambda, k));
-            pmf.getSamples().add(sample);
-        }
-        return pmf;
+        return poisson(distribution.getLambda()).toPMF();
     }
 
     public IntProbabilityMassFunction convertToPMF(DiscreteUniformDistribution distribution) {
-        IntProbabilityMassFunction pmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
-        int a = distribution.getA();
-        int b = distribution.getB();
-        double probability = 1.0 / (b - a + 1);
-        for (int k = a; k <= b; k++) {
-            IntSample sample = StoexFactory.eINSTANCE.createIntSample();
-            sample.setValue(k);
-            sample.setProbability(probability);
-            pmf.getSamples().add(sample);
-        }
-        return pmf;
+        return discreteUniform(distribution.getA(), distribution.getB()).toPMF();
     }
 
     public IntProbabilityMassFunction convertToPMF(ProbabilityMassFunction distribution) {
@@ -133,24 +241,158 @@ public class ProbabilityMassFunctionHelper {
         }
     }
 
-    private double poissonProbability(double lambda, int k) {
-        return (Math.pow(lambda, k) * Math.exp(-lambda)) / factorial(k);
+    private static MassFunction bernoulli(double p) {
+        return new MassFunction(new int[] { 0, 1 }, new double[] { 1 - p, p });
     }
 
-    private double binomialProbability(int n, double p, int k) {
-        double binomCoeff = factorial(n) / (factorial(k) * factorial(n - k));
-        return binomCoeff * Math.pow(p, k) * Math.pow(1 - p, n - k);
+    /**
+     * The probabilities are computed from the mode outwards with the ratios
+     * P(k + 1) / P(k) = (n - k) / (k + 1) * p / (1 - p), in O(n) and without
+     * overflowing factorials, and then normalized, since the support is
+     * complete.
+     */
+    private static MassFunction binomial(int n, double p) {
+        if (n < 0) {
+            return new MassFunction(new int[0], new double[0]);
+        }
+        int[] values = consecutiveValues(0, n);
+        double[] probabilities = new double[n + 1];
+        if (p <= 0 || p >= 1) {
+            // all mass on one end
+            probabilities[p >= 1 ? n : 0] = 1;
+            return new MassFunction(values, probabilities);
+        }
+        int mode = (int) Math.min(n, Math.floor((n + 1) * p));
+        double odds = p / (1 - p);
+        probabilities[mode] = 1;
+        for (int k = mode; k < n; k++) {
+            probabilities[k + 1] = probabilities[k] * (n - k) / (k + 1) * odds;
+        }
+        for (int k = mode; k > 0; k--) {
+            probabilities[k - 1] = probabilities[k] * k / (n - k + 1) / odds;
+        }
+        normalize(probabilities);
+        return new MassFunction(values, probabilities);
+    }
+
+    /**
+     * The probabilities are computed from the mode outwards with the ratios
+     * P(k + 1) / P(k) = lambda / (k + 1), starting from the probability of the
+     * mode (see {@link #logPoissonProbability(int, double)}), so they neither
+     * overflow nor lose their scale for large rates.
+     *
+     * Each side stops once the mass beyond it is at most half the tail mass of
+     * the context. As the ratios shrink away from the mode, that mass is
+     * bounded by the geometric series P(k) r / (1 - r) of the next ratio r, so
+     * the support spans a few standard deviations around the mode instead of
+     * a fixed multiple of lambda. The bounds of the dropped mass are added to
+     * the context. The probabilities are not normalized here, but any
+     * {@link #combine(MassFunction, MassFunction, ProbabilityFunctionOperations)}
+     * normalizes its result, so the context is the only record of the loss.
+     */
+    private MassFunction poisson(double lambda) {
+        if (!(lambda >= 0)) {
+            return new MassFunction(new int[0], new double[0]);
+        }
+        if (lambda == 0) {
+            return new MassFunction(new int[] { 0 }, new double[] { 1 });
+        }
+        double tail = context.getTailMass() / 2;
+        int mode = (int) Math.min(Math.floor(lambda), Integer.MAX_VALUE - 1);
+        int capacity = 16 + (int) Math.min(1 << 20, 16 * Math.sqrt(lambda));
+
+        // upper[i] = P(mode + i)
+        double[] upper = new double[capacity];
+        upper[0] = Math.exp(logPoissonProbability(mode, lambda));
+        int upperSize = 1;
+        double upperTail = 0;
+        for (int k = mode; k < Integer.MAX_VALUE; k++) {
+            double ratio = lambda / (k + 1);
+            double probability = upper[upperSize - 1];
+            if (ratio < 1) {
+                upperTail = probability * ratio / (1 - ratio);
+                if (upperTail <= tail) {
+                    break;
+                }
+            }
+            if (upperSize == upper.length) {
+                upper = Arrays.copyOf(upper, upper.length * 2);
+            }
+            upper[upperSize++] = probability * ratio;
+        }
+
+        // lower[i] = P(mode - i), without the mode itself
+        double[] lower = new double[capacity];
+        int lowerSize = 0;
+        double lowerTail = 0;
+        double probability = upper[0];
+        for (int k = mode; k > 0; k--) {
+            double ratio = k / lambda;
+            if (ratio < 1) {
+                lowerTail = probability * ratio / (1 - ratio);
+                if (lowerTail <= tail) {
+                    break;
+                }
+            }
+            lowerTail = 0;
+            probability *= ratio;
+            if (lowerSize == lower.length) {
+                lower = Arrays.copyOf(lower, lower.length * 2);
+            }
+            lower[lowerSize++] = probability;
+        }
+
+        int[] values = consecutiveValues(mode - lowerSize, mode + upperSize - 1);
+        double[] probabilities = new double[values.length];
+        for (int i = 0; i < lowerSize; i++) {
+            probabilities[lowerSize - 1 - i] = lower[i];
+        }
+        System.arraycopy(upper, 0, probabilities, lowerSize, upperSize);
+        context.addTruncatedMass(lowerTail + upperTail);
+        return new MassFunction(values, probabilities);
+    }
+
+    /**
+     * @return log P(k) of Poisson(lambda) for k near lambda. For larger k it is
+     *         computed as in Loader's saddle point expansion, so that the large
+     *         terms k log(lambda) and log(k!) do not cancel out.
+     */
+    private static double logPoissonProbability(int k, double lambda) {
+        if (k < 16) {
+            return -lambda + k * Math.log(lambda) - SampleHelper.logFactorial(k);
+        }
+        // Stirling correction of log(k!) and the deviance k log(k / lambda) + lambda - k
+        double k2 = (double) k * k;
+        double correction = (1.0 / 12 - (1.0 / 360 - (1.0 / 1260 - 1.0 / (1680 * k2)) / k2) / k2) / k;
+        double deviance = (lambda - k) - k * Math.log1p((lambda - k) / k);
+        return -0.5 * Math.log(2 * Math.PI * k) - correction - deviance;
+    }
+
+    private static MassFunction discreteUniform(int a, int b) {
+        if (b < a) {
+            return new MassFunction(new int[0], new double[0]);
+        }
+        double[] probabilities = new double[b - a + 1];
+        Arrays.fill(probabilities, 1.0 / (b - a + 1));
+        return new MassFunction(consecutiveValues(a, b), probabilities);
+    }
+
+    private static int[] consecutiveValues(int from, int to) {
+        int[] values = new int[to - from + 1];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = from + i;
+        }
+        return values;
     }
 
-    private double factorial(int num) {
-        if (num == 0 || num == 1) {
-            return 1;
+    private static void normalize(double[] probabilities) {
+        double total = 0;
+        for (double probability : probabilities) {
+            total += probability;
         }
-        double result = 1;
-        for (int i = 2; i <= num; i++) {
-            result *= i;
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] /= total;
         }
-        return result;
     }
 
     public void printHistogram(IntProbabilityMassFunction pmf) {
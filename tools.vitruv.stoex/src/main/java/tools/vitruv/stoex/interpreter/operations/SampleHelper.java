@@ -1,64 +1,129 @@
 package tools.vitruv.stoex.interpreter.operations;
 
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
+import tools.vitruv.stoex.stoex.BernoulliDistribution;
 import tools.vitruv.stoex.stoex.BinomialDistribution;
+import tools.vitruv.stoex.stoex.DiscreteUniformDistribution;
+import tools.vitruv.stoex.stoex.DoubleProbabilityMassFunction;
 import tools.vitruv.stoex.stoex.ExponentialDistribution;
 import tools.vitruv.stoex.stoex.GammaDistribution;
+import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
 import tools.vitruv.stoex.stoex.LognormalDistribution;
 import tools.vitruv.stoex.stoex.NormalDistribution;
+import tools.vitruv.stoex.stoex.PoissonDistribution;
 import tools.vitruv.stoex.stoex.ProbabilityFunction;
 import tools.vitruv.stoex.stoex.SampledDistribution;
 
 /**
- * Helper class to obtain samples from different kinds of continuous
- * distributions.
+ * Helper class to obtain samples from different kinds of continuous and
+ * discrete distributions. Samples are drawn from the generator of the
+ * {@link SamplingContext} that is current when the helper is created, which
+ * also determines the number of samples. If the context has a
+ * {@link VariatePool}, normal, lognormal, exponential and Bernoulli samples are
+ * transformed from its blocks instead.
+ *
+ * Normal and exponential variates are drawn with
+ * {@link RandomGenerator#nextGaussian()} and
+ * {@link RandomGenerator#nextExponential()}, which are modified ziggurat
+ * samplers for the generators of the sampling context. {@link java.util.Random}
+ * overrides {@code nextGaussian} with the slower polar method.
  * 
  * @author Hammann
  */
 public class SampleHelper {
 
-    private static final Random random = new Random();
-    private static final int DEFAULT_NUM_SAMPLES = 10000;
+    /** The mean n * min(p, 1 - p) from which binomial samples use BTPE. */
+    private static final double BTPE_MIN_MEAN = 30;
+    /** The mean from which Poisson samples use PTRS. */
+    private static final double PTRS_MIN_MEAN = 10;
+    /** log(k!) for small k, the Stirling series is used above. */
+    private static final double[] LOG_FACTORIALS = new double[256];
 
-    public double[] getSamples(SampledDistribution distribution) {
-        return distribution.getValues().stream().mapToDouble(Double::doubleValue).toArray();
+    static {
+        for (int k = 1; k < LOG_FACTORIALS.length; k++) {
+            LOG_FACTORIALS[k] = LOG_FACTORIALS[k - 1] + Math.log(k);
+        }
     }
 
-    public double[] getSamples(NormalDistribution distribution) {
-
-        double[] samples = new double[DEFAULT_NUM_SAMPLES];
+    private final RandomGenerator random;
+    private final int numSamples;
+    private final SamplingContext context;
 
-        for (int i = 0; i < DEFAULT_NUM_SAMPLES; i++) {
+    public SampleHelper() {
+        this(SamplingContext.current());
+    }
 
-            double value = distribution.getMu() + distribution.getSigma() *
-                    random.nextGaussian();
+    public SampleHelper(RandomGenerator random) {
+        this(random, SamplingContext.DEFAULT_SAMPLE_COUNT);
+    }
 
-            samples[i] = value;
-        }
+    public SampleHelper(RandomGenerator random, int numSamples) {
+        this(random, numSamples, null);
+    }
 
-        return samples;
+    private SampleHelper(SamplingContext context) {
+        this(context.getGenerator(), context.getSampleCount(), context);
     }
 
-    public double[] getSamples(ExponentialDistribution exponentialDistribution) {
+    private SampleHelper(RandomGenerator random, int numSamples, SamplingContext context) {
+        this.random = random;
+        this.numSamples = numSamples;
+        this.context = context;
+    }
 
-        double[] samples = new double[DEFAULT_NUM_SAMPLES];
+    /**
+     * @return The next pooled block of standard variates of the current
+     *         sampling context, or null to draw fresh variates.
+     */
+    private double[] pooled(VariatePool.Kind kind) {
+        return context == null ? null : context.nextVariates(kind, numSamples);
+    }
 
-        for (int i = 0; i < DEFAULT_NUM_SAMPLES; i++) {
+    public double[] getSamples(SampledDistribution distribution) {
+        return distribution.getValues().stream().mapToDouble(Double::doubleValue).toArray();
+    }
 
-            double value = -Math.log(1 - random.nextDouble()) / exponentialDistribution.getLambda();
+    public double[] getSamples(NormalDistribution distribution) {
+        double[] samples = new double[numSamples];
+        return SampleKernels.get().affine(standardNormals(samples), distribution.getSigma(), distribution.getMu(),
+                samples);
+    }
 
-            samples[i] = value;
+    public double[] getSamples(ExponentialDistribution exponentialDistribution) {
+        double[] samples = new double[numSamples];
+        double[] variates = pooled(VariatePool.Kind.EXPONENTIAL);
+        if (variates == null) {
+            for (int i = 0; i < numSamples; i++) {
+                samples[i] = random.nextExponential();
+            }
+            variates = samples;
         }
 
-        return samples;
+        return SampleKernels.get().divide(variates, exponentialDistribution.getLambda(), samples);
+    }
+
+    /**
+     * @param buffer Filled with fresh variates if the context has no pool.
+     * @return A pooled block of standard normal variates, which must not be
+     *         modified, or the buffer.
+     */
+    private double[] standardNormals(double[] buffer) {
+        double[] variates = pooled(VariatePool.Kind.NORMAL);
+        if (variates != null) {
+            return variates;
+        }
+        for (int i = 0; i < numSamples; i++) {
+            buffer[i] = random.nextGaussian();
+        }
+        return buffer;
     }
 
     public double[] getSamples(GammaDistribution distribution) {
 
-        double[] samples = new double[DEFAULT_NUM_SAMPLES];
+        double[] samples = new double[numSamples];
 
-        for (int i = 0; i < DEFAULT_NUM_SAMPLES; i++) {
+        for (int i = 0; i < numSamples; i++) {
 
             double value = sampleGamma(distribution.getAlpha(), distribution.getTheta());
 
@@ -70,18 +135,8 @@ public class SampleHelper {
 
     public double sampleGamma(double shape, double scale) {
         if (shape < 1) {
-            // Weibull algorithm
-            double c = (1.0 / shape);
-            double d = ((1 - shape) * Math.pow(shape, shape / (1 - shape)));
-            while (true) {
-                double u = random.nextDouble();
-                double v = random.nextDouble();
-                double z = -Math.log(u);
-                double e = -Math.log(v);
-                if (z + e >= d) {
-                    return scale * Math.pow(z, c);
-                }
-            }
+            // Gamma(shape + 1) * U^(1 / shape) is Gamma(shape) distributed
+            return sampleGamma(shape + 1, scale) * Math.pow(random.nextDouble(), 1.0 / shape);
         } else {
             // Marsaglia and Tsang's method
             double d = shape - 1.0 / 3.0;
@@ -104,14 +159,11 @@ public class SampleHelper {
 
     public double[] getSamples(LognormalDistribution distribution) {
 
-        double[] samples = new double[DEFAULT_NUM_SAMPLES];
-
-        for (int i = 0; i < DEFAULT_NUM_SAMPLES; i++) {
-
-            double value = Math.exp(distribution.getMu() + distribution.getSigma() *
-                    random.nextGaussian());
+        double[] samples = new double[numSamples];
 
-            samples[i] = value;
+        SampleKernels.get().affine(standardNormals(samples), distribution.getSigma(), distribution.getMu(), samples);
+        for (int i = 0; i < numSamples; i++) {
+            samples[i] = Math.exp(samples[i]);
         }
 
         return samples;
@@ -119,22 +171,313 @@ public class SampleHelper {
 
     public double[] getSamples(BinomialDistribution distribution) {
 
-        double[] samples = new double[DEFAULT_NUM_SAMPLES];
+        double[] samples = new double[numSamples];
         int n = distribution.getN();
         double p = distribution.getP();
 
-        for (int i = 0; i < DEFAULT_NUM_SAMPLES; i++) {
+        for (int i = 0; i < numSamples; i++) {
+            samples[i] = sampleBinomial(n, p);
+        }
+        return samples;
+    }
+
+    /**
+     * Samples the binomial distribution in constant expected time: by inversion
+     * if the mean is small, otherwise with the BTPE algorithm of Kachitvichyanukul
+     * and Schmeiser (1988).
+     */
+    public int sampleBinomial(int n, double p) {
+        if (n <= 0 || p <= 0) {
+            return 0;
+        }
+        if (p >= 1) {
+            return n;
+        }
+        // both algorithms are fastest for p <= 0.5
+        double r = Math.min(p, 1 - p);
+        int x = n * r < BTPE_MIN_MEAN ? binomialInversion(n, r) : binomialBtpe(n, r);
+        return p > 0.5 ? n - x : x;
+    }
+
+    private int binomialInversion(int n, double p) {
+        double q = 1 - p;
+        double p0 = Math.exp(n * Math.log1p(-p));
+        // restart in the rare case the search runs past the mass of the distribution
+        double bound = Math.min(n, n * p + 10 * Math.sqrt(n * p * q + 1));
+        while (true) {
             int x = 0;
-            for (int j = 0; j < n; j++) {
-                if (random.nextDouble() < p) {
-                    x++;
+            double px = p0;
+            double u = random.nextDouble();
+            while (u > px && x <= bound) {
+                u -= px;
+                x++;
+                px *= (n - x + 1) * p / (x * q);
+            }
+            if (x <= bound) {
+                return x;
+            }
+        }
+    }
+
+    private int binomialBtpe(int n, double p) {
+        // setup: a triangle, two parallelograms and two exponential tails
+        double q = 1 - p;
+        double npq = n * p * q;
+        double fm = n * p + p;
+        int m = (int) fm;
+        double p1 = Math.floor(2.195 * Math.sqrt(npq) - 4.6 * q) + 0.5;
+        double xm = m + 0.5;
+        double xl = xm - p1;
+        double xr = xm + p1;
+        double c = 0.134 + 20.5 / (15.3 + m);
+        double a = (fm - xl) / (fm - xl * p);
+        double lambdaL = a * (1 + a / 2);
+        a = (xr - fm) / (xr * q);
+        double lambdaR = a * (1 + a / 2);
+        double p2 = p1 * (1 + 2 * c);
+        double p3 = p2 + c / lambdaL;
+        double p4 = p3 + c / lambdaR;
+
+        while (true) {
+            double u = random.nextDouble() * p4;
+            double v = random.nextDouble();
+            int y;
+            if (u <= p1) {
+                // triangle, accepted immediately
+                return (int) Math.floor(xm - p1 * v + u);
+            } else if (u <= p2) {
+                // parallelograms
+                double x = xl + (u - p1) / c;
+                v = v * c + 1 - Math.abs(m - x + 0.5) / p1;
+                if (v > 1) {
+                    continue;
+                }
+                y = (int) Math.floor(x);
+            } else if (u <= p3) {
+                // left tail
+                double x = Math.floor(xl + Math.log(v) / lambdaL);
+                if (x < 0) {
+                    continue;
+                }
+                y = (int) x;
+                v = v * (u - p2) * lambdaL;
+            } else {
+                // right tail
+                double x = Math.floor(xr - Math.log(v) / lambdaR);
+                if (x > n) {
+                    continue;
+                }
+                y = (int) x;
+                v = v * (u - p3) * lambdaR;
+            }
+
+            int k = Math.abs(y - m);
+            if (k <= 20 || k >= npq / 2 - 1) {
+                // explicit evaluation of f(y) / f(m)
+                double s = p / q;
+                double as = s * (n + 1);
+                double f = 1;
+                if (m < y) {
+                    for (int i = m + 1; i <= y; i++) {
+                        f *= as / i - s;
+                    }
+                } else if (m > y) {
+                    for (int i = y + 1; i <= m; i++) {
+                        f /= as / i - s;
+                    }
                 }
+                if (v <= f) {
+                    return y;
+                }
+                continue;
+            }
+
+            // squeeze with bounds of log(f(y) / f(m))
+            double rho = (k / npq) * ((k * (k / 3.0 + 0.625) + 1.0 / 6) / npq + 0.5);
+            double t = -(double) k * k / (2 * npq);
+            double logV = Math.log(v);
+            if (logV < t - rho) {
+                return y;
+            }
+            if (logV > t + rho) {
+                continue;
+            }
+
+            // final comparison with Stirling's formula
+            double x1 = y + 1;
+            double f1 = m + 1;
+            double z = n + 1 - m;
+            double w = n - y + 1;
+            if (logV <= xm * Math.log(f1 / x1) + (n - m + 0.5) * Math.log(z / w)
+                    + (y - m) * Math.log(w * p / (x1 * q)) + stirlingCorrection(f1) + stirlingCorrection(z)
+                    + stirlingCorrection(x1) + stirlingCorrection(w)) {
+                return y;
             }
-            samples[i] = x;
+        }
+    }
+
+    private static double stirlingCorrection(double x) {
+        double x2 = x * x;
+        return (13860 - (462 - (132 - (99 - 140 / x2) / x2) / x2) / x2) / x / 166320;
+    }
+
+    public double[] getSamples(PoissonDistribution distribution) {
+
+        double[] samples = new double[numSamples];
+        double lambda = distribution.getLambda();
+
+        for (int i = 0; i < numSamples; i++) {
+            samples[i] = samplePoisson(lambda);
         }
         return samples;
     }
 
+    /**
+     * Samples the Poisson distribution: with the multiplication method if the
+     * mean is small, otherwise in constant expected time with the transformed
+     * rejection method PTRS of Hörmann (1993).
+     */
+    public long samplePoisson(double lambda) {
+        if (lambda <= 0) {
+            return 0;
+        }
+        if (lambda < PTRS_MIN_MEAN) {
+            double limit = Math.exp(-lambda);
+            long x = 0;
+            double product = random.nextDouble();
+            while (product > limit) {
+                x++;
+                product *= random.nextDouble();
+            }
+            return x;
+        }
+
+        double logLambda = Math.log(lambda);
+        double b = 0.931 + 2.53 * Math.sqrt(lambda);
+        double a = -0.059 + 0.02483 * b;
+        double logAlpha = Math.log(1.1239 + 1.1328 / (b - 3.4));
+        double vr = 0.9277 - 3.6224 / (b - 2);
+        while (true) {
+            double u = random.nextDouble() - 0.5;
+            double v = random.nextDouble();
+            double us = 0.5 - Math.abs(u);
+            long k = (long) Math.floor((2 * a / us + b) * u + lambda + 0.43);
+            if (us >= 0.07 && v <= vr) {
+                return k;
+            }
+            if (k < 0 || us < 0.013 && v > us) {
+                continue;
+            }
+            if (Math.log(v) + logAlpha - Math.log(a / (us * us) + b) <= -lambda + k * logLambda - logFactorial(k)) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * @return log(k!), from a table for small k and the Stirling series
+     *         otherwise.
+     */
+    static double logFactorial(long k) {
+        if (k < LOG_FACTORIALS.length) {
+            return LOG_FACTORIALS[(int) k];
+        }
+        double x = k + 1;
+        double x2 = x * x;
+        return (x - 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI)
+                + (1.0 / 12 - (1.0 / 360 - 1.0 / (1260 * x2)) / x2) / x;
+    }
+
+    public double[] getSamples(BernoulliDistribution distribution) {
+
+        double[] samples = new double[numSamples];
+        double p = distribution.getP();
+        double[] uniforms = pooled(VariatePool.Kind.UNIFORM);
+
+        for (int i = 0; i < numSamples; i++) {
+            double u = uniforms == null ? random.nextDouble() : uniforms[i];
+            samples[i] = u < p ? 1 : 0;
+        }
+        return samples;
+    }
+
+    public double[] getSamples(DiscreteUniformDistribution distribution) {
+
+        double[] samples = new double[numSamples];
+        long a = distribution.getA();
+        long b = distribution.getB();
+        if (a > b) {
+            throw new IllegalArgumentException("Empty discrete uniform distribution [" + a + ", " + b + "]");
+        }
+
+        for (int i = 0; i < numSamples; i++) {
+            // long arithmetic, the range of two ints may exceed an int
+            samples[i] = a + random.nextLong(b - a + 1);
+        }
+        return samples;
+    }
+
+    public double[] getSamples(IntProbabilityMassFunction distribution) {
+        return getSamples(MassFunctionTable.of(distribution));
+    }
+
+    public double[] getSamples(DoubleProbabilityMassFunction distribution) {
+        return getSamples(MassFunctionTable.of(distribution));
+    }
+
+    public double[] getSamples(MassFunction distribution) {
+        return getSamples(distribution.table());
+    }
+
+    private double[] getSamples(MassFunctionTable table) {
+        double[] samples = new double[numSamples];
+        for (int i = 0; i < numSamples; i++) {
+            samples[i] = table.sample(random);
+        }
+        return samples;
+    }
+
+    /**
+     * @param function The distribution.
+     * @return A sampler drawing fresh samples of the distribution with the
+     *         generator of this helper. The values of a sampled distribution
+     *         are drawn with replacement.
+     */
+    public Sampler sampler(ProbabilityFunction function) {
+        if (function instanceof SampledDistribution sampledDistribution) {
+            return resampler(getSamples(sampledDistribution), random);
+        }
+        return count -> withSampleCount(count).getSamples(function);
+    }
+
+    /**
+     * @param distribution The mass function.
+     * @return A sampler drawing fresh samples of the mass function with the
+     *         generator of this helper.
+     */
+    public Sampler sampler(MassFunction distribution) {
+        return count -> withSampleCount(count).getSamples(distribution);
+    }
+
+    /**
+     * @param values The values, which must not be empty.
+     * @param random The generator selecting the values.
+     * @return A sampler drawing the values with replacement.
+     */
+    static Sampler resampler(double[] values, RandomGenerator random) {
+        return count -> {
+            double[] samples = new double[count];
+            for (int i = 0; i < count; i++) {
+                samples[i] = values[random.nextInt(values.length)];
+            }
+            return samples;
+        };
+    }
+
+    private SampleHelper withSampleCount(int count) {
+        return count == numSamples ? this : new SampleHelper(random, count, context);
+    }
+
     public double[] getSamples(ProbabilityFunction function) {
         if (function instanceof NormalDistribution normalDistribution) {
             return getSamples(normalDistribution);
@@ -146,6 +489,18 @@ public class SampleHelper {
             return getSamples(sampledDistribution);
         } else if (function instanceof LognormalDistribution lognormalDistribution) {
             return getSamples(lognormalDistribution);
+        } else if (function instanceof BinomialDistribution binomialDistribution) {
+            return getSamples(binomialDistribution);
+        } else if (function instanceof PoissonDistribution poissonDistribution) {
+            return getSamples(poissonDistribution);
+        } else if (function instanceof BernoulliDistribution bernoulliDistribution) {
+            return getSamples(bernoulliDistribution);
+        } else if (function instanceof DiscreteUniformDistribution discreteUniformDistribution) {
+            return getSamples(discreteUniformDistribution);
+        } else if (function instanceof IntProbabilityMassFunction intProbabilityMassFunction) {
+            return getSamples(intProbabilityMassFunction);
+        } else if (function instanceof DoubleProbabilityMassFunction doubleProbabilityMassFunction) {
+            return getSamples(doubleProbabilityMassFunction);
         }
         throw new IllegalArgumentException("Not implemented for the " + function.getClass().getSimpleName());
     }
@@ -0,0 +1,90 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+/**
+ * Elementwise kernels over sample arrays, e.g. adding a scalar to every sample
+ * of a distribution.
+ *
+ * {@link #get()} returns an implementation with the Vector API if it was
+ * compiled in (the {@code vector} build profile, which compiles
+ * {@code src/main/java-vector}) and the {@code jdk.incubator.vector} module is
+ * present, i.e. the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, and plain loops otherwise. Both
+ * compute the same values, except that {@link #pow(double[], double, double[])}
+ * may differ in the last bit. Enabling the module therefore changes the results
+ * of powers of distributions: a seeded evaluation only reproduces its samples
+ * on JVMs that agree on whether the module is present.
+ *
+ * Every kernel writes to {@code result}, which has to be at least as long as
+ * {@code samples} and may be {@code samples} itself, and returns it.
+ */
+public abstract class SampleKernels {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNELS = SampleKernels.class.getPackageName() + ".VectorSampleKernels";
+
+    private static final SampleKernels INSTANCE = load();
+
+    SampleKernels() {
+    }
+
+    /**
+     * @return The kernels selected for this JVM.
+     */
+    public static SampleKernels get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return The Vector API kernels, or null if they were not compiled in, the
+     *         module is not present or the hardware has no vector registers for
+     *         doubles.
+     */
+    static SampleKernels vectorized() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return null;
+        }
+        try {
+            // loaded reflectively, the class only exists in the vector profile and linking fails without the module
+            return (SampleKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static SampleKernels load() {
+        SampleKernels kernels = vectorized();
+        return kernels != null ? kernels : new ScalarSampleKernels();
+    }
+
+    /**
+     * @return Whether the kernels use the Vector API.
+     */
+    public abstract boolean isVectorized();
+
+    /** {@code result[i] = samples[i] + value} */
+    public abstract double[] add(double[] samples, double value, double[] result);
+
+    /** {@code result[i] = samples[i] - value} */
+    public abstract double[] subtract(double[] samples, double value, double[] result);
+
+    /** {@code result[i] = value - samples[i]} */
+    public abstract double[] subtract(double value, double[] samples, double[] result);
+
+    /** {@code result[i] = samples[i] * value} */
+    public abstract double[] multiply(double[] samples, double value, double[] result);
+
+    /** {@code result[i] = samples[i] / value} */
+    public abstract double[] divide(double[] samples, double value, double[] result);
+
+    /** {@code result[i] = value / samples[i]} */
+    public abstract double[] divide(double value, double[] samples, double[] result);
+
+    /** {@code result[i] = Math.pow(samples[i], exponent)} */
+    public abstract double[] pow(double[] samples, double exponent, double[] result);
+
+    /**
+     * {@code result[i] = shift + scale * samples[i]}, e.g. to transform standard
+     * normal samples into samples of N(shift, scale²).
+     */
+    public abstract double[] affine(double[] samples, double scale, double shift, double[] result);
+}
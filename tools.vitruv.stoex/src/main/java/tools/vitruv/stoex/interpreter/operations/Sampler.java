@@ -0,0 +1,16 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+/**
+ * Draws samples of an operand of a Monte Carlo operation on demand, so that
+ * adaptive operations can draw fresh operand samples for every batch instead
+ * of resampling a fixed set, see {@link SampleHelper#sampler}.
+ */
+@FunctionalInterface
+public interface Sampler {
+
+    /**
+     * @param count The number of samples.
+     * @return count new samples, independent of those drawn before.
+     */
+    double[] sample(int count);
+}
@@ -0,0 +1,266 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * The source of randomness for all sampling, i.e. for the {@link SampleHelper}
+ * and the {@link MonteCarloOperation}.
+ *
+ * Sampling uses the context bound to the current thread (see
+ * {@link #current()}). By default every thread has its own unseeded context,
+ * so threads never contend on a shared generator. For reproducible results, a
+ * seeded context is bound for the duration of an evaluation with
+ * {@link #call(Supplier)}. Work that is split up, e.g. the rows of a batch,
+ * uses one stream per unit of work (see {@link #seeded(long, long)}), so the
+ * results do not depend on which thread runs which unit.
+ *
+ * The context also determines how many samples are drawn per distribution
+ * and per Monte Carlo operation, trading accuracy for latency. With a
+ * {@link ConvergenceCriterion}, Monte Carlo operations draw samples until their
+ * estimates converge instead, and record a {@link MonteCarloReport} on the
+ * context. With a pool, Monte Carlo operations with a fixed sample count
+ * compute chunks of their samples in parallel. With a {@link VariatePool},
+ * distributions are sampled by transforming pooled blocks of standard
+ * variates; the blocks are counted per context, so every context starts with
+ * the first block of each kind. Unbounded distributions are converted into
+ * mass functions up to a tail mass, and the context sums up the dropped
+ * probability.
+ *
+ * A context is not thread-safe; it must only be used by one thread at a time.
+ */
+public final class SamplingContext {
+
+    /**
+     * The algorithm of the generators, falling back to SplittableRandom if the
+     * JDK does not provide it.
+     */
+    public static final String ALGORITHM = "L64X128MixRandom";
+
+    public static final int DEFAULT_SAMPLE_COUNT = 10000;
+
+    /**
+     * The probability that the conversion of an unbounded distribution into a
+     * mass function drops by default, see {@link #getTailMass()}.
+     */
+    public static final double DEFAULT_TAIL_MASS = 1e-13;
+
+    private static final RandomGeneratorFactory<SplittableGenerator> FACTORY = createFactory();
+
+    private static final ThreadLocal<SamplingContext> CURRENT = ThreadLocal
+            .withInitial(() -> new SamplingContext(FACTORY.create(), DEFAULT_SAMPLE_COUNT, null, null, null,
+                    DEFAULT_TAIL_MASS));
+
+    private final SplittableGenerator generator;
+    private final int sampleCount;
+    private final ConvergenceCriterion convergence;
+    private final ForkJoinPool pool;
+    private final VariatePool variates;
+    private final double tailMass;
+    private final int[] blocksTaken = new int[VariatePool.Kind.values().length];
+    private final List<MonteCarloReport> reports = new ArrayList<>();
+    private double truncatedMass;
+
+    private SamplingContext(SplittableGenerator generator, int sampleCount, ConvergenceCriterion convergence,
+            ForkJoinPool pool, VariatePool variates, double tailMass) {
+        this.generator = generator;
+        this.sampleCount = sampleCount;
+        this.convergence = convergence;
+        this.pool = pool;
+        this.variates = variates;
+        this.tailMass = tailMass;
+    }
+
+    /**
+     * @return The context bound to the current thread.
+     */
+    public static SamplingContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @param seed The seed.
+     * @return A new context whose samples are determined by the seed.
+     */
+    public static SamplingContext seeded(long seed) {
+        return new SamplingContext(FACTORY.create(seed), DEFAULT_SAMPLE_COUNT, null, null, null,
+                DEFAULT_TAIL_MASS);
+    }
+
+    /**
+     * @param seed   The seed.
+     * @param stream The index of the stream, e.g. the row of a batch.
+     * @return A new context for one of many independent streams of samples
+     *         determined by the seed.
+     */
+    public static SamplingContext seeded(long seed, long stream) {
+        return seeded(mix(seed + stream * 0x9E3779B97F4A7C15L));
+    }
+
+    /**
+     * @return A new context for a statistically independent stream split off
+     *         this one.
+     */
+    public SamplingContext split() {
+        return new SamplingContext(generator.split(), sampleCount, convergence, pool, variates, tailMass);
+    }
+
+    /**
+     * @param sampleCount The number of samples to draw.
+     * @param convergence When adaptive Monte Carlo operations stop, or null
+     *                    for a fixed number of samples.
+     * @param pool        The pool for parallel Monte Carlo operations, or null
+     *                    to sample in the calling thread.
+     * @return A new context drawing from the generator of this one, without
+     *         reports.
+     * @throws IllegalArgumentException if the sample count is not positive.
+     */
+    public SamplingContext withSampling(int sampleCount, ConvergenceCriterion convergence, ForkJoinPool pool) {
+        if (sampleCount <= 0) {
+            throw new IllegalArgumentException("Sample count must be positive: " + sampleCount);
+        }
+        return new SamplingContext(generator, sampleCount, convergence, pool, variates, tailMass);
+    }
+
+    /**
+     * @param variates The pool of standard variates that distributions are
+     *                 sampled from, or null to draw fresh variates from the
+     *                 generator.
+     * @return A new context drawing from the generator of this one, without
+     *         reports and starting with the first block of each kind.
+     */
+    public SamplingContext withVariates(VariatePool variates) {
+        return new SamplingContext(generator, sampleCount, convergence, pool, variates, tailMass);
+    }
+
+    /**
+     * @param tailMass The probability that the conversion of an unbounded
+     *                 distribution, e.g. a Poisson distribution, into a mass
+     *                 function may drop, split evenly between both tails.
+     * @return A new context drawing from the generator of this one, without
+     *         reports.
+     * @throws IllegalArgumentException if the tail mass is not in (0, 1).
+     */
+    public SamplingContext withTailMass(double tailMass) {
+        if (!(tailMass > 0 && tailMass < 1)) {
+            throw new IllegalArgumentException("Tail mass must be in (0, 1): " + tailMass);
+        }
+        return new SamplingContext(generator, sampleCount, convergence, pool, variates, tailMass);
+    }
+
+    public RandomGenerator getGenerator() {
+        return generator;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return The criterion of adaptive Monte Carlo operations, or null if they
+     *         draw a fixed number of samples.
+     */
+    public ConvergenceCriterion getConvergence() {
+        return convergence;
+    }
+
+    /**
+     * @return The pool for parallel Monte Carlo operations, or null if they run
+     *         in the calling thread.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @return The pool of standard variates, or null if variates are drawn from
+     *         the generator.
+     */
+    public VariatePool getVariates() {
+        return variates;
+    }
+
+    /**
+     * @return The probability that the conversion of an unbounded distribution
+     *         into a mass function may drop.
+     */
+    public double getTailMass() {
+        return tailMass;
+    }
+
+    /**
+     * @param kind The kind of variates.
+     * @param size The number of variates.
+     * @return The next block of the kind from the pool, which must not be
+     *         modified, or null if the context has no pool.
+     */
+    double[] nextVariates(VariatePool.Kind kind, int size) {
+        if (variates == null) {
+            return null;
+        }
+        return variates.block(kind, blocksTaken[kind.ordinal()]++, size);
+    }
+
+    /**
+     * @return The reports of the adaptive Monte Carlo operations performed in
+     *         this context, in order.
+     */
+    public List<MonteCarloReport> getReports() {
+        return Collections.unmodifiableList(reports);
+    }
+
+    void addReport(MonteCarloReport report) {
+        reports.add(report);
+    }
+
+    /**
+     * @return An upper bound of the total probability that the conversions of
+     *         unbounded distributions in this context dropped.
+     */
+    public double getTruncatedMass() {
+        return truncatedMass;
+    }
+
+    void addTruncatedMass(double mass) {
+        truncatedMass += mass;
+    }
+
+    /**
+     * Binds this context to the current thread while running the given action.
+     *
+     * @param action The action, e.g. an evaluation.
+     * @return The result of the action.
+     */
+    public <T> T call(Supplier<T> action) {
+        SamplingContext previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    private static RandomGeneratorFactory<SplittableGenerator> createFactory() {
+        try {
+            return RandomGeneratorFactory.of(ALGORITHM);
+        } catch (IllegalArgumentException e) {
+            return RandomGeneratorFactory.of("SplittableRandom");
+        }
+    }
+
+    /**
+     * Murmur3 finalizer, so that neighbouring streams get unrelated seeds.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,77 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+/**
+ * Sample kernels as plain loops, which the JIT compiler vectorizes where it
+ * can.
+ */
+final class ScalarSampleKernels extends SampleKernels {
+
+    @Override
+    public boolean isVectorized() {
+        return false;
+    }
+
+    @Override
+    public double[] add(double[] samples, double value, double[] result) {
+        for (int i = 0; i < samples.length; i++) {
+            result[i] = samples[i] + value;
+        }
+        return result;
+    }
+
+    @Override
+    public double[] subtract(double[] samples, double value, double[] result) {
+        for (int i = 0; i < samples.length; i++) {
+            result[i] = samples[i] - value;
+        }
+        return result;
+    }
+
+    @Override
+    public double[] subtract(double value, double[] samples, double[] result) {
+        for (int i = 0; i < samples.length; i++) {
+            result[i] = value - samples[i];
+        }
+        return result;
+    }
+
+    @Override
+    public double[] multiply(double[] samples, double value, double[] result) {
+        for (int i = 0; i < samples.length; i++) {
+            result[i] = samples[i] * value;
+        }
+        return result;
+    }
+
+    @Override
+    public double[] divide(double[] samples, double value, double[] result) {
+        for (int i = 0; i < samples.length; i++) {
+            result[i] = samples[i] / value;
+        }
+        return result;
+    }
+
+    @Override
+    public double[] divide(double value, double[] samples, double[] result) {
+        for (int i = 0; i < samples.length; i++) {
+            result[i] = value / samples[i];
+        }
+        return result;
+    }
+
+    @Override
+    public double[] pow(double[] samples, double exponent, double[] result) {
+        for (int i = 0; i < samples.length; i++) {
+            result[i] = Math.pow(samples[i], exponent);
+        }
+        return result;
+    }
+
+    @Override
+    public double[] affine(double[] samples, double scale, double shift, double[] result) {
+        for (int i = 0; i < samples.length; i++) {
+            result[i] = shift + scale * samples[i];
+        }
+        return result;
+    }
+}
@@ -9,7 +9,6 @@ import tools.vitruv.stoex.stoex.LognormalDistribution;
 import tools.vitruv.stoex.stoex.NormalDistribution;
 import tools.vitruv.stoex.stoex.PoissonDistribution;
 import tools.vitruv.stoex.stoex.ProbabilityDensityFunction;
-import tools.vitruv.stoex.stoex.ProbabilityMassFunction;
 import tools.vitruv.stoex.stoex.SampledDistribution;
 import tools.vitruv.stoex.stoex.StoexFactory;
 
@@ -27,6 +26,9 @@ import tools.vitruv.stoex.stoex.StoexFactory;
  */
 public class SubOperation implements Operation {
 
+    /** Shared instance; the operation is stateless. */
+    public static final SubOperation INSTANCE = new SubOperation();
+
     @Override
     public int evaluate(int left, int right) {
         return left - right;
@@ -54,7 +56,21 @@ public class SubOperation implements Operation {
     public SampledDistribution evaluate(double[] samplesLeft, double[] samplesRight) {
 
         MonteCarloOperation op = new MonteCarloOperation();
-        double[] combinedSamples = op.evaluateTermOperation(samplesLeft, samplesRight, 10000,
+        double[] combinedSamples = op.evaluateTermOperation(samplesLeft, samplesRight,
+                ProbabilityFunctionOperations.SUB);
+
+        SampledDistribution result = StoexFactory.eINSTANCE.createSampledDistribution();
+        for (double d : combinedSamples) {
+            result.getValues().add(d);
+        }
+        return result;
+    }
+
+    @Override
+    public SampledDistribution evaluate(Sampler samplerLeft, Sampler samplerRight) {
+
+        MonteCarloOperation op = new MonteCarloOperation();
+        double[] combinedSamples = op.evaluateTermOperation(samplerLeft, samplerRight,
                 ProbabilityFunctionOperations.SUB);
 
         SampledDistribution result = StoexFactory.eINSTANCE.createSampledDistribution();
@@ -86,18 +102,20 @@ public class SubOperation implements Operation {
 
     @Override
     public SampledDistribution evaluate(double[] samplesLeft, double right) {
+        double[] samples = SampleKernels.get().subtract(samplesLeft, right, new double[samplesLeft.length]);
         SampledDistribution result = StoexFactory.eINSTANCE.createSampledDistribution();
-        for (double d : samplesLeft) {
-            result.getValues().add(d - right);
+        for (double d : samples) {
+            result.getValues().add(d);
         }
         return result;
     }
 
     @Override
     public SampledDistribution evaluate(double left, double[] samplesRight) {
+        double[] samples = SampleKernels.get().subtract(left, samplesRight, new double[samplesRight.length]);
         SampledDistribution result = StoexFactory.eINSTANCE.createSampledDistribution();
-        for (double d : samplesRight) {
-            result.getValues().add(left - d);
+        for (double d : samples) {
+            result.getValues().add(d);
         }
         return result;
     }
@@ -109,6 +127,11 @@ public class SubOperation implements Operation {
     @Override
     public IntProbabilityMassFunction evaluate(IntProbabilityMassFunction left,
             IntProbabilityMassFunction right) {
+        return evaluate(MassFunction.of(left), MassFunction.of(right)).toPMF();
+    }
+
+    @Override
+    public MassFunction evaluate(MassFunction left, MassFunction right) {
         ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
         return conv.combine(left, right, ProbabilityFunctionOperations.SUB);
     }
@@ -119,61 +142,58 @@ public class SubOperation implements Operation {
 
     @Override
     public IntProbabilityMassFunction evaluate(IntProbabilityMassFunction left, int right) {
-        IntProbabilityMassFunction result = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
-        for (var sample : left.getSamples()) {
-            var newSample = StoexFactory.eINSTANCE.createIntSample();
-            newSample.setValue(sample.getValue() - right);
-            newSample.setProbability(sample.getProbability());
-            result.getSamples().add(newSample);
-        }
-        return result;
+        return evaluate(MassFunction.of(left), right).toPMF();
     }
 
+    @Override
     public IntProbabilityMassFunction evaluate(int left, IntProbabilityMassFunction right) {
-        IntProbabilityMassFunction result = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
-        for (var sample : right.getSamples()) {
-            var newSample = StoexFactory.eINSTANCE.createIntSample();
-            newSample.setValue(left - sample.getValue());
-            newSample.setProbability(sample.getProbability());
-            result.getSamples().add(newSample);
-        }
-        return result;
+        return evaluate(left, MassFunction.of(right)).toPMF();
+    }
+
+    @Override
+    public MassFunction evaluate(MassFunction left, int right) {
+        return left.map(value -> value - right);
+    }
+
+    @Override
+    public MassFunction evaluate(int left, MassFunction right) {
+        return right.map(value -> left - value);
     }
 
     @Override
     public ProbabilityDensityFunction evaluate(ExponentialDistribution left, ExponentialDistribution right) {
         SampleHelper helper = new SampleHelper();
-        return evaluate(helper.getSamples(left), helper.getSamples(right));
+        return evaluate(helper.sampler(left), helper.sampler(right));
     }
 
     @Override
     public ProbabilityDensityFunction evaluate(GammaDistribution left, GammaDistribution right) {
         SampleHelper helper = new SampleHelper();
-        return evaluate(helper.getSamples(left), helper.getSamples(right));
+        return evaluate(helper.sampler(left), helper.sampler(right));
     }
 
     @Override
     public ProbabilityDensityFunction evaluate(LognormalDistribution left, LognormalDistribution right) {
         SampleHelper helper = new SampleHelper();
-        return evaluate(helper.getSamples(left), helper.getSamples(right));
+        return evaluate(helper.sampler(left), helper.sampler(right));
     }
 
     @Override
-    public ProbabilityMassFunction evaluate(PoissonDistribution left, PoissonDistribution right) {
+    public IntProbabilityMassFunction evaluate(PoissonDistribution left, PoissonDistribution right) {
         ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
-        return evaluate(conv.convertToPMF(left), conv.convertToPMF(right));
+        return evaluate(conv.toMassFunction(left), conv.toMassFunction(right)).toPMF();
     }
 
     @Override
-    public ProbabilityMassFunction evaluate(BernoulliDistribution left, BernoulliDistribution right) {
+    public IntProbabilityMassFunction evaluate(BernoulliDistribution left, BernoulliDistribution right) {
         ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
-        return evaluate(conv.convertToPMF(left), conv.convertToPMF(right));
+        return evaluate(conv.toMassFunction(left), conv.toMassFunction(right)).toPMF();
     }
 
     @Override
-    public ProbabilityMassFunction evaluate(BinomialDistribution left, BinomialDistribution right) {
+    public IntProbabilityMassFunction evaluate(BinomialDistribution left, BinomialDistribution right) {
         ProbabilityMassFunctionHelper conv = new ProbabilityMassFunctionHelper();
-        return evaluate(conv.convertToPMF(left), conv.convertToPMF(right));
+        return evaluate(conv.toMassFunction(left), conv.toMassFunction(right)).toPMF();
     }
 
 }
@@ -0,0 +1,95 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.random.RandomGenerator;
+
+/**
+ * Blocks of standard variates that are drawn once and then reused: samplers
+ * transform them instead of drawing fresh ones, e.g. a block Z of standard
+ * normal variates into the samples {@code mu + sigma * Z} of N(mu, sigma²).
+ *
+ * Within one evaluation, every distribution operand takes the next block of
+ * its kind, so the operands of an expression are independent. Every evaluation
+ * starts again with the first block, so evaluations with the same pool reuse
+ * the same blocks; their results differ only in the parameters, i.e. they use
+ * common random numbers. See {@link SamplingContext#withVariates(VariatePool)}.
+ *
+ * Only the longest block per kind and index is kept: it is grown on demand,
+ * and shorter blocks are copied from its prefix.
+ *
+ * The blocks are determined by the seed of the pool. A pool is thread-safe and
+ * may be shared between evaluations running in parallel.
+ */
+public final class VariatePool {
+
+    /** The kinds of standard variates. */
+    public enum Kind {
+        /** Standard normal, N(0, 1). */
+        NORMAL,
+        /** Standard exponential, Exp(1). */
+        EXPONENTIAL,
+        /** Standard uniform, U[0, 1). */
+        UNIFORM
+    }
+
+    private final long seed;
+    private final Map<Key, double[]> blocks = new ConcurrentHashMap<>();
+
+    private record Key(Kind kind, int index) {
+    }
+
+    /**
+     * @param seed The seed that determines all blocks.
+     */
+    public VariatePool(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param kind  The kind of variates.
+     * @param index The index of the block among the blocks of its kind.
+     * @param size  The number of variates.
+     * @return The block, which must not be modified. A shorter block with the
+     *         same index is a prefix of a longer one.
+     */
+    public double[] block(Kind kind, int index, int size) {
+        double[] block = blocks.compute(new Key(kind, index),
+                (key, longest) -> longest != null && longest.length >= size ? longest : generate(key, size));
+        return block.length == size ? block : Arrays.copyOf(block, size);
+    }
+
+    /**
+     * @return The number of blocks kept, i.e. of distinct kinds and indices.
+     */
+    int blockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * Drops all blocks, e.g. to release their memory.
+     */
+    public void clear() {
+        blocks.clear();
+    }
+
+    private double[] generate(Key key, int size) {
+        RandomGenerator random = SamplingContext
+                .seeded(seed, (long) key.index() * Kind.values().length + key.kind().ordinal()).getGenerator();
+        double[] variates = new double[size];
+        for (int i = 0; i < variates.length; i++) {
+            variates[i] = switch (key.kind()) {
+                case NORMAL -> random.nextGaussian();
+                case EXPONENTIAL -> random.nextExponential();
+                case UNIFORM -> random.nextDouble();
+            };
+        }
+        return variates;
+    }
+
+    @Override
+    public String toString() {
+        return "VariatePool[seed=" + seed + ", blocks=" + blocks.size() + "]";
+    }
+}
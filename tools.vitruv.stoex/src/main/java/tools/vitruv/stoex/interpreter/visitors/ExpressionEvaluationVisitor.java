@@ -1,16 +1,13 @@
 package tools.vitruv.stoex.interpreter.visitors;
 
-import java.util.HashMap;
-import java.util.Map;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 
-import tools.vitruv.stoex.interpreter.StoexEvaluator;
-import tools.vitruv.stoex.interpreter.operations.AddOperation;
+import tools.vitruv.stoex.interpreter.EvaluationContext;
 import tools.vitruv.stoex.interpreter.operations.Dispatcher;
-import tools.vitruv.stoex.interpreter.operations.DivOperation;
+import tools.vitruv.stoex.interpreter.operations.MassFunction;
 import tools.vitruv.stoex.interpreter.operations.ModOperation;
-import tools.vitruv.stoex.interpreter.operations.MultOperation;
 import tools.vitruv.stoex.interpreter.operations.PowerOperator;
-import tools.vitruv.stoex.interpreter.operations.SubOperation;
 import tools.vitruv.stoex.stoex.AbstractNamedReference;
 import tools.vitruv.stoex.stoex.BernoulliDistribution;
 import tools.vitruv.stoex.stoex.BinomialDistribution;
@@ -25,6 +22,7 @@ import tools.vitruv.stoex.stoex.Expression;
 import tools.vitruv.stoex.stoex.FunctionLiteral;
 import tools.vitruv.stoex.stoex.IfElseExpression;
 import tools.vitruv.stoex.stoex.IntLiteral;
+import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
 import tools.vitruv.stoex.stoex.NamespaceReference;
 import tools.vitruv.stoex.stoex.NegativeExpression;
 import tools.vitruv.stoex.stoex.NormalDistribution;
@@ -43,25 +41,54 @@ import tools.vitruv.stoex.stoex.VariableReference;
 import tools.vitruv.stoex.stoex.util.StoexSwitch;
 
 /**
- * Enhanced expression evaluator that computes actual results
+ * Enhanced expression evaluator that computes actual results.
+ * 
+ * Variables are resolved through an {@link EvaluationContext}. A visitor is
+ * cheap to create and is meant to be used for one evaluation on one thread.
  */
 public class ExpressionEvaluationVisitor extends StoexSwitch<Object> {
 
-    private final Map<String, Object> variableValues = new HashMap<>();
+    private final EvaluationContext context;
 
     public ExpressionEvaluationVisitor() {
-        // Initialize with common constants
-        variableValues.put("PI", Math.PI);
-        variableValues.put("E", Math.E);
+        this(new EvaluationContext());
+    }
+
+    public ExpressionEvaluationVisitor(EvaluationContext context) {
+        this.context = context;
     }
 
     // Set variable values for evaluation
     public void setVariable(String name, Object value) {
-        variableValues.put(name, value);
+        context.setVariable(name, value);
     }
 
     public Object getVariable(String name) {
-        return variableValues.get(name);
+        return context.getVariable(name);
+    }
+
+    /**
+     * @return The value of the expression; mass functions are
+     *         {@link IntProbabilityMassFunction}s.
+     */
+    @Override
+    public Object doSwitch(EObject eObject) {
+        Object result = evaluate(eObject);
+        if (result instanceof MassFunction massFunction) {
+            return massFunction.toPMF();
+        }
+        return result;
+    }
+
+    /**
+     * Like {@link #doSwitch(EObject)}, but discrete intermediate results stay
+     * {@link MassFunction}s, which are only converted at the end, e.g. by the
+     * {@link tools.vitruv.stoex.interpreter.StoexEvaluator}.
+     *
+     * @return The value of the expression.
+     */
+    public Object evaluate(EObject eObject) {
+        return super.doSwitch(eObject);
     }
 
     // Basic literals - return their values
@@ -89,7 +116,7 @@ public class ExpressionEvaluationVisitor extends StoexSwitch<Object> {
     @Override
     public Object caseVariable(Variable object) {
         String varName = resolveVariableName(object.getId_Variable());
-        Object value = variableValues.get(varName);
+        Object value = context.getVariable(varName);
         if (value == null) {
             throw new RuntimeException("Undefined variable: " + varName);
         }
@@ -103,8 +130,15 @@ public class ExpressionEvaluationVisitor extends StoexSwitch<Object> {
             return value;
         }
 
-        StoexEvaluator evaluator = new StoexEvaluator();
-        return evaluator.evaluate((String) value);
+        // Variables given as strings hold Stoex expressions themselves, which are
+        // evaluated without the variables of this evaluation, see EvaluationContext
+        Expression expression = context.parse((String) value);
+        Object result = new ExpressionEvaluationVisitor(context.nested()).evaluate(expression);
+        if (result instanceof EObject eObject && EcoreUtil.isAncestor(expression, eObject)) {
+            // never hand out nodes of the shared cached expression
+            return EcoreUtil.copy(eObject);
+        }
+        return result;
     }
 
     private String resolveVariableName(AbstractNamedReference ref) {
@@ -118,7 +152,7 @@ public class ExpressionEvaluationVisitor extends StoexSwitch<Object> {
 
     @Override
     public Object caseParenthesis(Parenthesis object) {
-        return doSwitch(object.getInnerExpression());
+        return evaluate(object.getInnerExpression());
     }
 
     @Override
@@ -171,8 +205,8 @@ public class ExpressionEvaluationVisitor extends StoexSwitch<Object> {
     // Arithmetic operations
     @Override
     public Object caseTermExpression(TermExpression object) {
-        Object leftValue = doSwitch(object.getLeft());
-        Object rightValue = doSwitch(object.getRight());
+        Object leftValue = evaluate(object.getLeft());
+        Object rightValue = evaluate(object.getRight());
         TermOperations operation = object.getOperation();
 
         return evaluateTermOperation(leftValue, rightValue, operation);
@@ -180,8 +214,8 @@ public class ExpressionEvaluationVisitor extends StoexSwitch<Object> {
 
     @Override
     public Object caseProductExpression(ProductExpression object) {
-        Object leftValue = doSwitch(object.getLeft());
-        Object rightValue = doSwitch(object.getRight());
+        Object leftValue = evaluate(object.getLeft());
+        Object rightValue = evaluate(object.getRight());
         ProductOperations operation = object.getOperation();
 
         return evaluateProductOperation(leftValue, rightValue, operation);
@@ -189,17 +223,16 @@ public class ExpressionEvaluationVisitor extends StoexSwitch<Object> {
 
     @Override
     public Object casePowerExpression(PowerExpression object) {
-        Object baseValue = doSwitch(object.getBase());
-        Object exponentValue = doSwitch(object.getExponent());
+        Object baseValue = evaluate(object.getBase());
+        Object exponentValue = evaluate(object.getExponent());
 
-        PowerOperator powerOp = new PowerOperator();
-        return powerOp.evaluate(baseValue, exponentValue);
+        return PowerOperator.INSTANCE.evaluate(baseValue, exponentValue);
     }
 
     @Override
     public Object caseCompareExpression(CompareExpression object) {
-        Object leftValue = doSwitch(object.getLeft());
-        Object rightValue = doSwitch(object.getRight());
+        Object leftValue = evaluate(object.getLeft());
+        Object rightValue = evaluate(object.getRight());
         CompareOperations operation = object.getOperation();
 
         return evaluateCompareOperation(leftValue, rightValue, operation);
@@ -207,8 +240,8 @@ public class ExpressionEvaluationVisitor extends StoexSwitch<Object> {
 
     @Override
     public Object caseBooleanOperatorExpression(BooleanOperatorExpression object) {
-        Object leftValue = doSwitch(object.getLeft());
-        Object rightValue = doSwitch(object.getRight());
+        Object leftValue = evaluate(object.getLeft());
+        Object rightValue = evaluate(object.getRight());
 
         boolean left = toBoolean(leftValue);
         boolean right = toBoolean(rightValue);
@@ -229,26 +262,26 @@ public class ExpressionEvaluationVisitor extends StoexSwitch<Object> {
 
     @Override
     public Object caseIfElseExpression(IfElseExpression object) {
-        Object conditionValue = doSwitch(object.getConditionExpression());
+        Object conditionValue = evaluate(object.getConditionExpression());
 
         // Regular boolean condition
         boolean condition = toBoolean(conditionValue);
         if (condition) {
-            return doSwitch(object.getIfExpression());
+            return evaluate(object.getIfExpression());
         } else {
-            return doSwitch(object.getElseExpression());
+            return evaluate(object.getElseExpression());
         }
     }
 
     @Override
     public Object caseNegativeExpression(NegativeExpression object) {
-        Object value = doSwitch(object.getInner());
+        Object value = evaluate(object.getInner());
         return -toDouble(value);
     }
 
     @Override
     public Object caseNotExpression(NotExpression object) {
-        Object value = doSwitch(object.getInner());
+        Object value = evaluate(object.getInner());
         return !toBoolean(value);
     }
 
@@ -261,44 +294,44 @@ public class ExpressionEvaluationVisitor extends StoexSwitch<Object> {
                 if (object.getParameters_FunctionLiteral().size() != 1) {
                     throw new IllegalArgumentException("sin() requires exactly 1 parameter");
                 }
-                double sinArg = toDouble(doSwitch(object.getParameters_FunctionLiteral().get(0)));
+                double sinArg = toDouble(evaluate(object.getParameters_FunctionLiteral().get(0)));
                 return Math.sin(sinArg);
 
             case "cos":
                 if (object.getParameters_FunctionLiteral().size() != 1) {
                     throw new IllegalArgumentException("cos() requires exactly 1 parameter");
                 }
-                double cosArg = toDouble(doSwitch(object.getParameters_FunctionLiteral().get(0)));
+                double cosArg = toDouble(evaluate(object.getParameters_FunctionLiteral().get(0)));
                 return Math.cos(cosArg);
 
             case "sqrt":
                 if (object.getParameters_FunctionLiteral().size() != 1) {
                     throw new IllegalArgumentException("sqrt() requires exactly 1 parameter");
                 }
-                double sqrtArg = toDouble(doSwitch(object.getParameters_FunctionLiteral().get(0)));
+                double sqrtArg = toDouble(evaluate(object.getParameters_FunctionLiteral().get(0)));
                 return Math.sqrt(sqrtArg);
 
             case "abs":
                 if (object.getParameters_FunctionLiteral().size() != 1) {
                     throw new IllegalArgumentException("abs() requires exactly 1 parameter");
                 }
-                double absArg = toDouble(doSwitch(object.getParameters_FunctionLiteral().get(0)));
+                double absArg = toDouble(evaluate(object.getParameters_FunctionLiteral().get(0)));
                 return Math.abs(absArg);
 
             case "max":
                 if (object.getParameters_FunctionLiteral().size() != 2) {
                     throw new IllegalArgumentException("max() requires exactly 2 parameters");
                 }
-                double max1 = toDouble(doSwitch(object.getParameters_FunctionLiteral().get(0)));
-                double max2 = toDouble(doSwitch(object.getParameters_FunctionLiteral().get(1)));
+                double max1 = toDouble(evaluate(object.getParameters_FunctionLiteral().get(0)));
+                double max2 = toDouble(evaluate(object.getParameters_FunctionLiteral().get(1)));
                 return Math.max(max1, max2);
 
             case "min":
                 if (object.getParameters_FunctionLiteral().size() != 2) {
                     throw new IllegalArgumentException("min() requires exactly 2 parameters");
                 }
-                double min1 = toDouble(doSwitch(object.getParameters_FunctionLiteral().get(0)));
-                double min2 = toDouble(doSwitch(object.getParameters_FunctionLiteral().get(1)));
+                double min1 = toDouble(evaluate(object.getParameters_FunctionLiteral().get(0)));
+                double min2 = toDouble(evaluate(object.getParameters_FunctionLiteral().get(1)));
                 return Math.min(min1, min2);
 
             default:
@@ -310,12 +343,10 @@ public class ExpressionEvaluationVisitor extends StoexSwitch<Object> {
     private Object evaluateTermOperation(Object left, Object right, TermOperations operation) {
         switch (operation) {
             case ADD -> {
-                Dispatcher dispatcher = new Dispatcher(new AddOperation());
-                return dispatcher.dispatch(left, right);
+                return Dispatcher.ADD.evaluate(left, right);
             }
             case SUB -> {
-                Dispatcher dispatcher = new Dispatcher(new SubOperation());
-                return dispatcher.dispatch(left, right);
+                return Dispatcher.SUB.evaluate(left, right);
             }
             default -> throw new UnsupportedOperationException("Unknown term operation: " + operation);
         }
@@ -324,16 +355,13 @@ public class ExpressionEvaluationVisitor extends StoexSwitch<Object> {
     private Object evaluateProductOperation(Object left, Object right, ProductOperations operation) {
         switch (operation) {
             case MULT -> {
-                Dispatcher dispatcher = new Dispatcher(new MultOperation());
-                return dispatcher.dispatch(left, right);
+                return Dispatcher.MULT.evaluate(left, right);
             }
             case DIV -> {
-                Dispatcher dispatcher = new Dispatcher(new DivOperation());
-                return dispatcher.dispatch(left, right);
+                return Dispatcher.DIV.evaluate(left, right);
             }
             case MOD -> {
-                ModOperation modOp = new ModOperation();
-                return modOp.evaluate(left, right);
+                return ModOperation.INSTANCE.evaluate(left, right);
             }
             default -> throw new UnsupportedOperationException("Unknown product operation: " + operation);
         }
@@ -0,0 +1,246 @@
+package tools.vitruv.stoex.interpreter.visitors;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+import tools.vitruv.stoex.interpreter.compiler.ScalarType;
+import tools.vitruv.stoex.interpreter.compiler.ScalarTypeInference;
+
+import tools.vitruv.stoex.stoex.BooleanExpression;
+import tools.vitruv.stoex.stoex.DoubleLiteral;
+import tools.vitruv.stoex.stoex.Expression;
+import tools.vitruv.stoex.stoex.FunctionLiteral;
+import tools.vitruv.stoex.stoex.IntLiteral;
+import tools.vitruv.stoex.stoex.NegativeExpression;
+import tools.vitruv.stoex.stoex.Parenthesis;
+import tools.vitruv.stoex.stoex.PowerExpression;
+import tools.vitruv.stoex.stoex.ProductExpression;
+import tools.vitruv.stoex.stoex.ProductOperations;
+import tools.vitruv.stoex.stoex.StoexFactory;
+import tools.vitruv.stoex.stoex.TermExpression;
+import tools.vitruv.stoex.stoex.TermOperations;
+import tools.vitruv.stoex.stoex.util.StoexSwitch;
+
+/**
+ * Optimization pass that simplifies an expression before evaluation:
+ *
+ * - Term, product, power and function nodes whose operands are all numeric
+ * constants are folded into a literal, computed with the
+ * {@link ExpressionEvaluationVisitor} so the result is exactly what the
+ * evaluation would compute. Negative double results become a negated literal;
+ * results that cannot be written as a literal (negative ints, NaN, infinity)
+ * and failing operations (e.g. division by zero) are left to the evaluation.
+ * - The identities x + 0, 0 + x, x - 0, x * 1, 1 * x, x / 1 and x ^ 1 are
+ * simplified to x if x is statically a number, as inferred by the
+ * {@link ScalarTypeInference}. Booleans and distributions are not simplified,
+ * as the operation converts them (e.g. true * 1 is 1.0, and an analytic
+ * distribution times 1 is sampled). Only the int literals 0 and 1 are used,
+ * as a double literal would turn an int result into a double.
+ * - Parentheses are removed wherever the inner expression may appear without
+ * them, i.e. wherever the precedence allows it.
+ *
+ * The result is again a valid Stoex expression. Cases return the replacement
+ * of a node, which its container only takes if the grammar allows it.
+ */
+public class ExpressionSimplificationVisitor extends StoexSwitch<Expression> {
+
+    private final ScalarTypeInference inference;
+
+    /**
+     * Creates a visitor that treats all variables as not statically numeric.
+     */
+    public ExpressionSimplificationVisitor() {
+        this(Map.of());
+    }
+
+    /**
+     * @param variableTypes The static types of the variables, which allow the
+     *                      identities to be applied to them.
+     */
+    public ExpressionSimplificationVisitor(Map<String, ScalarType> variableTypes) {
+        this.inference = new ScalarTypeInference(variableTypes);
+    }
+
+    /**
+     * Simplifies a copy of the given expression.
+     *
+     * @param expression The expression to simplify; it is not modified.
+     * @return The simplified expression.
+     */
+    public static Expression simplify(Expression expression) {
+        return simplify(expression, Map.of());
+    }
+
+    /**
+     * Simplifies a copy of the given expression.
+     *
+     * @param expression    The expression to simplify; it is not modified.
+     * @param variableTypes The static types of the variables.
+     * @return The simplified expression.
+     */
+    public static Expression simplify(Expression expression, Map<String, ScalarType> variableTypes) {
+        return new ExpressionSimplificationVisitor(variableTypes).simplifyInPlace(EcoreUtil.copy(expression));
+    }
+
+    /**
+     * Simplifies the given expression, modifying it. Meant for expressions that
+     * were just parsed and are not referenced anywhere else.
+     *
+     * @param expression The expression to simplify.
+     * @return The simplified expression, which may be a different (detached)
+     *         node than the given one.
+     */
+    public Expression simplifyInPlace(Expression expression) {
+        Expression result = simplifyNode(expression);
+        if (result != expression && result.eContainer() != null) {
+            EcoreUtil.remove(result);
+        }
+        return result;
+    }
+
+    /**
+     * Simplifies the children of a node, then the node itself.
+     */
+    private Expression simplifyNode(Expression node) {
+        for (EReference reference : node.eClass().getEAllContainments()) {
+            if (reference.isMany()) {
+                @SuppressWarnings("unchecked")
+                List<EObject> children = (List<EObject>) node.eGet(reference);
+                for (int i = 0; i < children.size(); i++) {
+                    if (children.get(i) instanceof Expression child) {
+                        Expression replacement = simplifyNode(child);
+                        if (replacement != child && reference.getEType().isInstance(replacement)) {
+                            children.set(i, replacement);
+                        }
+                    }
+                }
+            } else if (node.eGet(reference) instanceof Expression child) {
+                Expression replacement = simplifyNode(child);
+                if (replacement != child && reference.getEType().isInstance(replacement)) {
+                    node.eSet(reference, replacement);
+                }
+            }
+        }
+        return doSwitch(node);
+    }
+
+    @Override
+    public Expression defaultCase(EObject object) {
+        return (Expression) object;
+    }
+
+    @Override
+    public Expression caseParenthesis(Parenthesis object) {
+        return object.getInnerExpression();
+    }
+
+    @Override
+    public Expression caseTermExpression(TermExpression object) {
+        if (isConstant(object.getLeft()) && isConstant(object.getRight())) {
+            return fold(object);
+        }
+        if (isIntLiteral(object.getRight(), 0) && isNumber(object.getLeft())) {
+            return object.getLeft();
+        }
+        if (object.getOperation() == TermOperations.ADD && isIntLiteral(object.getLeft(), 0)
+                && isNumber(object.getRight())) {
+            return object.getRight();
+        }
+        return object;
+    }
+
+    @Override
+    public Expression caseProductExpression(ProductExpression object) {
+        if (isConstant(object.getLeft()) && isConstant(object.getRight())) {
+            return fold(object);
+        }
+        if (object.getOperation() != ProductOperations.MOD && isIntLiteral(object.getRight(), 1)
+                && isNumber(object.getLeft())) {
+            return object.getLeft();
+        }
+        if (object.getOperation() == ProductOperations.MULT && isIntLiteral(object.getLeft(), 1)
+                && isNumber(object.getRight())) {
+            return object.getRight();
+        }
+        return object;
+    }
+
+    @Override
+    public Expression casePowerExpression(PowerExpression object) {
+        if (isConstant(object.getBase()) && isConstant(object.getExponent())) {
+            return fold(object);
+        }
+        if (isIntLiteral(object.getExponent(), 1) && isNumber(object.getBase())) {
+            return object.getBase();
+        }
+        return object;
+    }
+
+    @Override
+    public Expression caseFunctionLiteral(FunctionLiteral object) {
+        for (BooleanExpression parameter : object.getParameters_FunctionLiteral()) {
+            if (!isConstant(parameter)) {
+                return object;
+            }
+        }
+        return fold(object);
+    }
+
+    /**
+     * @return Whether the node is a numeric literal or a negated one.
+     */
+    private boolean isConstant(Expression node) {
+        if (node instanceof NegativeExpression negative) {
+            return negative.getInner() instanceof IntLiteral || negative.getInner() instanceof DoubleLiteral;
+        }
+        return node instanceof IntLiteral || node instanceof DoubleLiteral;
+    }
+
+    /**
+     * @return Whether the node statically evaluates to an Integer or a Double.
+     */
+    private boolean isNumber(Expression node) {
+        ScalarType type = inference.typeOf(node);
+        return type == ScalarType.INT || type == ScalarType.DOUBLE;
+    }
+
+    private boolean isIntLiteral(Expression node, int value) {
+        return node instanceof IntLiteral literal && literal.getValue() == value;
+    }
+
+    private Expression fold(Expression node) {
+        Object value;
+        try {
+            value = new ExpressionEvaluationVisitor().doSwitch(node);
+        } catch (RuntimeException e) {
+            // e.g. division by zero, which is reported by the evaluation
+            return node;
+        }
+        if (value instanceof Integer integer && integer >= 0) {
+            IntLiteral literal = StoexFactory.eINSTANCE.createIntLiteral();
+            literal.setValue(integer);
+            return literal;
+        }
+        if (value instanceof Double number && Double.isFinite(number)) {
+            if (Double.compare(number, 0.0) >= 0) {
+                return doubleLiteral(number);
+            } else if (number < 0) {
+                // negation always evaluates to a double, like the folded value
+                NegativeExpression negative = StoexFactory.eINSTANCE.createNegativeExpression();
+                negative.setInner(doubleLiteral(-number));
+                return negative;
+            }
+        }
+        return node;
+    }
+
+    private DoubleLiteral doubleLiteral(double value) {
+        DoubleLiteral literal = StoexFactory.eINSTANCE.createDoubleLiteral();
+        literal.setValue(value);
+        return literal;
+    }
+}
@@ -0,0 +1,125 @@
+package tools.vitruv.stoex.interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import tools.vitruv.stoex.stoex.Expression;
+import tools.vitruv.stoex.stoex.IntLiteral;
+import tools.vitruv.stoex.stoex.StoexFactory;
+
+@DisplayName("Expression Cache Tests")
+class ExpressionCacheTest {
+
+    private final AtomicInteger parseCount = new AtomicInteger();
+
+    private Expression parse(String expression) {
+        parseCount.incrementAndGet();
+        IntLiteral literal = StoexFactory.eINSTANCE.createIntLiteral();
+        literal.setValue(expression.length());
+        return literal;
+    }
+
+    @Test
+    @DisplayName("Should count hits and misses")
+    void testHitsAndMisses() {
+        ExpressionCache cache = new ExpressionCache(4);
+
+        Expression first = cache.computeIfAbsent("1 + 2", this::parse);
+        Expression second = cache.computeIfAbsent("1 + 2", this::parse);
+
+        assertSame(first, second);
+        assertEquals(1, parseCount.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    @DisplayName("Should share entries for expressions differing only in whitespace")
+    void testNormalization() {
+        assertEquals("1 + 2", ExpressionCache.normalize("  1   +\t2\n"));
+        assertEquals("x ? \"a  b\" : 'c  d'", ExpressionCache.normalize("x  ?  \"a  b\"  :  'c  d'"));
+
+        ExpressionCache cache = new ExpressionCache(4);
+        Expression first = cache.computeIfAbsent("1 + 2", this::parse);
+        Expression second = cache.computeIfAbsent(" 1  +  2 ", this::parse);
+        assertSame(first, second);
+        assertEquals(1, parseCount.get());
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used entry")
+    void testEviction() {
+        ExpressionCache cache = new ExpressionCache(2);
+
+        Expression a = cache.computeIfAbsent("a", this::parse);
+        cache.computeIfAbsent("b", this::parse);
+        // touch "a" so that "b" becomes the least recently used entry
+        cache.computeIfAbsent("a", this::parse);
+        cache.computeIfAbsent("c", this::parse);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertSame(a, cache.computeIfAbsent("a", this::parse));
+        assertEquals(3, parseCount.get());
+
+        cache.computeIfAbsent("b", this::parse);
+        assertEquals(4, parseCount.get());
+    }
+
+    @Test
+    @DisplayName("Should stay bounded under concurrent access")
+    void testConcurrentAccess() throws Exception {
+        ExpressionCache cache = new ExpressionCache(16);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        String expression = "x + " + (i % 32);
+                        Expression result = cache.computeIfAbsent(expression, this::parse);
+                        assertEquals(expression.length(), ((IntLiteral) result).getValue());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(80000, cache.getHitCount() + cache.getMissCount());
+        assertEquals(true, cache.size() <= 16);
+        // every eviction removes an entry inserted after a miss
+        assertEquals(true, cache.size() + cache.getEvictionCount() <= cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Should cache parsed expressions of the evaluator")
+    void testEvaluatorUsesCache() {
+        StoexEvaluator evaluator = new StoexEvaluator();
+        ExpressionCache cache = evaluator.getExpressionCache();
+
+        evaluator.evaluate("Normal(1.0, 2.0)");
+        Expression first = evaluator.evaluate("Normal(1.0, 2.0)");
+        Expression second = evaluator.evaluate("Normal(1.0,  2.0)");
+
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+        // results must never be the shared cached AST
+        assertNotSame(first, second);
+    }
+}
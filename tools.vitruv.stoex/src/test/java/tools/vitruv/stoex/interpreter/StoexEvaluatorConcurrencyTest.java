@@ -0,0 +1,134 @@
+package tools.vitruv.stoex.interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import tools.vitruv.stoex.interpreter.compiler.ScalarType;
+import tools.vitruv.stoex.stoex.BoolLiteral;
+import tools.vitruv.stoex.stoex.DoubleLiteral;
+import tools.vitruv.stoex.stoex.Expression;
+import tools.vitruv.stoex.stoex.IntLiteral;
+import tools.vitruv.stoex.stoex.SampledDistribution;
+
+/**
+ * Stress test for a single {@link StoexEvaluator} shared by many threads.
+ */
+@DisplayName("Stoex Evaluator Concurrency Tests")
+class StoexEvaluatorConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 2000;
+
+    @Test
+    @DisplayName("Should evaluate correctly when shared between threads")
+    void testSharedEvaluator() throws Exception {
+        stressSharedEvaluator(ParseMode.FULL);
+    }
+
+    @Test
+    @DisplayName("Should evaluate correctly when shared between threads without node model")
+    void testSharedEvaluatorEvaluationOnly() throws Exception {
+        stressSharedEvaluator(ParseMode.EVALUATION_ONLY);
+    }
+
+    private void stressSharedEvaluator(ParseMode parseMode) throws Exception {
+        StoexEvaluator evaluator = new StoexEvaluator(16);
+        evaluator.setParseMode(parseMode);
+        evaluator.setVariable("offset", 1000);
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                int x = thread * ITERATIONS + i;
+                // a small set of expressions, so threads share cached ASTs
+                switch (i % 4) {
+                    case 0 -> assertEquals(x * 2 + 1000,
+                            ((IntLiteral) evaluator.evaluate("x * 2 + offset", Map.of("x", x))).getValue());
+                    case 1 -> assertEquals(x / 7 - x % 7,
+                            ((IntLiteral) evaluator.evaluate("x / 7 - x % 7", Map.of("x", x))).getValue());
+                    case 2 -> assertEquals(x > 5000,
+                            ((BoolLiteral) evaluator.evaluate("x > 5000", Map.of("x", x))).isValue());
+                    default -> assertEquals(x * 0.5,
+                            ((DoubleLiteral) evaluator.evaluate("x * y", Map.of("x", x, "y", 0.5))).getValue(),
+                            1e-9);
+                }
+            }
+        });
+
+        assertEquals(0, evaluator.getResourceCount());
+        assertTrue(evaluator.getExpressionCache().size() <= 16);
+    }
+
+    @Test
+    @DisplayName("Should attach caches to a shared expression from many threads")
+    void testSharedExpressionCaches() throws Exception {
+        String expression = "x + IntPMF[(1;0.5)(2;0.5)] * Normal(0.0, 1.0)";
+        for (int round = 0; round < 20; round++) {
+            // a new evaluator, so the caches are attached while threads race
+            StoexEvaluator evaluator = new StoexEvaluator();
+            runConcurrently(thread -> {
+                if (thread % 2 == 0) {
+                    assertNotNull(evaluator.compile(expression, Map.of("x", ScalarType.INT)));
+                } else {
+                    Expression result = evaluator.evaluate(expression, Map.of("x", 1));
+                    assertTrue(result instanceof SampledDistribution);
+                }
+            });
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep per-call variables isolated between threads")
+    void testVariablesDoNotLeak() throws Exception {
+        StoexEvaluator evaluator = new StoexEvaluator();
+        evaluator.setVariable("x", -1);
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                int x = thread * ITERATIONS + i;
+                assertEquals(x, ((IntLiteral) evaluator.evaluate("x", Map.of("x", x))).getValue());
+            }
+        });
+
+        // per-call variables never overwrite the ones set on the evaluator
+        assertEquals(-1, evaluator.getVariable("x"));
+        assertEquals(-1, ((IntLiteral) evaluator.evaluate("x")).getValue());
+    }
+
+    private interface ThreadBody {
+        void run(int thread) throws Exception;
+    }
+
+    private void runConcurrently(ThreadBody body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    body.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
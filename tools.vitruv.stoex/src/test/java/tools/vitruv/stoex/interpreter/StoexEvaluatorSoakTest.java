@@ -0,0 +1,76 @@
+package tools.vitruv.stoex.interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import tools.vitruv.stoex.stoex.IntLiteral;
+
+/**
+ * Soak test for the parse resource lifecycle of the {@link StoexEvaluator}.
+ *
+ * Every iteration parses a distinct expression, so each one goes through the
+ * Xtext parser. The number of iterations defaults to a value suitable for
+ * regular builds; run with {@code -Dstoex.soak.iterations=1000000} for the full
+ * soak run.
+ */
+@DisplayName("Stoex Evaluator Soak Test")
+class StoexEvaluatorSoakTest {
+
+    private static final int ITERATIONS = Integer.getInteger("stoex.soak.iterations", 50000);
+
+    // Generous bound for the noise of measuring used heap after a GC
+    private static final long MAX_HEAP_GROWTH_BYTES = 16L * 1024 * 1024;
+
+    @Test
+    @DisplayName("Heap use should stay flat across many parses")
+    void testHeapStaysFlat() {
+        StoexEvaluator evaluator = new StoexEvaluator(64);
+
+        // Warm up: fill the expression cache and let the JIT settle
+        int warmup = Math.max(1000, ITERATIONS / 10);
+        for (int i = 0; i < warmup; i++) {
+            evaluateDistinct(evaluator, i);
+        }
+        long baseline = usedHeapAfterGc();
+
+        for (int i = warmup; i < warmup + ITERATIONS; i++) {
+            evaluateDistinct(evaluator, i);
+        }
+        long after = usedHeapAfterGc();
+
+        assertEquals(0, evaluator.getResourceCount());
+        assertTrue(evaluator.getExpressionCache().size() <= 64);
+        assertTrue(after - baseline < MAX_HEAP_GROWTH_BYTES,
+                "Heap grew by " + (after - baseline) + " bytes over " + ITERATIONS + " parses");
+    }
+
+    @Test
+    @DisplayName("Failed parses should not leave resources behind")
+    void testParseErrorsReleaseResources() {
+        StoexEvaluator evaluator = new StoexEvaluator();
+        for (int i = 0; i < 100; i++) {
+            try {
+                evaluator.evaluate("2 + ");
+            } catch (RuntimeException e) {
+                // expected
+            }
+        }
+        assertEquals(0, evaluator.getResourceCount());
+    }
+
+    private void evaluateDistinct(StoexEvaluator evaluator, int i) {
+        IntLiteral result = (IntLiteral) evaluator.evaluate(i + " * 2 + 1");
+        assertEquals(i * 2 + 1, result.getValue());
+    }
+
+    private long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -1,23 +1,35 @@
 package tools.vitruv.stoex.interpreter;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
 
+import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
+
+import tools.vitruv.stoex.interpreter.operations.ConvergenceCriterion;
+import tools.vitruv.stoex.interpreter.operations.MonteCarloReport;
+import tools.vitruv.stoex.interpreter.operations.VariatePool;
 import tools.vitruv.stoex.stoex.BoolLiteral;
 import tools.vitruv.stoex.stoex.DoubleLiteral;
 import tools.vitruv.stoex.stoex.ExponentialDistribution;
 import tools.vitruv.stoex.stoex.Expression;
 import tools.vitruv.stoex.stoex.GammaDistribution;
 import tools.vitruv.stoex.stoex.IntLiteral;
+import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
 import tools.vitruv.stoex.stoex.NormalDistribution;
+import tools.vitruv.stoex.stoex.ProductExpression;
 import tools.vitruv.stoex.stoex.SampledDistribution;
 import tools.vitruv.stoex.stoex.StoexFactory;
 import tools.vitruv.stoex.stoex.StringLiteral;
@@ -266,6 +278,30 @@ class StoexEvaluatorTest {
         assertEquals(0.667, ((NormalDistribution) result).getSigma(), 0.001);
     }
 
+    @Test
+    @DisplayName("Should evaluate variables holding expressions without the other variables")
+    void testExpressionVariables() {
+        evaluator.setVariable("offset", "2 * 3 + PI");
+        assertEquals(Math.PI + 10, ((DoubleLiteral) evaluator.evaluate("offset + 4")).getValue(), 1e-12);
+        // parsed with the cache of the evaluator
+        assertEquals(2, evaluator.getExpressionCache().size());
+
+        evaluator.setVariable("x", "x + 1");
+        assertUndefined("x", () -> evaluator.evaluate("x"));
+
+        evaluator.setVariable("a", "b");
+        evaluator.setVariable("b", "a");
+        assertUndefined("b", () -> evaluator.evaluate("a"));
+    }
+
+    private static void assertUndefined(String name, Executable evaluation) {
+        Throwable error = assertThrows(RuntimeException.class, evaluation);
+        while (error.getCause() != null && !("Undefined variable: " + name).equals(error.getMessage())) {
+            error = error.getCause();
+        }
+        assertEquals("Undefined variable: " + name, error.getMessage());
+    }
+
     @Test
     @DisplayName("Should add two Exponential distributions with same lambda")
     void testAddExponentialDistributionsSameLambda() {
@@ -343,4 +379,192 @@ class StoexEvaluatorTest {
         assertTrue(dampingRatioExpr instanceof SampledDistribution);
         assertEquals(0.0598204473, evaluator.getMean(dampingRatioExpr).doubleValue(), 0.001);
     }
+
+    @Test
+    @DisplayName("Should keep the node model in full parse mode")
+    void testFullParseModeKeepsNodeModel() {
+        evaluator.setParseMode(ParseMode.FULL);
+
+        Expression expr = evaluator.parseCached("1 + 2 * x");
+        assertNotNull(NodeModelUtils.getNode(expr));
+        assertNull(expr.eResource());
+
+        // the AST is not simplified, so the node model still matches it
+        Expression constant = evaluator.parseCached("x * (2 + 3)");
+        assertEquals("x * (2 + 3)", NodeModelUtils.getNode(constant).getText());
+        assertEquals("(2 + 3)", NodeModelUtils.getNode(((ProductExpression) constant).getRight()).getText().trim());
+    }
+
+    @Test
+    @DisplayName("Should drop the node model in evaluation-only parse mode")
+    void testEvaluationOnlyParseMode() {
+        assertEquals(ParseMode.EVALUATION_ONLY, evaluator.getParseMode());
+
+        Expression expr = evaluator.parseCached("1 + 2 * x");
+        assertNull(NodeModelUtils.getNode(expr));
+        expr.eAllContents().forEachRemaining(e -> assertNull(NodeModelUtils.getNode(e)));
+        assertTrue(evaluator.getDroppedNodeModelBytes() > 0);
+
+        evaluator.setVariable("x", 3);
+        assertEquals(7, ((IntLiteral) evaluator.evaluate("1 + 2 * x")).getValue());
+        Expression pmf = evaluator.evaluate("IntPMF[(1;0.5)(2;0.5)] + 1");
+        assertTrue(pmf instanceof IntProbabilityMassFunction);
+        Expression chained = evaluator.evaluate("(IntPMF[(1;0.5)(2;0.5)] + IntPMF[(1;0.5)(2;0.5)]) * 2 - x");
+        assertTrue(chained instanceof IntProbabilityMassFunction);
+        assertEquals(3, ((IntProbabilityMassFunction) chained).getSamples().size());
+        assertEquals(1, ((IntProbabilityMassFunction) chained).getSamples().get(0).getValue());
+
+        assertThrows(RuntimeException.class, () -> evaluator.evaluate("2 + "));
+
+        // identities are only simplified on numbers
+        assertEquals(1.0, ((DoubleLiteral) evaluator.evaluate("true * 1")).getValue());
+        assertTrue(evaluator.evaluate("Exponential(2.0) * 1") instanceof SampledDistribution);
+    }
+
+    @Test
+    @DisplayName("Should estimate the node model size of an expression")
+    void testNodeModelEstimate() {
+        long small = evaluator.estimateNodeModelBytes("IntPMF[(1;0.5)(2;0.5)]");
+        long large = evaluator.estimateNodeModelBytes(
+                "IntPMF[(1;0.1)(2;0.1)(3;0.1)(4;0.1)(5;0.1)(6;0.1)(7;0.1)(8;0.1)(9;0.1)(10;0.1)]");
+        assertTrue(small > 0);
+        assertTrue(large > 3 * small);
+    }
+
+    @Test
+    @DisplayName("Should evaluate an expression over columns of variables")
+    void testEvaluateBatch() {
+        NormalDistribution normal = StoexFactory.eINSTANCE.createNormalDistribution();
+        normal.setMu(1.0);
+        normal.setSigma(0.5);
+        Map<String, Object> columns = new HashMap<>();
+        columns.put("n", new int[] { 1, 2, 3 });
+        columns.put("w", new double[] { 0.5, 1.5, 2.5 });
+        columns.put("d", new Expression[] { normal, normal, normal });
+        evaluator.setVariable("base", 10);
+
+        List<Expression> results = evaluator.evaluateBatch("n * 2 + base", columns);
+        assertEquals(List.of(12, 14, 16), results.stream().map(r -> ((IntLiteral) r).getValue()).toList());
+        assertTrue(evaluator.evaluateBatch("d + n", columns).get(0) instanceof NormalDistribution);
+
+        double[] doubles = evaluator.evaluateBatchToDouble("n * w", columns, false);
+        assertArrayEquals(new double[] { 0.5, 3.0, 7.5 }, doubles, 1e-12);
+        // every expression is parsed once per batch
+        assertEquals(3, evaluator.getExpressionCache().getMissCount());
+    }
+
+    @Test
+    @DisplayName("Should evaluate large batches in parallel")
+    void testEvaluateBatchParallel() {
+        int rows = 20000;
+        double[] x = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            x[i] = i;
+        }
+        double[] results = evaluator.evaluateBatchToDouble("x * x + 1", Map.of("x", x), true);
+        for (int i = 0; i < rows; i++) {
+            assertEquals(i * (double) i + 1, results[i], 1e-9);
+        }
+    }
+
+    @Test
+    @DisplayName("Should draw reproducible samples with a seed")
+    void testSeededSampling() {
+        evaluator.setSeed(42L);
+        SampledDistribution first = (SampledDistribution) evaluator.evaluate("Exponential(1.0) + Exponential(2.0)");
+        SampledDistribution second = (SampledDistribution) evaluator.evaluate("Exponential(1.0) + Exponential(2.0)");
+        assertEquals(first.getValues(), second.getValues());
+
+        Expression[] columns = new Expression[8];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = evaluator.evaluate("Exponential(1.0)");
+        }
+        List<Expression> sequential = evaluator.evaluateBatch("x + Exponential(2.0)", Map.of("x", columns), false);
+        List<Expression> parallel = evaluator.evaluateBatch("x + Exponential(2.0)", Map.of("x", columns), true);
+        for (int i = 0; i < columns.length; i++) {
+            assertEquals(((SampledDistribution) sequential.get(i)).getValues(),
+                    ((SampledDistribution) parallel.get(i)).getValues());
+        }
+    }
+
+    @Test
+    @DisplayName("Should reuse pooled variates across evaluations")
+    void testVariatePool() {
+        EvaluationSettings pooled = EvaluationSettings.DEFAULT.withVariates(new VariatePool(42));
+        SampledDistribution first = (SampledDistribution) evaluator.evaluate("Lognormal(1.0, 0.5) * 3", Map.of(),
+                pooled);
+        SampledDistribution second = (SampledDistribution) evaluator.evaluate("Lognormal(1.0, 0.5) * 3", Map.of(),
+                pooled);
+        SampledDistribution fresh = (SampledDistribution) evaluator.evaluate("Lognormal(1.0, 0.5) * 3");
+
+        assertEquals(first.getValues(), second.getValues());
+        assertNotEquals(first.getValues(), fresh.getValues());
+    }
+
+    @Test
+    @DisplayName("Should draw the configured number of samples")
+    void testSampleCount() {
+        String expression = "Exponential(1.0) + Exponential(2.0)";
+        assertEquals(10000, ((SampledDistribution) evaluator.evaluate(expression)).getValues().size());
+
+        EvaluationSettings quick = EvaluationSettings.DEFAULT.withSampleCount(1000);
+        assertEquals(1000,
+                ((SampledDistribution) evaluator.evaluate(expression, Map.of(), quick)).getValues().size());
+        // per-call settings do not change the evaluator settings
+        assertEquals(EvaluationSettings.DEFAULT, evaluator.getSettings());
+
+        evaluator.setSettings(EvaluationSettings.DEFAULT.withSampleCount(500));
+        evaluator.setSeed(42L);
+        assertEquals(500, evaluator.getSettings().getSampleCount());
+        assertEquals(500, ((SampledDistribution) evaluator.evaluate(expression)).getValues().size());
+
+        assertThrows(IllegalArgumentException.class, () -> EvaluationSettings.DEFAULT.withSampleCount(0));
+    }
+
+    @Test
+    @DisplayName("Should report adaptive Monte Carlo operations")
+    void testEvaluateWithReport() {
+        EvaluationSettings adaptive = EvaluationSettings.DEFAULT.withSeed(1L)
+                .withConvergence(ConvergenceCriterion.of(0.05, 0.95));
+        EvaluationReport report = evaluator.evaluateWithReport("Exponential(1.0) + Exponential(2.0)", Map.of(),
+                adaptive);
+
+        assertEquals(1, report.getMonteCarloReports().size());
+        MonteCarloReport monteCarlo = report.getMonteCarloReports().get(0);
+        assertTrue(monteCarlo.isConverged());
+        assertEquals(monteCarlo.getSampleCount(), ((SampledDistribution) report.getResult()).getValues().size());
+        assertEquals(monteCarlo.getSampleCount(), report.getTotalSampleCount());
+        assertEquals(1.5, monteCarlo.getMean(), 0.15);
+
+        // without a criterion the sample count is fixed and nothing is reported
+        assertTrue(evaluator.evaluateWithReport("Exponential(1.0) + Exponential(2.0)", Map.of(),
+                EvaluationSettings.DEFAULT).getMonteCarloReports().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should report the mass dropped from unbounded distributions")
+    void testTruncatedMass() {
+        EvaluationReport report = evaluator.evaluateWithReport("Poisson(200.0) + IntPMF[(0;1.0)]", Map.of(),
+                EvaluationSettings.DEFAULT.withTailMass(1e-6));
+        IntProbabilityMassFunction pmf = (IntProbabilityMassFunction) report.getResult();
+        assertEquals(139, pmf.getSamples().size());
+        assertTrue(report.getTruncatedMass() > 0 && report.getTruncatedMass() <= 1e-6);
+        // the combined result is normalized, so only the report shows the loss
+        assertEquals(1.0, pmf.getSamples().stream().mapToDouble(sample -> sample.getProbability()).sum(), 1e-12);
+
+        assertEquals(0.0, evaluator.evaluateWithReport("IntPMF[(1;0.5)(2;0.5)] * 2", Map.of(),
+                EvaluationSettings.DEFAULT).getTruncatedMass());
+        assertThrows(IllegalArgumentException.class, () -> EvaluationSettings.DEFAULT.withTailMass(1));
+    }
+
+    @Test
+    @DisplayName("Should reject invalid batch columns")
+    void testEvaluateBatchInvalidColumns() {
+        assertThrows(IllegalArgumentException.class,
+                () -> evaluator.evaluateBatch("x + y", Map.of("x", new int[2], "y", new int[3])));
+        assertThrows(IllegalArgumentException.class,
+                () -> evaluator.evaluateBatch("x", Map.of("x", List.of(1, 2))));
+        assertThrows(RuntimeException.class,
+                () -> evaluator.evaluateBatchToDouble("x > 1", Map.of("x", new int[] { 1, 2 }), false));
+    }
 }
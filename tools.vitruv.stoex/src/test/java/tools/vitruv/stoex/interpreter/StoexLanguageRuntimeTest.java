@@ -0,0 +1,73 @@
+package tools.vitruv.stoex.interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import tools.vitruv.stoex.interpreter.visitors.ExpressionEvaluationVisitor;
+import tools.vitruv.stoex.stoex.Expression;
+
+@DisplayName("Stoex Language Runtime Tests")
+class StoexLanguageRuntimeTest {
+
+    @Test
+    @DisplayName("Should share one runtime across threads")
+    void testSingleInstance() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<StoexLanguageRuntime>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(StoexLanguageRuntime::getInstance));
+            }
+            for (Future<StoexLanguageRuntime> future : futures) {
+                assertSame(StoexLanguageRuntime.getInstance(), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should parse concurrently with the shared parser")
+    void testConcurrentParsing() throws Exception {
+        StoexLanguageRuntime runtime = StoexLanguageRuntime.getInstance();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    ExpressionEvaluationVisitor visitor = new ExpressionEvaluationVisitor();
+                    for (int i = 0; i < 500; i++) {
+                        Expression expression = runtime.parseForEvaluation(offset + " * 1000 + " + i);
+                        assertEquals(offset * 1000 + i, visitor.doSwitch(expression));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should parse without node model")
+    void testParseForEvaluation() {
+        Expression expression = StoexLanguageRuntime.getInstance().parseForEvaluation("1 + 2 * 3");
+        assertNull(NodeModelUtils.getNode(expression));
+        assertThrows(RuntimeException.class, () -> StoexLanguageRuntime.getInstance().parseForEvaluation("1 +"));
+    }
+}
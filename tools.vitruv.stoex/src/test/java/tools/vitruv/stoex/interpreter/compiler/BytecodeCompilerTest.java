@@ -0,0 +1,117 @@
+package tools.vitruv.stoex.interpreter.compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import tools.vitruv.stoex.interpreter.EvaluationContext;
+import tools.vitruv.stoex.interpreter.visitors.ExpressionEvaluationVisitor;
+import tools.vitruv.stoex.stoex.Expression;
+import tools.vitruv.stoex.stoex.IntLiteral;
+import tools.vitruv.stoex.stoex.ProductExpression;
+import tools.vitruv.stoex.stoex.TermExpression;
+
+@DisplayName("Bytecode Compiler Tests")
+class BytecodeCompilerTest {
+
+    @BeforeEach
+    void checkAsm() {
+        assertTrue(BytecodeCompiler.isAvailable());
+    }
+
+    @Test
+    @DisplayName("Should compute the same results as the visitor")
+    void testMatchesVisitor() {
+        Random random = new Random(7);
+        for (String source : ExpressionCompilerTest.SCALAR_EXPRESSIONS) {
+            Expression expression = ExpressionCompilerTest.parse(source);
+            CompiledExpression compiled = BytecodeCompiler.compile(expression, ExpressionCompilerTest.types());
+            assertTrue(compiled.isCompiled(), source);
+            assertTrue(compiled.getRoot().getClass().isHidden(), source);
+
+            for (int n = 0; n < 500; n++) {
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("a", random.nextDouble() * 10 - 5);
+                values.put("b", random.nextDouble());
+                values.put("c", n % 50 == 0 ? Double.NaN : random.nextGaussian());
+                values.put("i", random.nextInt(20) - 10);
+                values.put("j", random.nextInt(9) + 1);
+                values.put("flag", random.nextBoolean());
+
+                double[] slots = compiled.newSlots();
+                values.forEach((name, value) -> compiled.setSlot(slots, name, value));
+
+                Object expected = new ExpressionEvaluationVisitor(new EvaluationContext(values, Map.of()))
+                        .doSwitch(expression);
+                Object actual = compiled.evaluate(slots);
+                if (expected instanceof Double d) {
+                    assertEquals(d, (Double) actual, 1e-12, source + " with " + values);
+                } else {
+                    assertEquals(expected, actual, source + " with " + values);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep integer semantics")
+    void testIntegerSemantics() {
+        CompiledExpression compiled = BytecodeCompiler.compile(
+                ExpressionCompilerTest.parse("i / j + i % j + i ^ j"), ExpressionCompilerTest.types());
+        assertEquals(ScalarType.INT, compiled.getResultType());
+        double[] slots = compiled.newSlots();
+        compiled.setSlot(slots, "i", 7);
+        compiled.setSlot(slots, "j", 2);
+        assertEquals(53, compiled.evaluate(slots));
+
+        compiled.setSlot(slots, "j", 0);
+        assertThrows(ArithmeticException.class, () -> compiled.evaluate(slots));
+    }
+
+    @Test
+    @DisplayName("Should cache compiled expressions per expression and variable types")
+    void testCache() {
+        Expression expression = ExpressionCompilerTest.parse("i * 2 + a");
+        CompiledExpression first = BytecodeCompiler.compile(expression, ExpressionCompilerTest.types());
+        assertSame(first, BytecodeCompiler.compile(expression, ExpressionCompilerTest.types()));
+
+        Map<String, ScalarType> otherTypes = new LinkedHashMap<>(ExpressionCompilerTest.types());
+        otherTypes.put("a", ScalarType.INT);
+        CompiledExpression other = BytecodeCompiler.compile(expression, otherTypes);
+        assertNotSame(first, other);
+        assertEquals(ScalarType.INT, other.getResultType());
+
+        // modifying the expression invalidates the cache
+        IntLiteral literal = (IntLiteral) ((ProductExpression) ((TermExpression) expression).getLeft()).getRight();
+        literal.setValue(3);
+        CompiledExpression recompiled = BytecodeCompiler.compile(expression, ExpressionCompilerTest.types());
+        assertNotSame(first, recompiled);
+        double[] slots = recompiled.newSlots();
+        recompiled.setSlot(slots, "i", 2);
+        recompiled.setSlot(slots, "a", 0.5);
+        assertEquals(6.5, recompiled.evaluate(slots));
+    }
+
+    @Test
+    @DisplayName("Should fall back for non-scalar expressions")
+    void testFallback() {
+        CompiledExpression compiled = BytecodeCompiler.compile(
+                ExpressionCompilerTest.parse("i > 0 ? i : a"), ExpressionCompilerTest.types());
+        assertFalse(compiled.isCompiled());
+        double[] slots = compiled.newSlots();
+        compiled.setSlot(slots, "i", -1);
+        compiled.setSlot(slots, "a", 1.5);
+        assertEquals(1.5, compiled.evaluate(slots));
+    }
+}
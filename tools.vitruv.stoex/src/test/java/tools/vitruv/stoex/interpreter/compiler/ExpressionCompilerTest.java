@@ -0,0 +1,170 @@
+package tools.vitruv.stoex.interpreter.compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import tools.vitruv.stoex.interpreter.EvaluationContext;
+import tools.vitruv.stoex.interpreter.StoexLanguageRuntime;
+import tools.vitruv.stoex.interpreter.visitors.ExpressionEvaluationVisitor;
+import tools.vitruv.stoex.stoex.Expression;
+import tools.vitruv.stoex.stoex.NormalDistribution;
+
+@DisplayName("Expression Compiler Tests")
+class ExpressionCompilerTest {
+
+    static final List<String> SCALAR_EXPRESSIONS = List.of(
+            "a * b + max(c, 3)",
+            "i * 2 + j / 3 - i % 4",
+            "i / j",
+            "i ^ 2 + a ^ 0.5",
+            "-i + j",
+            "sqrt(abs(a - b)) + sin(c) * cos(i)",
+            "min(a, i) * PI + E",
+            "a > b AND i <= j OR NOT flag",
+            "(a + b) * (i - j)",
+            "i == j",
+            "a <> b XOR flag",
+            "i > 3 ? i * 2 : j + 1",
+            "a > 0.5 ? a : b",
+            "flag ? true : i > j",
+            "i + flag",
+            "flag AND i",
+            "a % 1.5 + i % j");
+
+    static Expression parse(String expression) {
+        return StoexLanguageRuntime.getInstance().parseForEvaluation(expression);
+    }
+
+    static Map<String, ScalarType> types() {
+        Map<String, ScalarType> types = new LinkedHashMap<>();
+        types.put("a", ScalarType.DOUBLE);
+        types.put("b", ScalarType.DOUBLE);
+        types.put("c", ScalarType.DOUBLE);
+        types.put("i", ScalarType.INT);
+        types.put("j", ScalarType.INT);
+        types.put("flag", ScalarType.BOOLEAN);
+        return types;
+    }
+
+    @Test
+    @DisplayName("Should compute the same results as the visitor")
+    void testMatchesVisitor() {
+        Random random = new Random(42);
+        for (String source : SCALAR_EXPRESSIONS) {
+            Expression expression = parse(source);
+            CompiledExpression compiled = ExpressionCompiler.compile(expression, types());
+            assertTrue(compiled.isCompiled(), source);
+
+            for (int n = 0; n < 200; n++) {
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("a", random.nextDouble() * 10 - 5);
+                values.put("b", random.nextDouble());
+                values.put("c", random.nextGaussian());
+                values.put("i", random.nextInt(20) - 10);
+                values.put("j", random.nextInt(9) + 1);
+                values.put("flag", random.nextBoolean());
+
+                double[] slots = compiled.newSlots();
+                values.forEach((name, value) -> compiled.setSlot(slots, name, value));
+
+                Object expected = new ExpressionEvaluationVisitor(new EvaluationContext(values, Map.of()))
+                        .doSwitch(expression);
+                Object actual = compiled.evaluate(slots);
+                if (expected instanceof Double d) {
+                    assertEquals(d, (Double) actual, 1e-12, source + " with " + values);
+                } else {
+                    assertEquals(expected, actual, source + " with " + values);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should type nodes like the type inference")
+    void testInferredTypes() {
+        for (String source : SCALAR_EXPRESSIONS) {
+            Expression expression = parse(source);
+            ScalarType inferred = new ScalarTypeInference(types()).typeOf(expression);
+            assertEquals(inferred, ExpressionCompiler.compile(expression, types()).getResultType(), source);
+            assertEquals(inferred, BytecodeCompiler.compile(expression, types()).getResultType(), source);
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep integer semantics")
+    void testIntegerSemantics() {
+        CompiledExpression compiled = ExpressionCompiler.compile(parse("i / j + i % j"), types());
+        assertEquals(ScalarType.INT, compiled.getResultType());
+        double[] slots = compiled.newSlots();
+        compiled.setSlot(slots, "i", 7);
+        compiled.setSlot(slots, "j", 2);
+        assertEquals(4, compiled.evaluate(slots));
+
+        compiled.setSlot(slots, "j", 0);
+        assertThrows(ArithmeticException.class, () -> compiled.evaluate(slots));
+
+        assertEquals(ScalarType.DOUBLE, ExpressionCompiler.compile(parse("-i"), types()).getResultType());
+        assertEquals(ScalarType.DOUBLE, ExpressionCompiler.compile(parse("max(i, j)"), types()).getResultType());
+    }
+
+    @Test
+    @DisplayName("Should fall back to the visitor for non-scalar expressions")
+    void testFallback() {
+        CompiledExpression differentBranches = ExpressionCompiler.compile(parse("i > 0 ? i : a"), types());
+        assertFalse(differentBranches.isCompiled());
+        double[] slots = differentBranches.newSlots();
+        differentBranches.setSlot(slots, "i", 3);
+        assertEquals(3, differentBranches.evaluate(slots));
+
+        CompiledExpression distribution = ExpressionCompiler.compile(parse("Normal(1.0, 2.0) + a"), types());
+        assertFalse(distribution.isCompiled());
+        assertTrue(distribution.evaluate(distribution.newSlots()) instanceof NormalDistribution);
+
+        CompiledExpression unknownVariable = ExpressionCompiler.compile(parse("x + 1"), types());
+        assertFalse(unknownVariable.isCompiled());
+        assertThrows(RuntimeException.class, () -> unknownVariable.evaluate(unknownVariable.newSlots()));
+
+        assertThrows(IllegalArgumentException.class, () -> differentBranches.setSlot(slots, "i", 2.5));
+    }
+
+    @Test
+    @DisplayName("Should evaluate scalar expressions without allocating")
+    void testAllocationFree() {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported());
+
+        CompiledExpression compiled = ExpressionCompiler.compile(parse("a * b + max(c, 3)"), types());
+        double[] slots = compiled.newSlots();
+        double sum = 0;
+        for (int n = 0; n < 100000; n++) {
+            slots[0] = n;
+            sum += compiled.evaluateDouble(slots);
+        }
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int n = 0; n < 1000000; n++) {
+            slots[0] = n;
+            sum += compiled.evaluateDouble(slots);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertTrue(sum > 0);
+        // a single boxed value per evaluation would already be 16 MB
+        assertTrue(allocated < 64 * 1024, "Allocated " + allocated + " bytes");
+    }
+}
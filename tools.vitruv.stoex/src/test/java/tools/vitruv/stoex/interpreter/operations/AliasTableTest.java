@@ -0,0 +1,52 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.random.RandomGenerator;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Alias Table Tests")
+class AliasTableTest {
+
+    @Test
+    @DisplayName("Should sample indices proportional to their weights")
+    void testSample() {
+        double[] weights = { 1, 0, 6, 2, 1 };
+        AliasTable table = new AliasTable(weights);
+        RandomGenerator random = SamplingContext.seeded(1).getGenerator();
+        int n = 200000;
+        int[] counts = new int[weights.length];
+        for (int i = 0; i < n; i++) {
+            counts[table.sample(random)]++;
+        }
+
+        assertEquals(5, table.size());
+        assertEquals(0, counts[1]);
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals(weights[i] / 10, (double) counts[i] / n, 0.005);
+        }
+    }
+
+    @Test
+    @DisplayName("Should always sample the single index")
+    void testSingleWeight() {
+        AliasTable table = new AliasTable(new double[] { 0.3 });
+        RandomGenerator random = SamplingContext.seeded(2).getGenerator();
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, table.sample(random));
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject invalid weights")
+    void testInvalidWeights() {
+        assertThrows(IllegalArgumentException.class, () -> new AliasTable(new double[0]));
+        assertThrows(IllegalArgumentException.class, () -> new AliasTable(new double[] { 0, 0 }));
+        assertThrows(IllegalArgumentException.class, () -> new AliasTable(new double[] { 1, -1 }));
+        assertThrows(IllegalArgumentException.class, () -> new AliasTable(new double[] { 1, Double.NaN }));
+    }
+}
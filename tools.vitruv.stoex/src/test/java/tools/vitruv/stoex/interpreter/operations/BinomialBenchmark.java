@@ -0,0 +1,57 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Benchmark of binomial sampling against counting Bernoulli trials, run with
+ * {@code java -cp <test classpath> tools.vitruv.stoex.interpreter.operations.BinomialBenchmark [samples]}.
+ * It is not run by the build.
+ */
+public class BinomialBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int[] N = { 20, 1000, 100000 };
+    private static final double[] P = { 0.01, 0.3 };
+
+    public static void main(String[] args) {
+        int numSamples = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        for (int n : N) {
+            for (double p : P) {
+                double sampled = measure(n, p, numSamples, false);
+                // the trials take O(samples * n), so they are measured on fewer samples
+                int trialSamples = Math.max(100, (int) Math.min(numSamples, 1e8 / n));
+                double trials = measure(n, p, trialSamples, true);
+                System.out.printf("Binomial(%d, %.2f): %8.1f ns/sample, Bernoulli trials %10.1f ns/sample%n", n, p,
+                        sampled, trials);
+            }
+        }
+    }
+
+    private static double measure(int n, double p, int numSamples, boolean trials) {
+        double sink = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            RandomGenerator random = SamplingContext.seeded(round).getGenerator();
+            SampleHelper helper = new SampleHelper(random);
+            long start = System.nanoTime();
+            for (int i = 0; i < numSamples; i++) {
+                sink += trials ? bernoulliTrials(random, n, p) : helper.sampleBinomial(n, p);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return (double) best / numSamples;
+    }
+
+    private static int bernoulliTrials(RandomGenerator random, int n, double p) {
+        int x = 0;
+        for (int j = 0; j < n; j++) {
+            if (random.nextDouble() < p) {
+                x++;
+            }
+        }
+        return x;
+    }
+}
@@ -0,0 +1,53 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
+import tools.vitruv.stoex.stoex.IntSample;
+import tools.vitruv.stoex.stoex.StoexFactory;
+
+/**
+ * Benchmark of combining two mass functions, run with
+ * {@code java -cp <test classpath> tools.vitruv.stoex.interpreter.operations.CombineBenchmark [points]}.
+ * It is not run by the build.
+ */
+public class CombineBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int points = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        ProbabilityMassFunctionHelper helper = new ProbabilityMassFunctionHelper();
+        // consecutive values combine into a compact range, squares into a sparse one
+        IntProbabilityMassFunction consecutive = pmf(points, 1);
+        IntProbabilityMassFunction squares = pmf(points, 2);
+        for (ProbabilityFunctionOperations operation : ProbabilityFunctionOperations.values()) {
+            System.out.printf("%s %d x %d: consecutive %8.2f ms, squares %8.2f ms%n", operation, points, points,
+                    measure(helper, consecutive, operation), measure(helper, squares, operation));
+        }
+    }
+
+    private static double measure(ProbabilityMassFunctionHelper helper, IntProbabilityMassFunction pmf,
+            ProbabilityFunctionOperations operation) {
+        long best = Long.MAX_VALUE;
+        int size = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            size += helper.combine(pmf, pmf, operation).getSamples().size();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (size == 42) {
+            System.out.print("");
+        }
+        return best / 1e6;
+    }
+
+    private static IntProbabilityMassFunction pmf(int points, int exponent) {
+        IntProbabilityMassFunction pmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
+        for (int i = 1; i <= points; i++) {
+            IntSample sample = StoexFactory.eINSTANCE.createIntSample();
+            sample.setValue((int) Math.pow(i, exponent));
+            sample.setProbability(1.0 / points);
+            pmf.getSamples().add(sample);
+        }
+        return pmf;
+    }
+}
@@ -0,0 +1,68 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import tools.vitruv.stoex.stoex.NormalDistribution;
+import tools.vitruv.stoex.stoex.StoexFactory;
+
+/**
+ * Microbenchmark of the dispatch cost of binary operations, run with
+ * {@code java -cp <test classpath> tools.vitruv.stoex.interpreter.operations.DispatcherBenchmark}.
+ * It is not run by the build.
+ *
+ * Compares allocating a dispatcher and an operation for every dispatch, as the
+ * evaluation visitor used to do, with the shared dispatcher singletons. The
+ * operands cycle through ints, doubles and a normal distribution, so the
+ * classification of both operands is part of the measured cost.
+ */
+public class DispatcherBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int DISPATCHES = 1_000_000;
+
+    public static void main(String[] args) {
+        NormalDistribution normal = StoexFactory.eINSTANCE.createNormalDistribution();
+        normal.setMu(1.0);
+        normal.setSigma(2.0);
+        Object[][] operands = { { 1, 2 }, { 1.5, 2 }, { normal, 3 }, { 4, 2.5 }, { 2, normal } };
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            allocating(operands);
+            shared(operands);
+        }
+        long allocating = 0;
+        long shared = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            allocating += allocating(operands);
+            shared += shared(operands);
+        }
+        System.out.printf("new Dispatcher per dispatch: %.1f ns/op%n", allocating / (double) (ROUNDS * DISPATCHES));
+        System.out.printf("shared Dispatcher:           %.1f ns/op%n", shared / (double) (ROUNDS * DISPATCHES));
+    }
+
+    private static long allocating(Object[][] operands) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < DISPATCHES; i++) {
+            Object[] pair = operands[i % operands.length];
+            sink += new Dispatcher(new MultOperation()).dispatch(pair[0], pair[1]).hashCode();
+        }
+        return consume(System.nanoTime() - start, sink);
+    }
+
+    private static long shared(Object[][] operands) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < DISPATCHES; i++) {
+            Object[] pair = operands[i % operands.length];
+            sink += Dispatcher.MULT.dispatch(pair[0], pair[1]).hashCode();
+        }
+        return consume(System.nanoTime() - start, sink);
+    }
+
+    private static long consume(long nanos, int sink) {
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return nanos;
+    }
+}
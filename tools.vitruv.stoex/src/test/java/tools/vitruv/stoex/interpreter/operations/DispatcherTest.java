@@ -1,14 +1,20 @@
 package tools.vitruv.stoex.interpreter.operations;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import tools.vitruv.stoex.stoex.BernoulliDistribution;
+import tools.vitruv.stoex.stoex.BinomialDistribution;
 import tools.vitruv.stoex.stoex.DiscreteUniformDistribution;
+import tools.vitruv.stoex.stoex.ExponentialDistribution;
 import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
 import tools.vitruv.stoex.stoex.IntSample;
+import tools.vitruv.stoex.stoex.NormalDistribution;
+import tools.vitruv.stoex.stoex.PoissonDistribution;
 import tools.vitruv.stoex.stoex.SampledDistribution;
 import tools.vitruv.stoex.stoex.StoexFactory;
 
@@ -64,4 +70,139 @@ public class DispatcherTest {
         }
     }
 
+    @Test
+    @DisplayName("Should pass mass functions between operations without converting them")
+    public void testMassFunctions() {
+        IntProbabilityMassFunction pmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
+        for (int value = 1; value <= 2; value++) {
+            IntSample sample = StoexFactory.eINSTANCE.createIntSample();
+            sample.setValue(value);
+            sample.setProbability(0.5);
+            pmf.getSamples().add(sample);
+        }
+        BernoulliDistribution bernoulli = StoexFactory.eINSTANCE.createBernoulliDistribution();
+        bernoulli.setP(0.5);
+
+        Object sum = Dispatcher.ADD.evaluate(pmf, pmf);
+        assertTrue(sum instanceof MassFunction);
+        Object difference = Dispatcher.SUB.evaluate(Dispatcher.MULT.evaluate(sum, 2), bernoulli);
+        assertTrue(difference instanceof MassFunction);
+        // 2 * {2, 3, 4} - {0, 1}
+        MassFunction massFunction = (MassFunction) difference;
+        assertEquals(6, massFunction.size());
+        assertEquals(3, massFunction.getValue(0));
+        assertEquals(8, massFunction.getValue(5));
+        assertEquals(0.125, massFunction.getProbability(0), 1e-12);
+
+        Object result = Dispatcher.ADD.dispatch(sum, 1);
+        assertTrue(result instanceof IntProbabilityMassFunction);
+        assertEquals(3, ((IntProbabilityMassFunction) result).getSamples().size());
+
+        // same families without a closed form stay mass functions
+        BernoulliDistribution other = StoexFactory.eINSTANCE.createBernoulliDistribution();
+        other.setP(0.25);
+        assertTrue(Dispatcher.ADD.evaluate(bernoulli, other) instanceof MassFunction);
+        assertTrue(Dispatcher.SUB.evaluate(bernoulli, bernoulli) instanceof MassFunction);
+        assertTrue(Dispatcher.ADD.evaluate(bernoulli, bernoulli) instanceof BinomialDistribution);
+        // the operations themselves return EMF mass functions
+        assertTrue(AddOperation.INSTANCE.evaluate(bernoulli, other) instanceof IntProbabilityMassFunction);
+        assertTrue(SubOperation.INSTANCE.evaluate(bernoulli, bernoulli) instanceof IntProbabilityMassFunction);
+
+        NormalDistribution normal = StoexFactory.eINSTANCE.createNormalDistribution();
+        normal.setMu(10.0);
+        normal.setSigma(1.0);
+        SamplingContext.seeded(42).call(() -> {
+            assertEquals(13.0, mean(Dispatcher.ADD.dispatch(sum, normal)), 0.1);
+            return null;
+        });
+    }
+
+    @Test
+    @DisplayName("Should fall back to numeric operations for scalars")
+    public void testNumericFallback() {
+        assertEquals(5, Dispatcher.ADD.dispatch(2, 3));
+        assertEquals(5.5, Dispatcher.ADD.dispatch(2, 3.5));
+        assertEquals(3.0, Dispatcher.SUB.dispatch(4, true));
+        assertEquals(0.5, Dispatcher.DIV.dispatch("1.0", 2));
+    }
+
+    @Test
+    @DisplayName("Should report unsupported operand pairs")
+    public void testUnsupportedOperands() {
+        NormalDistribution normal = StoexFactory.eINSTANCE.createNormalDistribution();
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> Dispatcher.MULT.dispatch(normal, "abc"));
+        assertEquals("Unsupported operands for MultOperation: NormalDistribution and abc", exception.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> Dispatcher.ADD.dispatch(true, normal));
+    }
+
+    @Test
+    @DisplayName("Should sample mixes of distributions without a dedicated handler")
+    public void testMonteCarloFallback() {
+        NormalDistribution normal = StoexFactory.eINSTANCE.createNormalDistribution();
+        normal.setMu(10.0);
+        normal.setSigma(1.0);
+        ExponentialDistribution exponential = StoexFactory.eINSTANCE.createExponentialDistribution();
+        exponential.setLambda(0.5);
+        PoissonDistribution poisson = StoexFactory.eINSTANCE.createPoissonDistribution();
+        poisson.setLambda(4.0);
+        BernoulliDistribution bernoulli = StoexFactory.eINSTANCE.createBernoulliDistribution();
+        bernoulli.setP(0.25);
+
+        SamplingContext.seeded(42).call(() -> {
+            assertEquals(20.0, mean(Dispatcher.MULT.dispatch(normal, exponential)), 1.0);
+            assertEquals(14.0, mean(Dispatcher.ADD.dispatch(poisson, normal)), 0.2);
+            assertEquals(0.625, mean(Dispatcher.MULT.dispatch(2.5, bernoulli)), 0.05);
+            assertEquals(1.5, mean(Dispatcher.SUB.dispatch(poisson, 2.5)), 0.1);
+            return null;
+        });
+    }
+
+    @Test
+    @DisplayName("Should compute discrete operands exactly in either order")
+    public void testOperandOrder() {
+        IntProbabilityMassFunction pmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
+        for (int value = 1; value <= 2; value++) {
+            IntSample sample = StoexFactory.eINSTANCE.createIntSample();
+            sample.setValue(value);
+            sample.setProbability(0.5);
+            pmf.getSamples().add(sample);
+        }
+        BinomialDistribution binomial = StoexFactory.eINSTANCE.createBinomialDistribution();
+        binomial.setN(3);
+        binomial.setP(0.5);
+        PoissonDistribution poisson = StoexFactory.eINSTANCE.createPoissonDistribution();
+        poisson.setLambda(2.0);
+        BernoulliDistribution bernoulli = StoexFactory.eINSTANCE.createBernoulliDistribution();
+        bernoulli.setP(0.5);
+        DiscreteUniformDistribution uniform = StoexFactory.eINSTANCE.createDiscreteUniformDistribution();
+        uniform.setA(1);
+        uniform.setB(2);
+        Object[] operands = { pmf, binomial, poisson, bernoulli, uniform, Dispatcher.ADD.evaluate(pmf, 0), 1 };
+
+        for (int i = 0; i < operands.length; i++) {
+            for (int j = i + 1; j < operands.length; j++) {
+                Object left = operands[i];
+                Object right = operands[j];
+                Object sum = Dispatcher.ADD.dispatch(left, right);
+                Object swapped = Dispatcher.ADD.dispatch(right, left);
+                assertTrue(sum instanceof IntProbabilityMassFunction, left + " + " + right + " = " + sum);
+                assertEquals(sum.getClass(), swapped.getClass(), left + " + " + right);
+                assertEquals(mean((IntProbabilityMassFunction) sum), mean((IntProbabilityMassFunction) swapped),
+                        1e-9);
+            }
+        }
+    }
+
+    private static double mean(IntProbabilityMassFunction pmf) {
+        return pmf.getSamples().stream().mapToDouble(sample -> sample.getValue() * sample.getProbability()).sum();
+    }
+
+    private static double mean(Object result) {
+        assertTrue(result instanceof SampledDistribution);
+        SampledDistribution samples = (SampledDistribution) result;
+        assertEquals(SamplingContext.DEFAULT_SAMPLE_COUNT, samples.getValues().size());
+        return samples.getValues().stream().mapToDouble(Double::doubleValue).average().orElseThrow();
+    }
+
 }
@@ -0,0 +1,67 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
+import tools.vitruv.stoex.stoex.IntSample;
+import tools.vitruv.stoex.stoex.StoexFactory;
+
+/**
+ * Benchmark of adding mass functions over consecutive values with a fast
+ * Fourier transform against the direct sum over all pairs, run with
+ * {@code java -cp <test classpath> tools.vitruv.stoex.interpreter.operations.FourierBenchmark}.
+ * It is not run by the build.
+ */
+public class FourierBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int[][] SIZES = { { 16, 16 }, { 32, 32 }, { 64, 64 }, { 128, 128 }, { 1000, 1000 },
+            { 10000, 10000 }, { 100000, 64 }, { 100000, 1000 } };
+
+    public static void main(String[] args) {
+        ProbabilityMassFunctionHelper direct = new ProbabilityMassFunctionHelper(Integer.MAX_VALUE);
+        ProbabilityMassFunctionHelper fourier = new ProbabilityMassFunctionHelper(0);
+        for (int[] size : SIZES) {
+            IntProbabilityMassFunction left = pmf(size[0]);
+            IntProbabilityMassFunction right = pmf(size[1]);
+            IntProbabilityMassFunction expected = direct.combine(left, right, ProbabilityFunctionOperations.ADD);
+            IntProbabilityMassFunction actual = fourier.combine(left, right, ProbabilityFunctionOperations.ADD);
+            double error = 0;
+            for (int i = 0; i < expected.getSamples().size(); i++) {
+                error = Math.max(error, Math.abs(
+                        expected.getSamples().get(i).getProbability() - actual.getSamples().get(i).getProbability()));
+            }
+            System.out.printf("%6d + %6d: direct %9.3f ms, Fourier %9.3f ms, max error %.1e%n", size[0], size[1],
+                    measure(direct, left, right), measure(fourier, left, right), error);
+        }
+    }
+
+    private static double measure(ProbabilityMassFunctionHelper helper, IntProbabilityMassFunction left,
+            IntProbabilityMassFunction right) {
+        long best = Long.MAX_VALUE;
+        int size = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            size += helper.combine(left, right, ProbabilityFunctionOperations.ADD).getSamples().size();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (size == 42) {
+            System.out.print("");
+        }
+        return best / 1e6;
+    }
+
+    /**
+     * @return A bell-shaped mass function over 0..points-1.
+     */
+    private static IntProbabilityMassFunction pmf(int points) {
+        IntProbabilityMassFunction pmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
+        double center = (points - 1) / 2.0;
+        double width = Math.max(1, points / 6.0);
+        for (int i = 0; i < points; i++) {
+            IntSample sample = StoexFactory.eINSTANCE.createIntSample();
+            sample.setValue(i);
+            sample.setProbability(Math.exp(-0.5 * Math.pow((i - center) / width, 2)));
+            pmf.getSamples().add(sample);
+        }
+        return pmf;
+    }
+}
@@ -0,0 +1,56 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.random.RandomGenerator;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
+import tools.vitruv.stoex.stoex.IntSample;
+import tools.vitruv.stoex.stoex.StoexFactory;
+
+@DisplayName("Mass Function Table Tests")
+class MassFunctionTableTest {
+
+    private static IntProbabilityMassFunction pmf(int size) {
+        IntProbabilityMassFunction pmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
+        for (int i = 0; i < size; i++) {
+            IntSample sample = StoexFactory.eINSTANCE.createIntSample();
+            sample.setValue(i);
+            sample.setProbability(1.0 / size);
+            pmf.getSamples().add(sample);
+        }
+        return pmf;
+    }
+
+    @Test
+    @DisplayName("Should build the table once per mass function")
+    void testCached() {
+        IntProbabilityMassFunction pmf = pmf(1000);
+
+        assertSame(MassFunctionTable.of(pmf), MassFunctionTable.of(pmf));
+        assertNotSame(MassFunctionTable.of(pmf), MassFunctionTable.of(pmf(1000)));
+    }
+
+    @Test
+    @DisplayName("Should rebuild the table after a change of the mass function")
+    void testInvalidated() {
+        IntProbabilityMassFunction pmf = pmf(2);
+        MassFunctionTable table = MassFunctionTable.of(pmf);
+
+        pmf.getSamples().get(0).setProbability(0.0);
+        MassFunctionTable changed = MassFunctionTable.of(pmf);
+        assertNotSame(table, changed);
+        RandomGenerator random = SamplingContext.seeded(1).getGenerator();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1.0, changed.sample(random));
+        }
+
+        pmf.getSamples().add(pmf(1).getSamples().get(0));
+        assertEquals(3, MassFunctionTable.of(pmf).size());
+    }
+}
@@ -0,0 +1,66 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
+import tools.vitruv.stoex.stoex.IntSample;
+import tools.vitruv.stoex.stoex.StoexFactory;
+
+@DisplayName("Mass Function Tests")
+class MassFunctionTest {
+
+    private static IntProbabilityMassFunction pmf(int[] values, double[] probabilities) {
+        IntProbabilityMassFunction pmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
+        for (int i = 0; i < values.length; i++) {
+            IntSample sample = StoexFactory.eINSTANCE.createIntSample();
+            sample.setValue(values[i]);
+            sample.setProbability(probabilities[i]);
+            pmf.getSamples().add(sample);
+        }
+        return pmf;
+    }
+
+    private static void assertMassFunction(int[] values, double[] probabilities, MassFunction actual) {
+        assertArrayEquals(values, actual.values());
+        assertArrayEquals(probabilities, actual.probabilities(), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Should sort the samples and sum up repeated values")
+    void testOf() {
+        MassFunction massFunction = MassFunction.of(pmf(new int[] { 3, -1, 3, 0 }, new double[] { 0.1, 0.2, 0.3, 0.4 }));
+
+        assertMassFunction(new int[] { -1, 0, 3 }, new double[] { 0.2, 0.4, 0.4 }, massFunction);
+        assertEquals(3, massFunction.size());
+        assertEquals(3, massFunction.getValue(2));
+        assertEquals(0.4, massFunction.getProbability(2), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Should map and filter values")
+    void testMapAndFilter() {
+        MassFunction massFunction = MassFunction.of(pmf(new int[] { -2, -1, 1, 2 }, new double[] { 0.1, 0.2, 0.3, 0.4 }));
+
+        assertMassFunction(new int[] { 1, 2 }, new double[] { 0.5, 0.5 }, massFunction.map(Math::abs));
+        assertMassFunction(new int[] { -4, -2, 2, 4 }, new double[] { 0.4, 0.3, 0.2, 0.1 },
+                massFunction.map(value -> -2 * value));
+        assertMassFunction(new int[] { -2, 2 }, new double[] { 0.1, 0.4 }, massFunction.filter(value -> value % 2 == 0));
+    }
+
+    @Test
+    @DisplayName("Should convert into a mass function literal")
+    void testToPMF() {
+        IntProbabilityMassFunction pmf = MassFunction.of(pmf(new int[] { 2, 1 }, new double[] { 0.75, 0.25 }))
+                .toPMF();
+
+        assertEquals(2, pmf.getSamples().size());
+        assertEquals(1, pmf.getSamples().get(0).getValue());
+        assertEquals(0.25, pmf.getSamples().get(0).getProbability(), 1e-12);
+        assertEquals(2, pmf.getSamples().get(1).getValue());
+        assertEquals(0.75, pmf.getSamples().get(1).getProbability(), 1e-12);
+    }
+}
@@ -0,0 +1,54 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmark of large Monte Carlo operations with and without parallel chunks,
+ * for every operation in turn, so that code shared by the operations is
+ * measured after it has seen all of them. Run with
+ * {@code java -cp <test classpath> tools.vitruv.stoex.interpreter.operations.MonteCarloBenchmark [samples]}.
+ * It is not run by the build.
+ */
+public class MonteCarloBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final ProbabilityFunctionOperations[] OPERATIONS = { ProbabilityFunctionOperations.ADD,
+            ProbabilityFunctionOperations.SUB, ProbabilityFunctionOperations.MUL, ProbabilityFunctionOperations.DIV };
+
+    public static void main(String[] args) {
+        int numSamples = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Random random = new Random(1);
+        double[] dist1 = random.doubles(10000).toArray();
+        // no zeros, for the division
+        double[] dist2 = random.doubles(10000).map(value -> value + 1).toArray();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        for (ProbabilityFunctionOperations operation : OPERATIONS) {
+            measure(dist1, dist2, numSamples, operation, null);
+        }
+        for (ProbabilityFunctionOperations operation : OPERATIONS) {
+            double sequential = measure(dist1, dist2, numSamples, operation, null);
+            double parallel = measure(dist1, dist2, numSamples, operation, pool);
+            System.out.printf("%s, %d samples, sequential: %.1f ms, parallel (%d threads): %.1f ms%n", operation,
+                    numSamples, sequential, pool.getParallelism(), parallel);
+        }
+    }
+
+    private static double measure(double[] dist1, double[] dist2, int numSamples,
+            ProbabilityFunctionOperations operation, ForkJoinPool pool) {
+        double sink = 0;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            MonteCarloOperation monteCarlo = new MonteCarloOperation(SamplingContext.seeded(i).getGenerator());
+            long start = System.nanoTime();
+            double[] result = monteCarlo.evaluateTermOperation(dist1, dist2, numSamples, operation, pool);
+            best = Math.min(best, System.nanoTime() - start);
+            sink += result[result.length - 1];
+        }
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return best / 1e6;
+    }
+}
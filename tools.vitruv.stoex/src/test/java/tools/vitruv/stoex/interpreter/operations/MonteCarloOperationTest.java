@@ -3,11 +3,18 @@ package tools.vitruv.stoex.interpreter.operations;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import tools.vitruv.stoex.stoex.LognormalDistribution;
+import tools.vitruv.stoex.stoex.StoexFactory;
+
 /**
  * Unit tests for the {@link MonteCarloOperation} class,
  * which performs Monte Carlo operations on probability distributions
@@ -111,4 +118,99 @@ public class MonteCarloOperationTest {
         assertEquals(samples.length, (int) total);
     }
 
+    @Test
+    @DisplayName("Should stop sampling once the estimates converged")
+    public void testAdaptiveConvergence() {
+        MonteCarloOperation operation = new MonteCarloOperation(SamplingContext.seeded(1).getGenerator());
+        double[] dist1 = new double[1000];
+        double[] dist2 = new double[1000];
+        for (int i = 0; i < dist1.length; i++) {
+            dist1[i] = 1.0 + (double) i / (dist1.length - 1); // Uniform from 1 to 2
+            dist2[i] = 3.0 + 2.0 * i / (dist2.length - 1); // Uniform from 3 to 5
+        }
+
+        double[] result = operation.evaluateTermOperation(dist1, dist2, ConvergenceCriterion.of(0.05, 0.95),
+                ProbabilityFunctionOperations.ADD);
+        MonteCarloReport report = operation.getLastReport();
+
+        assertTrue(report.isConverged());
+        assertEquals(result.length, report.getSampleCount());
+        assertTrue(report.getSampleCount() < 10000);
+        assertTrue(report.getMeanError() <= 0.05);
+        assertTrue(report.getVarianceError() <= 0.05);
+        assertEquals(5.5, report.getMean(), 0.05);
+        assertEquals(5.5, report.getQuantileValues()[0], 0.1);
+    }
+
+    @Test
+    @DisplayName("Should draw more samples for heavy tails and stop at the maximum")
+    public void testAdaptiveHeavyTail() {
+        Random random = new Random(7);
+        double[] lognormal = new double[10000];
+        for (int i = 0; i < lognormal.length; i++) {
+            lognormal[i] = Math.exp(2.0 * random.nextGaussian());
+        }
+        double[] constant = { 1.0 };
+        ConvergenceCriterion criterion = ConvergenceCriterion.of(0.02, 0.95).withMaxSamples(20000);
+        MonteCarloOperation operation = new MonteCarloOperation(SamplingContext.seeded(1).getGenerator());
+
+        double[] result = operation.evaluateTermOperation(lognormal, constant, criterion,
+                ProbabilityFunctionOperations.MUL);
+        MonteCarloReport report = operation.getLastReport();
+
+        assertFalse(report.isConverged());
+        assertEquals(20000, result.length);
+        assertTrue(report.getVarianceError() > 0.02);
+    }
+
+    @Test
+    @DisplayName("Should draw fresh operand samples for every batch of an adaptive operation")
+    public void testAdaptiveFreshOperands() {
+        LognormalDistribution lognormal = StoexFactory.eINSTANCE.createLognormalDistribution();
+        lognormal.setMu(0.0);
+        lognormal.setSigma(2.0);
+        ConvergenceCriterion criterion = ConvergenceCriterion.of(0.001, 0.95).withMaxSamples(50000);
+        SamplingContext context = SamplingContext.seeded(1).withSampling(1000, criterion, null);
+
+        double[] result = context.call(() -> new MonteCarloOperation().evaluateTermOperation(
+                new SampleHelper().sampler(lognormal), count -> new double[count], ProbabilityFunctionOperations.ADD));
+
+        // resampling 1000 operand samples would repeat them
+        assertEquals(50000, result.length);
+        assertEquals(50000, Arrays.stream(result).distinct().count());
+        assertEquals(1, context.getReports().size());
+    }
+
+    @Test
+    @DisplayName("Should compute the critical values of the normal distribution")
+    public void testCriticalValue() {
+        assertEquals(1.959964, ConvergenceCriterion.of(0.01, 0.95).getCriticalValue(), 1e-6);
+        assertEquals(2.575829, ConvergenceCriterion.of(0.01, 0.99).getCriticalValue(), 1e-6);
+        assertEquals(-3.090232, ConvergenceCriterion.inverseNormal(0.001), 1e-6);
+    }
+
+    @Test
+    @DisplayName("Should draw the same samples in parallel as sequentially")
+    public void testParallelDeterminism() {
+        Random random = new Random(3);
+        double[] dist1 = random.doubles(5000).toArray();
+        double[] dist2 = random.doubles(5000, 1, 2).toArray();
+        int numSamples = 10 * MonteCarloOperation.CHUNK_SIZE + 17;
+
+        double[] sequential = new MonteCarloOperation(SamplingContext.seeded(5).getGenerator())
+                .evaluateTermOperation(dist1, dist2, numSamples, ProbabilityFunctionOperations.DIV);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            double[] parallel = new MonteCarloOperation(SamplingContext.seeded(5).getGenerator())
+                    .evaluateTermOperation(dist1, dist2, numSamples, ProbabilityFunctionOperations.DIV, pool);
+            assertArrayEquals(sequential, parallel, 0.0);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(numSamples, sequential.length);
+        double mean = Arrays.stream(sequential).average().orElse(0);
+        // E[U(0,1)] * E[1/U(1,2)] = 0.5 * ln(2)
+        assertEquals(0.5 * Math.log(2), mean, 0.01);
+    }
+
 }
@@ -1,12 +1,20 @@
 package tools.vitruv.stoex.interpreter.operations;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Map;
+import java.util.TreeMap;
+
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import tools.vitruv.stoex.stoex.BinomialDistribution;
 import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
 import tools.vitruv.stoex.stoex.IntSample;
+import tools.vitruv.stoex.stoex.PoissonDistribution;
 import tools.vitruv.stoex.stoex.StoexFactory;
 
 @DisplayName("Discrete Convolution Tests")
@@ -60,4 +68,210 @@ public class ProbabilityMassFunctionHelperTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should combine compact and sparse ranges like the pairwise definition")
+    public void testCombineMatchesPairs() {
+        ProbabilityMassFunctionHelper helper = new ProbabilityMassFunctionHelper();
+        IntProbabilityMassFunction compact = pmf(new int[] { -3, -1, 0, 2, 5 }, new double[] { 1, 2, 3, 4, 5 });
+        // squares spread the products over a range too wide for a dense array
+        IntProbabilityMassFunction sparse = pmf(new int[] { 1, 900, 40000, 2000000, -70000 },
+                new double[] { 5, 1, 1, 2, 1 });
+        IntProbabilityMassFunction divisors = pmf(new int[] { -7, 2, 3, 1000 }, new double[] { 1, 1, 2, 1 });
+        for (ProbabilityFunctionOperations operation : ProbabilityFunctionOperations.values()) {
+            if (operation != ProbabilityFunctionOperations.DIV) {
+                assertMatchesPairs(helper, compact, compact, operation);
+            }
+            assertMatchesPairs(helper, sparse, sparse, operation);
+            assertMatchesPairs(helper, compact, divisors, operation);
+            assertMatchesPairs(helper, sparse, divisors, operation);
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject division by a mass function containing zero")
+    public void testCombineDivisionByZero() {
+        ProbabilityMassFunctionHelper helper = new ProbabilityMassFunctionHelper();
+        IntProbabilityMassFunction pmf = pmf(new int[] { 0, 1 }, new double[] { 0.5, 0.5 });
+        assertThrows(ArithmeticException.class, () -> helper.combine(pmf, pmf, ProbabilityFunctionOperations.DIV));
+    }
+
+    @Test
+    @DisplayName("Should add and subtract consecutive values with a Fourier transform")
+    public void testFourierConvolution() {
+        ProbabilityMassFunctionHelper fourier = new ProbabilityMassFunctionHelper(0);
+        int[] values = new int[300];
+        double[] weights = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i - 100;
+            weights[i] = Math.exp(-0.5 * Math.pow((i - 120) / 30.0, 2));
+        }
+        // the last value repeats one, which still leaves the values consecutive
+        values[values.length - 1] = 5;
+        IntProbabilityMassFunction bell = pmf(values, weights);
+        IntProbabilityMassFunction small = pmf(new int[] { 2, 0, 1 }, new double[] { 0.2, 0.5, 0.3 });
+        for (ProbabilityFunctionOperations operation : new ProbabilityFunctionOperations[] {
+                ProbabilityFunctionOperations.ADD, ProbabilityFunctionOperations.SUB }) {
+            assertMatchesPairs(fourier, bell, bell, operation);
+            assertMatchesPairs(fourier, bell, small, operation);
+            assertMatchesPairs(fourier, small, bell, operation);
+        }
+    }
+
+    @Test
+    @DisplayName("Should add values with gaps without a Fourier transform")
+    public void testFourierConvolutionWithGaps() {
+        ProbabilityMassFunctionHelper fourier = new ProbabilityMassFunctionHelper(0);
+        IntProbabilityMassFunction gaps = pmf(new int[] { 0, 2, 3 }, new double[] { 1, 1, 1 });
+        IntProbabilityMassFunction large = pmf(new int[] { Integer.MAX_VALUE - 1, Integer.MAX_VALUE },
+                new double[] { 1, 1 });
+        assertMatchesPairs(fourier, gaps, gaps, ProbabilityFunctionOperations.ADD);
+        assertMatchesPairs(fourier, gaps, gaps, ProbabilityFunctionOperations.SUB);
+        // the sums overflow like those of the direct method
+        assertMatchesPairs(fourier, large, large, ProbabilityFunctionOperations.ADD);
+    }
+
+    @Test
+    @DisplayName("Should convert binomial distributions, also with large n")
+    public void testConvertBinomial() {
+        ProbabilityMassFunctionHelper helper = new ProbabilityMassFunctionHelper();
+        IntProbabilityMassFunction small = helper.convertToPMF(binomial(10, 0.3));
+        assertEquals(11, small.getSamples().size());
+        for (IntSample sample : small.getSamples()) {
+            int k = sample.getValue();
+            double expected = Math.exp(logFactorial(10) - logFactorial(k) - logFactorial(10 - k)) * Math.pow(0.3, k)
+                    * Math.pow(0.7, 10 - k);
+            assertEquals(expected, sample.getProbability(), 1e-14);
+        }
+
+        assertMoments(helper.convertToPMF(binomial(1000, 0.3)), 300, 210);
+        assertMoments(helper.convertToPMF(binomial(100000, 0.999)), 99900, 99.9);
+        IntProbabilityMassFunction certain = helper.convertToPMF(binomial(5, 1.0));
+        assertEquals(1.0, certain.getSamples().get(5).getProbability());
+        assertEquals(0.0, certain.getSamples().get(0).getProbability());
+    }
+
+    @Test
+    @DisplayName("Should convert Poisson distributions, also with large rates")
+    public void testConvertPoisson() {
+        ProbabilityMassFunctionHelper helper = new ProbabilityMassFunctionHelper();
+        IntProbabilityMassFunction small = helper.convertToPMF(poisson(3.5));
+        assertEquals(26, small.getSamples().size());
+        for (IntSample sample : small.getSamples()) {
+            int k = sample.getValue();
+            double expected = Math.exp(-3.5 + k * Math.log(3.5) - logFactorial(k));
+            assertEquals(expected, sample.getProbability(), 1e-14);
+        }
+
+        assertMoments(helper.convertToPMF(poisson(200)), 200, 200);
+        assertMoments(helper.convertToPMF(poisson(5000.5)), 5000.5, 5000.5);
+    }
+
+    @Test
+    @DisplayName("Should truncate Poisson distributions at the configured tail mass")
+    public void testPoissonTailMass() {
+        // small rates keep the values beyond 10 lambda, large ones only a few deviations around the mode
+        assertSupport(poisson(0.01), SamplingContext.DEFAULT_TAIL_MASS, 0, 5);
+        assertSupport(poisson(0.3), SamplingContext.DEFAULT_TAIL_MASS, 0, 10);
+        assertSupport(poisson(1e6), SamplingContext.DEFAULT_TAIL_MASS, 992566, 1007452);
+        assertSupport(poisson(200), 1e-6, 135, 273);
+
+        SamplingContext context = SamplingContext.current().withTailMass(1e-6);
+        MassFunction function = context.call(() -> new ProbabilityMassFunctionHelper().toMassFunction(poisson(200)));
+        double dropped = 1;
+        for (int i = 0; i < function.size(); i++) {
+            dropped -= function.getProbability(i);
+        }
+        // the reported mass bounds the dropped one
+        assertTrue(context.getTruncatedMass() >= dropped, context.getTruncatedMass() + " < " + dropped);
+        assertTrue(context.getTruncatedMass() <= 1e-6);
+        assertEquals(dropped, context.getTruncatedMass(), 0.1 * dropped);
+
+        assertEquals(1, new ProbabilityMassFunctionHelper().convertToPMF(poisson(0)).getSamples().size());
+        assertThrows(IllegalArgumentException.class, () -> SamplingContext.current().withTailMass(0));
+    }
+
+    private static void assertSupport(PoissonDistribution distribution, double tailMass, int min, int max) {
+        MassFunction function = SamplingContext.current().withTailMass(tailMass)
+                .call(() -> new ProbabilityMassFunctionHelper().toMassFunction(distribution));
+        assertEquals(min, function.getValue(0));
+        assertEquals(max, function.getValue(function.size() - 1));
+        assertEquals(max - min + 1, function.size());
+    }
+
+    private static void assertMoments(IntProbabilityMassFunction pmf, double mean, double variance) {
+        double total = 0;
+        double sum = 0;
+        double squares = 0;
+        for (IntSample sample : pmf.getSamples()) {
+            double probability = sample.getProbability();
+            assertTrue(probability >= 0 && probability <= 1, "probability " + probability);
+            total += probability;
+            sum += probability * sample.getValue();
+            squares += probability * sample.getValue() * sample.getValue();
+        }
+        assertEquals(1.0, total, 1e-12);
+        assertEquals(mean, sum, 1e-9 * mean);
+        assertEquals(variance, squares - sum * sum, 1e-6 * mean * mean);
+    }
+
+    private static double logFactorial(int n) {
+        double result = 0;
+        for (int i = 2; i <= n; i++) {
+            result += Math.log(i);
+        }
+        return result;
+    }
+
+    private static BinomialDistribution binomial(int n, double p) {
+        BinomialDistribution distribution = StoexFactory.eINSTANCE.createBinomialDistribution();
+        distribution.setN(n);
+        distribution.setP(p);
+        return distribution;
+    }
+
+    private static PoissonDistribution poisson(double lambda) {
+        PoissonDistribution distribution = StoexFactory.eINSTANCE.createPoissonDistribution();
+        distribution.setLambda(lambda);
+        return distribution;
+    }
+
+    private static void assertMatchesPairs(ProbabilityMassFunctionHelper helper, IntProbabilityMassFunction left,
+            IntProbabilityMassFunction right, ProbabilityFunctionOperations operation) {
+        Map<Integer, Double> expected = new TreeMap<>();
+        double total = 0;
+        for (IntSample l : left.getSamples()) {
+            for (IntSample r : right.getSamples()) {
+                int value = switch (operation) {
+                    case ADD -> l.getValue() + r.getValue();
+                    case SUB -> l.getValue() - r.getValue();
+                    case MUL -> l.getValue() * r.getValue();
+                    case DIV -> l.getValue() / r.getValue();
+                };
+                double probability = l.getProbability() * r.getProbability();
+                expected.merge(value, probability, Double::sum);
+                total += probability;
+            }
+        }
+
+        IntProbabilityMassFunction result = helper.combine(left, right, operation);
+        assertEquals(expected.size(), result.getSamples().size(), operation.toString());
+        int i = 0;
+        for (Map.Entry<Integer, Double> entry : expected.entrySet()) {
+            IntSample sample = result.getSamples().get(i++);
+            assertEquals(entry.getKey(), sample.getValue(), operation.toString());
+            assertEquals(entry.getValue() / total, sample.getProbability(), 1e-12, operation.toString());
+        }
+    }
+
+    private static IntProbabilityMassFunction pmf(int[] values, double[] weights) {
+        IntProbabilityMassFunction pmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
+        for (int i = 0; i < values.length; i++) {
+            IntSample sample = StoexFactory.eINSTANCE.createIntSample();
+            sample.setValue(values[i]);
+            sample.setProbability(weights[i]);
+            pmf.getSamples().add(sample);
+        }
+        return pmf;
+    }
+}
@@ -0,0 +1,338 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntToDoubleFunction;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import tools.vitruv.stoex.stoex.BernoulliDistribution;
+import tools.vitruv.stoex.stoex.BinomialDistribution;
+import tools.vitruv.stoex.stoex.DiscreteUniformDistribution;
+import tools.vitruv.stoex.stoex.DoubleProbabilityMassFunction;
+import tools.vitruv.stoex.stoex.DoubleSample;
+import tools.vitruv.stoex.stoex.ExponentialDistribution;
+import tools.vitruv.stoex.stoex.GammaDistribution;
+import tools.vitruv.stoex.stoex.IntProbabilityMassFunction;
+import tools.vitruv.stoex.stoex.IntSample;
+import tools.vitruv.stoex.stoex.LognormalDistribution;
+import tools.vitruv.stoex.stoex.NormalDistribution;
+import tools.vitruv.stoex.stoex.PoissonDistribution;
+import tools.vitruv.stoex.stoex.ProbabilityFunction;
+import tools.vitruv.stoex.stoex.StoexFactory;
+
+/**
+ * Goodness-of-fit tests of the samplers: continuous distributions with the
+ * Kolmogorov-Smirnov and the Anderson-Darling test, discrete ones with the
+ * chi-squared test, all at a significance level of 0.001.
+ */
+@DisplayName("Sample Helper Tests")
+class SampleHelperTest {
+
+    private static final int SAMPLES = 20000;
+    // asymptotic critical values for a fully specified distribution at 0.001
+    private static final double KS_CRITICAL = 1.949 / Math.sqrt(SAMPLES);
+    private static final double AD_CRITICAL = 5.97;
+
+    private static SampleHelper helper(long seed) {
+        return new SampleHelper(SamplingContext.seeded(seed).getGenerator(), SAMPLES);
+    }
+
+    private static void assertFits(double[] samples, DoubleUnaryOperator cdf) {
+        double[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        double ks = kolmogorovSmirnov(sorted, cdf);
+        double ad = andersonDarling(sorted, cdf);
+        assertTrue(ks < KS_CRITICAL, "Kolmogorov-Smirnov statistic " + ks + " >= " + KS_CRITICAL);
+        assertTrue(ad < AD_CRITICAL, "Anderson-Darling statistic " + ad + " >= " + AD_CRITICAL);
+    }
+
+    @Test
+    @DisplayName("Should sample the normal distribution")
+    void testNormal() {
+        NormalDistribution normal = StoexFactory.eINSTANCE.createNormalDistribution();
+        normal.setMu(3.0);
+        normal.setSigma(2.0);
+
+        assertFits(helper(1).getSamples(normal), x -> normalCdf((x - 3.0) / 2.0));
+    }
+
+    @Test
+    @DisplayName("Should sample the exponential distribution")
+    void testExponential() {
+        ExponentialDistribution exponential = StoexFactory.eINSTANCE.createExponentialDistribution();
+        exponential.setLambda(0.5);
+
+        assertFits(helper(2).getSamples(exponential), x -> 1 - Math.exp(-0.5 * x));
+    }
+
+    @Test
+    @DisplayName("Should sample the lognormal distribution")
+    void testLognormal() {
+        LognormalDistribution lognormal = StoexFactory.eINSTANCE.createLognormalDistribution();
+        lognormal.setMu(0.5);
+        lognormal.setSigma(0.8);
+
+        assertFits(helper(3).getSamples(lognormal), x -> normalCdf((Math.log(x) - 0.5) / 0.8));
+    }
+
+    @Test
+    @DisplayName("Should sample the gamma distribution for small and large shapes")
+    void testGamma() {
+        GammaDistribution small = StoexFactory.eINSTANCE.createGammaDistribution();
+        small.setAlpha(0.4);
+        small.setTheta(2.0);
+        GammaDistribution large = StoexFactory.eINSTANCE.createGammaDistribution();
+        large.setAlpha(3.5);
+        large.setTheta(0.5);
+
+        assertFits(helper(4).getSamples(small), x -> regularizedGammaP(0.4, x / 2.0));
+        assertFits(helper(5).getSamples(large), x -> regularizedGammaP(3.5, x / 0.5));
+    }
+
+    @Test
+    @DisplayName("Should reject samples of a different distribution")
+    void testRejectsWrongDistribution() {
+        ExponentialDistribution exponential = StoexFactory.eINSTANCE.createExponentialDistribution();
+        exponential.setLambda(0.55);
+        double[] sorted = helper(6).getSamples(exponential);
+        Arrays.sort(sorted);
+
+        assertTrue(kolmogorovSmirnov(sorted, x -> 1 - Math.exp(-0.5 * x)) > KS_CRITICAL);
+        assertTrue(andersonDarling(sorted, x -> 1 - Math.exp(-0.5 * x)) > AD_CRITICAL);
+    }
+
+    @Test
+    @DisplayName("Should sample the binomial distribution by inversion and with BTPE")
+    void testBinomial() {
+        // inversion
+        assertBinomialFits(20, 0.3, 7);
+        assertBinomialFits(60, 0.45, 8);
+        // BTPE, the first with mostly explicit evaluation, the others with the squeeze
+        assertBinomialFits(100, 0.35, 9);
+        assertBinomialFits(100000, 0.01, 10);
+        assertBinomialFits(1000, 0.9, 11);
+    }
+
+    @Test
+    @DisplayName("Should sample degenerate binomial distributions")
+    void testBinomialDegenerate() {
+        SampleHelper helper = helper(12);
+
+        assertEquals(0, helper.sampleBinomial(0, 0.5));
+        assertEquals(0, helper.sampleBinomial(10, 0.0));
+        assertEquals(10, helper.sampleBinomial(10, 1.0));
+    }
+
+    @Test
+    @DisplayName("Should sample the Poisson distribution by multiplication and with PTRS")
+    void testPoisson() {
+        assertPoissonFits(0.5, 13);
+        assertPoissonFits(7.5, 14);
+        assertPoissonFits(10, 15);
+        assertPoissonFits(250, 16);
+        assertPoissonFits(40000, 17);
+        assertEquals(0, helper(18).samplePoisson(0));
+    }
+
+    @Test
+    @DisplayName("Should sample the Bernoulli and the discrete uniform distribution")
+    void testBernoulliAndDiscreteUniform() {
+        BernoulliDistribution bernoulli = StoexFactory.eINSTANCE.createBernoulliDistribution();
+        bernoulli.setP(0.3);
+        DiscreteUniformDistribution uniform = StoexFactory.eINSTANCE.createDiscreteUniformDistribution();
+        uniform.setA(-3);
+        uniform.setB(7);
+
+        assertDiscreteFits("Bernoulli", helper(19).getSamples(bernoulli), 0, 1, k -> k == 1 ? 0.3 : 0.7);
+        assertDiscreteFits("DiscreteUniform", helper(20).getSamples(uniform), -3, 7, k -> 1.0 / 11);
+    }
+
+    @Test
+    @DisplayName("Should sample probability mass functions with an alias table")
+    void testProbabilityMassFunctions() {
+        IntProbabilityMassFunction intPmf = StoexFactory.eINSTANCE.createIntProbabilityMassFunction();
+        double[] probabilities = { 0.05, 0.0, 0.5, 0.25, 0.2 };
+        for (int i = 0; i < probabilities.length; i++) {
+            IntSample sample = StoexFactory.eINSTANCE.createIntSample();
+            sample.setValue(i * 10);
+            sample.setProbability(probabilities[i]);
+            intPmf.getSamples().add(sample);
+        }
+        DoubleProbabilityMassFunction doublePmf = StoexFactory.eINSTANCE.createDoubleProbabilityMassFunction();
+        for (double value : new double[] { 0.5, 1.5 }) {
+            DoubleSample sample = StoexFactory.eINSTANCE.createDoubleSample();
+            sample.setValue(value);
+            sample.setProbability(0.5);
+            doublePmf.getSamples().add(sample);
+        }
+
+        double[] tens = helper(21).getSamples(intPmf);
+        for (int i = 0; i < tens.length; i++) {
+            tens[i] /= 10;
+        }
+        assertDiscreteFits("IntProbabilityMassFunction", tens, 0, 4, k -> probabilities[k]);
+        double[] halves = helper(22).getSamples((ProbabilityFunction) doublePmf);
+        for (int i = 0; i < halves.length; i++) {
+            halves[i] -= 0.5;
+        }
+        assertDiscreteFits("DoubleProbabilityMassFunction", halves, 0, 1, k -> 0.5);
+    }
+
+    @Test
+    @DisplayName("Should compute log factorials")
+    void testLogFactorial() {
+        double sum = 0;
+        for (int k = 1; k <= 1000; k++) {
+            sum += Math.log(k);
+            assertEquals(sum, SampleHelper.logFactorial(k), 1e-12 * sum);
+        }
+        assertEquals(0, SampleHelper.logFactorial(0));
+    }
+
+    private static void assertBinomialFits(int n, double p, long seed) {
+        BinomialDistribution binomial = StoexFactory.eINSTANCE.createBinomialDistribution();
+        binomial.setN(n);
+        binomial.setP(p);
+        assertDiscreteFits("Binomial(" + n + ", " + p + ")", helper(seed).getSamples(binomial), 0, n,
+                k -> Math.exp(SampleHelper.logFactorial(n) - SampleHelper.logFactorial(k)
+                        - SampleHelper.logFactorial(n - k) + k * Math.log(p) + (n - k) * Math.log1p(-p)));
+    }
+
+    private static void assertPoissonFits(double lambda, long seed) {
+        PoissonDistribution poisson = StoexFactory.eINSTANCE.createPoissonDistribution();
+        poisson.setLambda(lambda);
+        int max = (int) (lambda + 20 * Math.sqrt(lambda) + 20);
+        assertDiscreteFits("Poisson(" + lambda + ")", helper(seed).getSamples(poisson), 0, max,
+                k -> Math.exp(-lambda + k * Math.log(lambda) - SampleHelper.logFactorial(k)));
+    }
+
+    /**
+     * Chi-squared test at the 0.001 level of the sampled frequencies against the
+     * probability mass function on [min, max], with cells of less than five
+     * expected samples merged.
+     */
+    private static void assertDiscreteFits(String name, double[] samples, int min, int max,
+            IntToDoubleFunction pmf) {
+        int[] counts = new int[max - min + 1];
+        for (double sample : samples) {
+            assertEquals(Math.rint(sample), sample, name);
+            assertTrue(sample >= min && sample <= max, name + ": sample " + sample + " out of range");
+            counts[(int) sample - min]++;
+        }
+        List<double[]> cells = new ArrayList<>();
+        double[] cell = new double[2];
+        for (int k = min; k <= max; k++) {
+            cell[0] += SAMPLES * pmf.applyAsDouble(k);
+            cell[1] += counts[k - min];
+            if (cell[0] >= 5) {
+                cells.add(cell);
+                cell = new double[2];
+            }
+        }
+        double[] last = cells.get(cells.size() - 1);
+        last[0] += cell[0];
+        last[1] += cell[1];
+        double chiSquared = 0;
+        for (double[] c : cells) {
+            chiSquared += (c[1] - c[0]) * (c[1] - c[0]) / c[0];
+        }
+        // Wilson-Hilferty approximation of the 0.999 quantile
+        int df = Math.max(cells.size() - 1, 1);
+        double h = 2.0 / (9 * df);
+        double critical = df * Math.pow(1 - h + 3.090 * Math.sqrt(h), 3);
+        assertTrue(chiSquared < critical, name + ": chi-squared " + chiSquared + " >= " + critical);
+    }
+
+    private static double kolmogorovSmirnov(double[] sorted, DoubleUnaryOperator cdf) {
+        int n = sorted.length;
+        double d = 0;
+        for (int i = 0; i < n; i++) {
+            double f = cdf.applyAsDouble(sorted[i]);
+            d = Math.max(d, Math.max((i + 1.0) / n - f, f - (double) i / n));
+        }
+        return d;
+    }
+
+    private static double andersonDarling(double[] sorted, DoubleUnaryOperator cdf) {
+        int n = sorted.length;
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            double low = clamp(cdf.applyAsDouble(sorted[i]));
+            double high = clamp(cdf.applyAsDouble(sorted[n - 1 - i]));
+            sum += (2 * i + 1) * (Math.log(low) + Math.log(1 - high));
+        }
+        return -n - sum / n;
+    }
+
+    private static double clamp(double p) {
+        return Math.min(Math.max(p, 1e-300), 1 - 1e-16);
+    }
+
+    /** Complementary error function with a relative error below 1.2e-7. */
+    private static double normalCdf(double x) {
+        double z = Math.abs(x) / Math.sqrt(2);
+        double t = 1 / (1 + 0.5 * z);
+        double erfc = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                        + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? 1 - erfc / 2 : erfc / 2;
+    }
+
+    /** Regularized lower incomplete gamma function P(a, x). */
+    private static double regularizedGammaP(double a, double x) {
+        if (x <= 0) {
+            return 0;
+        }
+        double logPrefix = a * Math.log(x) - x - logGamma(a);
+        if (x < a + 1) {
+            double term = 1 / a;
+            double sum = term;
+            for (int n = 1; n < 1000 && Math.abs(term) > Math.abs(sum) * 1e-15; n++) {
+                term *= x / (a + n);
+                sum += term;
+            }
+            return sum * Math.exp(logPrefix);
+        }
+        // continued fraction for Q(a, x) with the modified Lentz method
+        double b = x + 1 - a;
+        double c = 1 / 1e-300;
+        double d = 1 / b;
+        double h = d;
+        for (int i = 1; i < 1000; i++) {
+            double an = -i * (i - a);
+            b += 2;
+            d = an * d + b;
+            d = Math.abs(d) < 1e-300 ? 1e-300 : d;
+            c = b + an / c;
+            c = Math.abs(c) < 1e-300 ? 1e-300 : c;
+            d = 1 / d;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < 1e-15) {
+                break;
+            }
+        }
+        return 1 - Math.exp(logPrefix) * h;
+    }
+
+    /** Lanczos approximation of log Γ(x) for x > 0. */
+    private static double logGamma(double x) {
+        double[] coefficients = { 76.18009172947146, -86.50532032941677, 24.01409824083091, -1.231739572450155,
+                0.1208650973866179e-2, -0.5395239384953e-5 };
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (double coefficient : coefficients) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+}
@@ -0,0 +1,60 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import java.util.Random;
+
+/**
+ * Benchmark of the scalar and the Vector API sample kernels, built with
+ * {@code mvn -Pvector test-compile} and run with
+ * {@code java --add-modules jdk.incubator.vector -cp <test classpath> tools.vitruv.stoex.interpreter.operations.SampleKernelsBenchmark [samples]}.
+ * It is not run by the build.
+ */
+public class SampleKernelsBenchmark {
+
+    private static final int ROUNDS = 2000;
+
+    public static void main(String[] args) {
+        int numSamples = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        double[] samples = new Random(1).doubles(numSamples, 0.1, 10).toArray();
+        SampleKernels vector = SampleKernels.vectorized();
+        if (vector == null) {
+            System.out.println("jdk.incubator.vector is not available, only the scalar kernels are measured");
+        }
+        SampleKernels[] kernels = vector == null ? new SampleKernels[] { new ScalarSampleKernels() }
+                : new SampleKernels[] { new ScalarSampleKernels(), vector };
+
+        for (String operation : new String[] { "add", "divide", "pow", "affine" }) {
+            for (SampleKernels kernel : kernels) {
+                System.out.printf("%-7s %-6s %8.1f ns/sample%n", kernel.isVectorized() ? "vector" : "scalar",
+                        operation, measure(kernel, operation, samples));
+            }
+        }
+    }
+
+    private static double measure(SampleKernels kernels, String operation, double[] samples) {
+        double[] result = new double[samples.length];
+        double sink = 0;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            switch (operation) {
+                case "add":
+                    kernels.add(samples, 1.5, result);
+                    break;
+                case "divide":
+                    kernels.divide(samples, 1.5, result);
+                    break;
+                case "pow":
+                    kernels.pow(samples, 1.5, result);
+                    break;
+                default:
+                    kernels.affine(samples, 1.5, 0.5, result);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            sink += result[result.length - 1];
+        }
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return (double) best / samples.length;
+    }
+}
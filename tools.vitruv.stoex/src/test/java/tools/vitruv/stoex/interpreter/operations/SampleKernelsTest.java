@@ -0,0 +1,86 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Sample Kernels Tests")
+class SampleKernelsTest {
+
+    private static final SampleKernels SCALAR = new ScalarSampleKernels();
+
+    // not a multiple of any vector length, so the scalar remainder is covered
+    private static double[] samples() {
+        return new Random(7).doubles(1003, -10, 10).toArray();
+    }
+
+    @Test
+    @DisplayName("Should compute the elementwise operations")
+    void testScalarKernels() {
+        double[] samples = { 1.0, -2.0, 4.0 };
+
+        assertArrayEquals(new double[] { 3.0, 0.0, 6.0 }, SCALAR.add(samples, 2.0, new double[3]));
+        assertArrayEquals(new double[] { -1.0, -4.0, 2.0 }, SCALAR.subtract(samples, 2.0, new double[3]));
+        assertArrayEquals(new double[] { 1.0, 4.0, -2.0 }, SCALAR.subtract(2.0, samples, new double[3]));
+        assertArrayEquals(new double[] { 2.0, -4.0, 8.0 }, SCALAR.multiply(samples, 2.0, new double[3]));
+        assertArrayEquals(new double[] { 0.5, -1.0, 2.0 }, SCALAR.divide(samples, 2.0, new double[3]));
+        assertArrayEquals(new double[] { 2.0, -1.0, 0.5 }, SCALAR.divide(2.0, samples, new double[3]));
+        assertArrayEquals(new double[] { 1.0, 4.0, 16.0 }, SCALAR.pow(samples, 2.0, new double[3]));
+        assertArrayEquals(new double[] { 4.0, -2.0, 10.0 }, SCALAR.affine(samples, 2.0, 2.0, new double[3]));
+    }
+
+    @Test
+    @DisplayName("Should compute in place")
+    void testInPlace() {
+        double[] samples = samples();
+        double[] expected = SCALAR.affine(samples, 3.0, 1.0, new double[samples.length]);
+
+        assertSame(samples, SampleKernels.get().affine(samples, 3.0, 1.0, samples));
+        assertArrayEquals(expected, samples);
+    }
+
+    @Test
+    @DisplayName("Should compute the same values with the Vector API")
+    void testVectorKernels() {
+        SampleKernels vector = SampleKernels.vectorized();
+        assumeTrue(vector != null, "the Vector API kernels are only built and tested with -Pvector");
+        double[] samples = samples();
+        int n = samples.length;
+
+        assertArrayEquals(SCALAR.add(samples, 0.3, new double[n]), vector.add(samples, 0.3, new double[n]));
+        assertArrayEquals(SCALAR.subtract(samples, 0.3, new double[n]),
+                vector.subtract(samples, 0.3, new double[n]));
+        assertArrayEquals(SCALAR.subtract(0.3, samples, new double[n]),
+                vector.subtract(0.3, samples, new double[n]));
+        assertArrayEquals(SCALAR.multiply(samples, 0.3, new double[n]),
+                vector.multiply(samples, 0.3, new double[n]));
+        assertArrayEquals(SCALAR.divide(samples, 0.3, new double[n]), vector.divide(samples, 0.3, new double[n]));
+        assertArrayEquals(SCALAR.divide(0.3, samples, new double[n]), vector.divide(0.3, samples, new double[n]));
+        assertArrayEquals(SCALAR.affine(samples, 0.3, 1.7, new double[n]),
+                vector.affine(samples, 0.3, 1.7, new double[n]));
+        assertArrayEquals(SCALAR.pow(samples, 2, new double[n]), vector.pow(samples, 2, new double[n]));
+
+        double[] positive = SCALAR.pow(samples, 2, new double[n]);
+        double[] expected = SCALAR.pow(positive, 1.5, new double[n]);
+        double[] actual = vector.pow(positive, 1.5, new double[n]);
+        for (int i = 0; i < n; i++) {
+            assertEquals(expected[i], actual[i], 2 * Math.ulp(expected[i]));
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep the special values of the operations")
+    void testSpecialValues() {
+        SampleKernels kernels = SampleKernels.get();
+        double[] samples = { 0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, -1.0 };
+
+        assertArrayEquals(SCALAR.divide(1.0, samples, new double[5]), kernels.divide(1.0, samples, new double[5]));
+        assertArrayEquals(SCALAR.pow(samples, 0.5, new double[5]), kernels.pow(samples, 0.5, new double[5]));
+    }
+}
@@ -0,0 +1,55 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import tools.vitruv.stoex.stoex.NormalDistribution;
+import tools.vitruv.stoex.stoex.StoexFactory;
+
+@DisplayName("Sampling Context Tests")
+class SamplingContextTest {
+
+    private static NormalDistribution normal() {
+        NormalDistribution normal = StoexFactory.eINSTANCE.createNormalDistribution();
+        normal.setMu(1.0);
+        normal.setSigma(2.0);
+        return normal;
+    }
+
+    @Test
+    @DisplayName("Should draw the same samples for the same seed")
+    void testSeeded() {
+        double[] first = SamplingContext.seeded(42).call(() -> new SampleHelper().getSamples(normal()));
+        double[] second = SamplingContext.seeded(42).call(() -> new SampleHelper().getSamples(normal()));
+        double[] other = SamplingContext.seeded(43).call(() -> new SampleHelper().getSamples(normal()));
+
+        assertArrayEquals(first, second);
+        assertFalse(Arrays.equals(first, other));
+    }
+
+    @Test
+    @DisplayName("Should draw independent samples for different streams")
+    void testStreams() {
+        double[] first = new SampleHelper(SamplingContext.seeded(42, 0).getGenerator()).getSamples(normal());
+        double[] second = new SampleHelper(SamplingContext.seeded(42, 1).getGenerator()).getSamples(normal());
+        double[] again = new SampleHelper(SamplingContext.seeded(42, 1).getGenerator()).getSamples(normal());
+
+        assertFalse(Arrays.equals(first, second));
+        assertArrayEquals(second, again);
+    }
+
+    @Test
+    @DisplayName("Should restore the previous context after a call")
+    void testRestoresContext() {
+        SamplingContext previous = SamplingContext.current();
+        SamplingContext seeded = SamplingContext.seeded(7);
+        assertSame(seeded, seeded.call(SamplingContext::current));
+        assertSame(previous, SamplingContext.current());
+    }
+}
@@ -0,0 +1,99 @@
+package tools.vitruv.stoex.interpreter.operations;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import tools.vitruv.stoex.stoex.BernoulliDistribution;
+import tools.vitruv.stoex.stoex.ExponentialDistribution;
+import tools.vitruv.stoex.stoex.NormalDistribution;
+import tools.vitruv.stoex.stoex.StoexFactory;
+
+@DisplayName("Variate Pool Tests")
+class VariatePoolTest {
+
+    private static NormalDistribution normal(double mu, double sigma) {
+        NormalDistribution normal = StoexFactory.eINSTANCE.createNormalDistribution();
+        normal.setMu(mu);
+        normal.setSigma(sigma);
+        return normal;
+    }
+
+    @Test
+    @DisplayName("Should draw each block once")
+    void testBlocks() {
+        VariatePool pool = new VariatePool(1);
+        double[] block = pool.block(VariatePool.Kind.NORMAL, 0, 1000);
+
+        assertSame(block, pool.block(VariatePool.Kind.NORMAL, 0, 1000));
+        assertArrayEquals(Arrays.copyOf(block, 100), pool.block(VariatePool.Kind.NORMAL, 0, 100));
+        assertArrayEquals(block, new VariatePool(1).block(VariatePool.Kind.NORMAL, 0, 1000));
+        assertFalse(Arrays.equals(block, pool.block(VariatePool.Kind.NORMAL, 1, 1000)));
+        assertFalse(Arrays.equals(block, new VariatePool(2).block(VariatePool.Kind.NORMAL, 0, 1000)));
+        for (double u : pool.block(VariatePool.Kind.UNIFORM, 0, 1000)) {
+            assertEquals(0.5, u, 0.5);
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep a single growing block per index")
+    void testGrowingBlocks() {
+        VariatePool pool = new VariatePool(1);
+        double[] shorter = pool.block(VariatePool.Kind.NORMAL, 0, 100);
+        pool.block(VariatePool.Kind.NORMAL, 1, 100);
+        double[] longer = pool.block(VariatePool.Kind.NORMAL, 0, 1000);
+        pool.block(VariatePool.Kind.NORMAL, 1, 1000);
+
+        assertEquals(2, pool.blockCount());
+        assertEquals(1000, longer.length);
+        assertArrayEquals(shorter, Arrays.copyOf(longer, 100));
+        assertSame(longer, pool.block(VariatePool.Kind.NORMAL, 0, 1000));
+        assertArrayEquals(shorter, pool.block(VariatePool.Kind.NORMAL, 0, 100));
+        assertEquals(2, pool.blockCount());
+    }
+
+    @Test
+    @DisplayName("Should transform a fresh block per operand and reuse blocks per context")
+    void testSampling() {
+        VariatePool pool = new VariatePool(7);
+        SamplingContext context = SamplingContext.seeded(1).withVariates(pool);
+        double[] first = context.call(() -> new SampleHelper().getSamples(normal(10, 2)));
+        double[] second = context.call(() -> new SampleHelper().getSamples(normal(10, 2)));
+        double[] again = SamplingContext.seeded(2).withVariates(pool)
+                .call(() -> new SampleHelper().getSamples(normal(0, 1)));
+
+        double[] block = pool.block(VariatePool.Kind.NORMAL, 0, SamplingContext.DEFAULT_SAMPLE_COUNT);
+        for (int i = 0; i < block.length; i++) {
+            assertEquals(10 + 2 * block[i], first[i]);
+        }
+        assertFalse(Arrays.equals(first, second));
+        assertArrayEquals(block, again);
+    }
+
+    @Test
+    @DisplayName("Should transform exponential and uniform blocks")
+    void testExponentialAndBernoulli() {
+        VariatePool pool = new VariatePool(3);
+        ExponentialDistribution exponential = StoexFactory.eINSTANCE.createExponentialDistribution();
+        exponential.setLambda(4.0);
+        BernoulliDistribution bernoulli = StoexFactory.eINSTANCE.createBernoulliDistribution();
+        bernoulli.setP(0.25);
+        SamplingContext context = SamplingContext.seeded(1).withSampling(100, null, null).withVariates(pool);
+
+        double[] exponentials = context.call(() -> new SampleHelper().getSamples(exponential));
+        double[] bernoullis = context.call(() -> new SampleHelper().getSamples(bernoulli));
+
+        double[] standard = pool.block(VariatePool.Kind.EXPONENTIAL, 0, 100);
+        double[] uniforms = pool.block(VariatePool.Kind.UNIFORM, 0, 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(standard[i] / 4.0, exponentials[i]);
+            assertEquals(uniforms[i] < 0.25 ? 1.0 : 0.0, bernoullis[i]);
+        }
+    }
+}
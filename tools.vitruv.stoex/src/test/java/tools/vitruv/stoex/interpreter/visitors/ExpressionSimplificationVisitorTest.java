@@ -0,0 +1,145 @@
+package tools.vitruv.stoex.interpreter.visitors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import tools.vitruv.stoex.interpreter.EvaluationContext;
+import tools.vitruv.stoex.interpreter.StoexLanguageRuntime;
+import tools.vitruv.stoex.interpreter.compiler.ScalarType;
+import tools.vitruv.stoex.stoex.Expression;
+import tools.vitruv.stoex.stoex.IntLiteral;
+import tools.vitruv.stoex.stoex.ProductExpression;
+
+@DisplayName("Expression Simplification Visitor Tests")
+class ExpressionSimplificationVisitorTest {
+
+    private static Expression parse(String expression) {
+        return StoexLanguageRuntime.getInstance().parseForEvaluation(expression);
+    }
+
+    private static String simplify(String expression) {
+        return simplify(expression, Map.of());
+    }
+
+    private static String simplify(String expression, Map<String, ScalarType> variableTypes) {
+        Expression simplified = ExpressionSimplificationVisitor.simplify(parse(expression), variableTypes);
+        return StoexLanguageRuntime.getInstance().getSerializer().serialize(simplified).replace(" ", "");
+    }
+
+    @Test
+    @DisplayName("Should fold constant subexpressions")
+    void testConstantFolding() {
+        assertEquals("14", simplify("2 + 3 * 4"));
+        assertEquals("20", simplify("(2 + 3) * 4"));
+        assertEquals("8", simplify("2 ^ 3"));
+        assertEquals("2.5", simplify("5.0 / 2"));
+        assertEquals("-3.0", simplify("(1.5 - 3.0) * 2.0"));
+        assertEquals("x*2.0", simplify("x * sqrt(4)"));
+        assertEquals("x*12+y", simplify("x * (3 * 4) + y"));
+        assertEquals("Normal(1.0,2.0)*6", simplify("Normal(1.0, 2.0) * (2 * 3)"));
+    }
+
+    @Test
+    @DisplayName("Should leave constants that cannot be folded")
+    void testUnfoldableConstants() {
+        // negative ints cannot be written as a literal
+        assertEquals("2-5", simplify("2 - 5"));
+        // errors are left to the evaluation
+        assertEquals("1/0", simplify("1 / 0"));
+        assertThrows(ArithmeticException.class,
+                () -> new ExpressionEvaluationVisitor().doSwitch(ExpressionSimplificationVisitor.simplify(parse("1 / 0"))));
+    }
+
+    @Test
+    @DisplayName("Should simplify identities")
+    void testIdentities() {
+        Map<String, ScalarType> types = Map.of("x", ScalarType.INT, "y", ScalarType.DOUBLE);
+        assertEquals("x", simplify("x * 1", types));
+        assertEquals("x", simplify("1 * x", types));
+        assertEquals("x", simplify("x / 1", types));
+        assertEquals("x", simplify("x + 0", types));
+        assertEquals("x", simplify("0 + x", types));
+        assertEquals("x", simplify("x - 0", types));
+        assertEquals("x", simplify("x ^ 1", types));
+        assertEquals("x", simplify("(x + 0) * (3 - 2)", types));
+        assertEquals("sqrt(y)", simplify("sqrt(y) * 1", types));
+        assertEquals("(2-5)", simplify("(2 - 5) * 1", types));
+        assertEquals("0-x", simplify("0 - x", types));
+        assertEquals("x%1", simplify("x % 1", types));
+        // a double literal would change the result type
+        assertEquals("x*1.0", simplify("x * 1.0", types));
+    }
+
+    @Test
+    @DisplayName("Should keep identities on operands that are not statically numbers")
+    void testIdentitiesOnOtherOperands() {
+        // the operations convert booleans and distributions
+        assertEquals("true*1", simplify("true * 1"));
+        assertEquals("Exponential(2.0)*1", simplify("Exponential(2.0) * 1"));
+        assertEquals("0+IntPMF[(1;1.0)]", simplify("0 + IntPMF[(1;1.0)]"));
+        // the type of an untyped variable is only known at evaluation
+        assertEquals("x*1", simplify("x * 1"));
+        assertEquals("x^1", simplify("x ^ 1", Map.of("x", ScalarType.BOOLEAN)));
+
+        assertEquals(1.0, new ExpressionEvaluationVisitor().doSwitch(ExpressionSimplificationVisitor.simplify(parse("true * 1"))));
+    }
+
+    @Test
+    @DisplayName("Should remove parentheses only where the precedence allows it")
+    void testParentheses() {
+        assertEquals("x", simplify("(x)"));
+        assertEquals("x*y+z", simplify("(x * y) + z"));
+        assertEquals("x*(y+z)", simplify("x * (y + z)"));
+        assertEquals("x-(y-z)", simplify("x - (y - z)"));
+        assertEquals("(x+y)^2", simplify("(x + y) ^ 2"));
+    }
+
+    @Test
+    @DisplayName("Should evaluate to the same results")
+    void testSameResults() {
+        Map<String, Object> variables = Map.of("x", 7, "y", 2.5, "z", 3);
+        for (String source : new String[] { "x * (1 + 2) - y / 1", "(x + 0) * (z - 1) ^ 1",
+                "max(2, 3) * x + sin(0.5)", "x > 3 * 2 ? (y * 1) : z + 0", "(x % 4) * (2.0 - 3.5)" }) {
+            Expression expression = parse(source);
+            Expression simplified = ExpressionSimplificationVisitor.simplify(expression);
+            assertEquals(new ExpressionEvaluationVisitor(new EvaluationContext(variables, Map.of())).doSwitch(expression),
+                    new ExpressionEvaluationVisitor(new EvaluationContext(variables, Map.of())).doSwitch(simplified),
+                    source);
+        }
+    }
+
+    @Test
+    @DisplayName("Should not modify the given expression")
+    void testCopy() {
+        Expression expression = parse("x * (2 + 3)");
+        Expression original = EcoreUtil.copy(expression);
+        Expression simplified = ExpressionSimplificationVisitor.simplify(expression);
+
+        assertNotSame(expression, simplified);
+        assertTrue(EcoreUtil.equals(original, expression));
+        assertTrue(simplified instanceof ProductExpression);
+    }
+
+    @Test
+    @DisplayName("Should return detached nodes when simplifying in place")
+    void testInPlace() {
+        Expression expression = parse("(2 + 3)");
+        Expression simplified = new ExpressionSimplificationVisitor().simplifyInPlace(expression);
+        assertTrue(simplified instanceof IntLiteral);
+        assertEquals(5, ((IntLiteral) simplified).getValue());
+        assertNull(simplified.eContainer());
+
+        Expression unchanged = parse("x * y");
+        assertSame(unchanged, new ExpressionSimplificationVisitor().simplifyInPlace(unchanged));
+    }
+}